@@ -9,20 +9,48 @@ function Dashboard({ activeSession, onSessionUpdate }) {
   const [sessionName, setSessionName] = useState('');
   const [activities, setActivities] = useState([]);
   const [stats, setStats] = useState(null);
+  const [counters, setCounters] = useState(null);
   const [isMonitoring, setIsMonitoring] = useState(false);
   const webcamRef = useRef(null);
+  const sessionId = activeSession?.id;
 
+  // Load once per session, then follow its changes instead of refetching on every poll
   useEffect(() => {
-    if (activeSession) {
-      fetchActivities();
-      fetchStats();
+    if (!sessionId) {
+      setCounters(null);
+      return undefined;
     }
-  }, [activeSession]);
+    fetchActivities();
+    fetchStats();
+
+    const events = new EventSource(`${API_BASE_URL}/sessions/${sessionId}/events`);
+    const upsertActivity = (event) => {
+      const activity = JSON.parse(event.data);
+      setActivities((current) => {
+        const index = current.findIndex((a) => a.id === activity.id);
+        if (index < 0) {
+          return [...current, activity];
+        }
+        const updated = [...current];
+        updated[index] = activity;
+        return updated;
+      });
+    };
+    events.addEventListener('activity-started', upsertActivity);
+    events.addEventListener('activity-ended', upsertActivity);
+    events.addEventListener('counters', (event) => {
+      setCounters(JSON.parse(event.data));
+      fetchStats();
+    });
+    return () => events.close();
+  }, [sessionId]);
 
   const fetchActivities = async () => {
     if (!activeSession) return;
     try {
-      const response = await axios.get(`${API_BASE_URL}/sessions/${activeSession.id}`);
+      const response = await axios.get(`${API_BASE_URL}/sessions/${activeSession.id}`, {
+        params: { include: 'activities' }
+      });
       setActivities(response.data.activities || []);
     } catch (error) {
       console.error('Error fetching activities:', error);
@@ -141,6 +169,12 @@ function Dashboard({ activeSession, onSessionUpdate }) {
                 {activeSession.status}
               </span>
               <p>Started: {formatTime(activeSession.startTime)}</p>
+              {counters && (
+                <p>
+                  Focused: {formatDuration(counters.focusedDurationSeconds)} |
+                  Distracted: {formatDuration(counters.distractedDurationSeconds)}
+                </p>
+              )}
             </div>
             <div className="timer-controls">
               {activeSession.status === 'ACTIVE' ? (
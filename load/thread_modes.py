@@ -0,0 +1,236 @@
+#!/usr/bin/env python3
+"""
+Compares the backend under load with platform threads and with virtual threads
+(spring.threads.virtual.enabled).
+
+For each mode the packaged jar is started on an in-memory database, and two kinds of
+client run against it for the same time:
+
+- agents: many clients on slow connections, each posting activity events whose body
+  trickles in over --slow-ms, so that every request holds a request thread while it
+  is being read;
+- a probe: one client that reads a session every --probe-interval-ms and measures how
+  long it waits.
+
+With platform threads, more agents than Tomcat threads (server.tomcat.threads.max, 200)
+leave the probe waiting for a thread; with virtual threads it should not have to.
+Database work is still limited by the connection pool in both modes.
+
+Needs Python 3.8+ and no other packages. Virtual threads need the jar to run on Java
+21 or newer; pass that runtime with --java. Run from the repository root after
+`mvn -B package -DskipTests`:
+
+    python3 load/thread_modes.py --java /path/to/jdk-21/bin/java
+"""
+
+import argparse
+import asyncio
+import glob
+import json
+import os
+import re
+import subprocess
+import sys
+import tempfile
+import time
+import urllib.request
+
+MODES = {"platform": "false", "virtual": "true"}
+
+
+def parse_args():
+    parser = argparse.ArgumentParser(description=__doc__.strip().splitlines()[0])
+    parser.add_argument("--jar", help="application jar (default: target/focustrack-*.jar)")
+    parser.add_argument("--java", default="java", help="java executable to run the jar with")
+    parser.add_argument("--port", type=int, default=18080)
+    parser.add_argument("--modes", default="platform,virtual", help="comma separated: platform, virtual")
+    parser.add_argument("--agents", type=int, default=400, help="concurrent slow clients")
+    parser.add_argument("--slow-ms", type=int, default=2000, help="time each agent takes to send a body")
+    parser.add_argument("--duration", type=int, default=30, help="seconds of load per mode")
+    parser.add_argument("--probe-interval-ms", type=int, default=100)
+    parser.add_argument("--jvm-arg", action="append", default=[], help="extra JVM option, repeatable")
+    return parser.parse_args()
+
+
+def java_version(java):
+    output = subprocess.run([java, "-version"], capture_output=True, text=True).stderr
+    match = re.search(r'version "(\d+)(?:\.(\d+))?', output)
+    if not match:
+        sys.exit("Could not tell the version of " + java + ":\n" + output)
+    major = int(match.group(1))
+    # "1.8" style versions
+    return int(match.group(2)) if major == 1 else major
+
+
+def find_jar(jar):
+    if jar:
+        return jar
+    jars = [path for path in glob.glob("target/focustrack-*.jar") if not path.endswith("-plain.jar")]
+    if not jars:
+        sys.exit("No jar in target/; run `mvn -B package -DskipTests` first or pass --jar")
+    return jars[0]
+
+
+def http(method, url, timeout=10):
+    request = urllib.request.Request(url, method=method)
+    with urllib.request.urlopen(request, timeout=timeout) as response:
+        return json.loads(response.read() or b"null")
+
+
+def start_server(args, jar, mode, log_path):
+    command = [args.java, *args.jvm_arg, "-jar", jar,
+               "--server.port=%d" % args.port,
+               "--spring.threads.virtual.enabled=" + MODES[mode],
+               "--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+               "--focustrack.monitoring.source=none",
+               "--focustrack.ingestion.log.enabled=false"]
+    log = open(log_path, "w")
+    process = subprocess.Popen(command, stdout=log, stderr=subprocess.STDOUT)
+    deadline = time.time() + 120
+    while time.time() < deadline:
+        if process.poll() is not None:
+            sys.exit("The server exited during startup, see " + log_path)
+        try:
+            if http("GET", base(args) + "/actuator/health", timeout=2)["status"] == "UP":
+                return process
+        except OSError:
+            pass
+        time.sleep(1)
+    process.terminate()
+    sys.exit("The server did not start within 120 s, see " + log_path)
+
+
+def stop_server(process):
+    process.terminate()
+    try:
+        process.wait(timeout=60)
+    except subprocess.TimeoutExpired:
+        process.kill()
+
+
+def base(args):
+    return "http://localhost:%d" % args.port
+
+
+async def exchange(port, head, body=b"", slow_s=0.0, timeout=60.0):
+    """
+    Sends one request on a new connection, trickling the body over slow_s seconds, and
+    returns the response status and the seconds from connecting to the response.
+    """
+    started = time.monotonic()
+    reader, writer = await asyncio.wait_for(asyncio.open_connection("localhost", port), timeout)
+    try:
+        writer.write(head)
+        await writer.drain()
+        pieces = 10 if slow_s > 0 and len(body) >= 10 else 1
+        size = -(-len(body) // pieces)
+        for i in range(pieces):
+            if slow_s > 0:
+                await asyncio.sleep(slow_s / pieces)
+            writer.write(body[i * size:(i + 1) * size])
+            await writer.drain()
+        status_line = await asyncio.wait_for(reader.readline(), timeout)
+        # Connection: close, so the response ends with the connection
+        await asyncio.wait_for(reader.read(), timeout)
+        return int(status_line.split()[1]), time.monotonic() - started
+    finally:
+        writer.close()
+
+
+async def agent(args, session_id, deadline, results):
+    number = 0
+    while time.monotonic() < deadline:
+        number += 1
+        body = json.dumps({"appName": "Load", "windowTitle": "window %d" % number}).encode()
+        head = ("POST /api/activities/session/%d HTTP/1.1\r\nHost: localhost\r\n"
+                "Content-Type: application/json\r\nContent-Length: %d\r\nConnection: close\r\n\r\n"
+                % (session_id, len(body))).encode()
+        try:
+            results.append(await exchange(args.port, head, body, args.slow_ms / 1000))
+        except (OSError, asyncio.TimeoutError, IndexError, ValueError):
+            results.append((None, None))
+
+
+async def probe(args, session_id, deadline, results):
+    head = ("GET /api/sessions/%d HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+            % session_id).encode()
+    while time.monotonic() < deadline:
+        try:
+            results.append(await exchange(args.port, head))
+        except (OSError, asyncio.TimeoutError, IndexError, ValueError):
+            results.append((None, None))
+        await asyncio.sleep(args.probe_interval_ms / 1000)
+
+
+async def load(args, session_ids):
+    deadline = time.monotonic() + args.duration
+    agents, probes = [], []
+    await asyncio.gather(probe(args, session_ids[0], deadline, probes),
+                         *(agent(args, session_id, deadline, agents) for session_id in session_ids))
+    return agents, probes
+
+
+def percentile(values, fraction):
+    if not values:
+        return float("nan")
+    ordered = sorted(values)
+    return ordered[min(len(ordered) - 1, int(fraction * len(ordered)))]
+
+
+def summarize(results):
+    ok = [seconds * 1000 for status, seconds in results if status is not None and status < 400]
+    return {"ok": len(ok), "failed": len(results) - len(ok),
+            "p50": percentile(ok, 0.5), "p99": percentile(ok, 0.99), "max": max(ok, default=float("nan"))}
+
+
+def metric(args, name):
+    try:
+        measurements = http("GET", base(args) + "/actuator/metrics/" + name)["measurements"]
+        return measurements[0]["value"]
+    except (OSError, KeyError, IndexError):
+        return float("nan")
+
+
+def run_mode(args, jar, mode, log_dir):
+    log_path = os.path.join(log_dir, mode + ".log")
+    print("%s threads: starting %s (log %s)" % (mode, jar, log_path), flush=True)
+    process = start_server(args, jar, mode, log_path)
+    try:
+        session_ids = [http("POST", base(args) + "/api/sessions?sessionName=load-%d" % i)["id"]
+                       for i in range(args.agents)]
+        print("%s threads: %d agents for %d s" % (mode, args.agents, args.duration), flush=True)
+        agents, probes = asyncio.run(load(args, session_ids))
+        return {"agents": summarize(agents), "probe": summarize(probes),
+                "threads": metric(args, "jvm.threads.peak")}
+    finally:
+        stop_server(process)
+
+
+def main():
+    args = parse_args()
+    jar = find_jar(args.jar)
+    modes = [mode.strip() for mode in args.modes.split(",") if mode.strip()]
+    unknown = [mode for mode in modes if mode not in MODES]
+    if unknown:
+        sys.exit("Unknown modes: " + ", ".join(unknown))
+    version = java_version(args.java)
+    if "virtual" in modes and version < 21:
+        sys.exit("Virtual threads need Java 21 or newer, %s is Java %d; pass --java or --modes platform"
+                 % (args.java, version))
+
+    log_dir = tempfile.mkdtemp(prefix="focustrack-load-")
+    results = {mode: run_mode(args, jar, mode, log_dir) for mode in modes}
+
+    print()
+    print("Java %d, %d agents sending over %d ms, %d s per mode" % (version, args.agents, args.slow_ms, args.duration))
+    print("%-9s %10s %8s %9s %9s %9s %9s %9s %8s" % ("threads", "agent ok", "failed", "agent p50", "agent p99",
+                                                 "probe p50", "probe p99", "probe max", "peak thr"))
+    for mode, result in results.items():
+        agents, probes = result["agents"], result["probe"]
+        print("%-9s %10d %8d %7.0fms %7.0fms %7.0fms %7.0fms %7.0fms %8.0f" % (
+            mode, agents["ok"], agents["failed"] + probes["failed"], agents["p50"], agents["p99"],
+            probes["p50"], probes["p99"], probes["max"], result["threads"]))
+
+
+if __name__ == "__main__":
+    main()
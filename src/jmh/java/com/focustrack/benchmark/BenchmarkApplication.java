@@ -0,0 +1,93 @@
+package com.focustrack.benchmark;
+
+import com.focustrack.FocusTrackApplication;
+import com.focustrack.service.NameDictionary;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Starts the application without a web server against a private in-memory H2 database,
+ * and seeds synthetic data directly over JDBC.
+ */
+final class BenchmarkApplication {
+    
+    static final String[][] APPS = {
+            {"VS Code", "ReportService.java - focustrack - Visual Studio Code"},
+            {"Chrome", "YouTube - Google Chrome"},
+            {"Chrome", "Pull requests - GitHub - Google Chrome"},
+            {"Slack", "general - Slack"},
+            {"IntelliJ IDEA", "focustrack - SessionService.java"},
+            {"Firefox", "reddit: the front page of the internet"},
+            {"Microsoft Word", "Thesis draft.docx"},
+            {"Finder", "Downloads"},
+            {"Spotify", "Daily Mix 1"},
+            {"Terminal", "bash - 120x40"}
+    };
+    
+    private static final String[] TYPES = {
+            "PRODUCTIVE", "DISTRACTING", "PRODUCTIVE", "NEUTRAL", "PRODUCTIVE",
+            "DISTRACTING", "PRODUCTIVE", "NEUTRAL", "NEUTRAL", "NEUTRAL"
+    };
+    
+    private BenchmarkApplication() {
+    }
+    
+    static ConfigurableApplicationContext start() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(FocusTrackApplication.class)
+                .web(WebApplicationType.NONE)
+                // H2 would otherwise return the previous result of a repeated query over unchanged tables
+                .run("--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID()
+                                + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.focustrack=WARN");
+    }
+    
+    /**
+     * Inserts closed activities of 10 to 300 seconds back to back from the given start.
+     * @return The end time of the last activity
+     */
+    static LocalDateTime insertActivities(ConfigurableApplicationContext context, long sessionId,
+                                          LocalDateTime start, int count) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        NameDictionary names = context.getBean(NameDictionary.class);
+        int[] appIds = new int[APPS.length];
+        int[] titleIds = new int[APPS.length];
+        for (int app = 0; app < APPS.length; app++) {
+            appIds[app] = names.applicationId(APPS[app][0]);
+            titleIds[app] = names.windowTitleId(APPS[app][1]);
+        }
+        
+        LocalDateTime time = start;
+        List<Object[]> rows = new ArrayList<>(1000);
+        for (int i = 0; i < count; i++) {
+            int app = (i * 7 + i / 3) % APPS.length;
+            long seconds = 10 + (i * 37L) % 290;
+            LocalDateTime end = time.plusSeconds(seconds);
+            rows.add(new Object[]{sessionId, appIds[app], titleIds[app], Timestamp.valueOf(time),
+                    Timestamp.valueOf(end), TYPES[app], seconds, Timestamp.valueOf(end)});
+            time = end;
+            if (rows.size() == 1000) {
+                flush(jdbc, rows);
+            }
+        }
+        flush(jdbc, rows);
+        return time;
+    }
+    
+    private static void flush(JdbcTemplate jdbc, List<Object[]> rows) {
+        jdbc.batchUpdate("INSERT INTO activities (session_id, app_id, title_id, start_time, end_time, " +
+                "type, duration_seconds, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        rows.clear();
+    }
+}
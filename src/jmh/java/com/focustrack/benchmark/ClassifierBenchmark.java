@@ -0,0 +1,70 @@
+package com.focustrack.benchmark;
+
+import com.focustrack.model.Activity;
+import com.focustrack.service.KeywordActivityClassifier;
+import com.focustrack.service.KeywordMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification of one app/title pair by the compiled keyword matcher, against the
+ * original chain of String.contains calls as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ClassifierBenchmark {
+    
+    private KeywordMatcher matcher;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        matcher = KeywordMatcher.compile(KeywordActivityClassifier.defaultRules(), Activity.ActivityType.NEUTRAL);
+    }
+    
+    @Benchmark
+    public Activity.ActivityType keywordMatcher() {
+        String[] pair = nextPair();
+        return matcher.classify(pair[0], pair[1]);
+    }
+    
+    @Benchmark
+    public Activity.ActivityType containsChainBaseline() {
+        String[] pair = nextPair();
+        return containsChain(pair[0], pair[1]);
+    }
+    
+    private String[] nextPair() {
+        next = (next + 1) % BenchmarkApplication.APPS.length;
+        return BenchmarkApplication.APPS[next];
+    }
+    
+    private static Activity.ActivityType containsChain(String appName, String windowTitle) {
+        String lowerApp = appName.toLowerCase();
+        String lowerTitle = windowTitle.toLowerCase();
+        
+        if (lowerApp.contains("youtube") || lowerTitle.contains("youtube") ||
+            lowerApp.contains("instagram") || lowerTitle.contains("instagram") ||
+            lowerApp.contains("facebook") || lowerTitle.contains("facebook") ||
+            lowerApp.contains("twitter") || lowerTitle.contains("twitter") ||
+            lowerApp.contains("tiktok") || lowerTitle.contains("tiktok") ||
+            lowerApp.contains("netflix") || lowerTitle.contains("netflix") ||
+            lowerTitle.contains("reddit")) {
+            return Activity.ActivityType.DISTRACTING;
+        }
+        
+        if (lowerApp.contains("code") || lowerApp.contains("ide") ||
+            lowerApp.contains("intellij") || lowerApp.contains("eclipse") ||
+            lowerApp.contains("vs code") || lowerApp.contains("visual studio") ||
+            lowerTitle.contains("github") || lowerTitle.contains("stackoverflow") ||
+            lowerApp.contains("notion") || lowerApp.contains("obsidian") ||
+            lowerApp.contains("word") || lowerApp.contains("excel") ||
+            lowerApp.contains("powerpoint") || lowerApp.contains("pdf")) {
+            return Activity.ActivityType.PRODUCTIVE;
+        }
+        
+        return Activity.ActivityType.NEUTRAL;
+    }
+}
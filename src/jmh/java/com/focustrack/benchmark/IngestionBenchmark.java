@@ -0,0 +1,48 @@
+package com.focustrack.benchmark;
+
+import com.focustrack.model.Activity;
+import com.focustrack.service.SessionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionService.addActivity (one window switch) on a session that already holds
+ * sessionSize activities, against an embedded H2 database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class IngestionBenchmark {
+    
+    @Param({"0", "1000", "10000"})
+    public int sessionSize;
+    
+    private ConfigurableApplicationContext context;
+    private SessionService sessionService;
+    private Long sessionId;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        sessionService = context.getBean(SessionService.class);
+        sessionId = sessionService.createSession("benchmark", null).getId();
+        BenchmarkApplication.insertActivities(context, sessionId,
+                LocalDateTime.now().minusDays(1), sessionSize);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public Activity addActivity() {
+        next = (next + 1) % BenchmarkApplication.APPS.length;
+        String[] app = BenchmarkApplication.APPS[next];
+        return sessionService.addActivity(sessionId, app[0], app[1]);
+    }
+}
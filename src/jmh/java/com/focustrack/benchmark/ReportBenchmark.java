@@ -0,0 +1,78 @@
+package com.focustrack.benchmark;
+
+import com.focustrack.dto.ProductivityReportDTO;
+import com.focustrack.service.ActivityColumnStore;
+import com.focustrack.service.ReportService;
+import com.focustrack.service.RollupService;
+import com.focustrack.service.SessionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report generation over a synthetic month of data holding activityCount activities,
+ * spread over one session per day. The raw path aggregates the activities table, the
+ * column path scans the in-memory column store and the rollup path reads the daily
+ * rollups. None goes through the report cache. Run with -Djmh.args="ReportBenchmark
+ * -prof gc" to compare the allocation per report as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+    
+    private static final int DAYS = 30;
+    
+    @Param({"1000", "100000", "1000000"})
+    public int activityCount;
+    
+    private ConfigurableApplicationContext context;
+    private ReportService reportService;
+    private LocalDate firstDay;
+    private LocalDate lastDay;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        reportService = context.getBean(ReportService.class);
+        SessionService sessionService = context.getBean(SessionService.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        
+        lastDay = LocalDate.now();
+        firstDay = lastDay.minusDays(DAYS - 1);
+        for (int day = 0; day < DAYS; day++) {
+            Long sessionId = sessionService.createSession("benchmark day " + day, null).getId();
+            LocalDateTime start = firstDay.plusDays(day).atTime(8, 0);
+            // Sessions are created "now"; move them onto their day
+            jdbc.update("UPDATE sessions SET start_time = ? WHERE id = ?", start, sessionId);
+            BenchmarkApplication.insertActivities(context, sessionId, start, activityCount / DAYS);
+        }
+        context.getBean(RollupService.class).rebuild(firstDay, lastDay);
+        // The activities were inserted behind the store's back
+        context.getBean(ActivityColumnStore.class).reload();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public ProductivityReportDTO rawReport() {
+        return reportService.generateReportFromActivities(firstDay.atStartOfDay(), lastDay.atTime(23, 59, 59));
+    }
+    
+    @Benchmark
+    public ProductivityReportDTO columnReport() {
+        return reportService.generateReportFromColumns(firstDay.atStartOfDay(), lastDay.atTime(23, 59, 59));
+    }
+    
+    @Benchmark
+    public ProductivityReportDTO rollupReport() {
+        return reportService.generateReportFromRollups(firstDay, lastDay);
+    }
+}
@@ -0,0 +1,57 @@
+package com.focustrack.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.focustrack.dto.ActivityDTO;
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Activity;
+import com.focustrack.model.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a SessionDTO with activityCount embedded activities, using the
+ * same Jackson settings as the web layer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SessionSerializationBenchmark {
+    
+    @Param({"0", "100", "1000"})
+    public int activityCount;
+    
+    private ObjectMapper objectMapper;
+    private SessionDTO session;
+    
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        
+        LocalDateTime start = LocalDateTime.now().minusHours(8);
+        List<ActivityDTO> activities = new ArrayList<>();
+        LocalDateTime time = start;
+        for (int i = 0; i < activityCount; i++) {
+            String[] app = BenchmarkApplication.APPS[i % BenchmarkApplication.APPS.length];
+            LocalDateTime end = time.plusSeconds(30);
+            activities.add(new ActivityDTO((long) i, 1L, app[0], app[1], time, end,
+                    Activity.ActivityType.NEUTRAL, 30L));
+            time = end;
+        }
+        
+        session = new SessionDTO(1L, "benchmark", start, time, Session.SessionStatus.COMPLETED,
+                Session.SessionType.FOCUS, 30L * activityCount, 0L, 0L, activities);
+    }
+    
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(session);
+    }
+}
@@ -0,0 +1,85 @@
+package com.focustrack.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Schema version 2: activities reference the applications and window_titles
+ * dictionaries. The distinct names are copied into the dictionaries, activities get
+ * their ids, and the app_name and window_title columns are dropped.
+ * 
+ * Written in Java because databases converted by earlier versions, before migrations
+ * were versioned, already have the new layout; the conversion is skipped for those.
+ * Picked up by Flyway as a Spring bean.
+ */
+@Slf4j
+@Component
+public class ActivityNamesMigration implements JavaMigration {
+    
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("2");
+    }
+    
+    @Override
+    public String getDescription() {
+        return "Activity name dictionaries";
+    }
+    
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+    
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+    
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS applications (" +
+                "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+                "CONSTRAINT uk_applications_name UNIQUE (name))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS window_titles (" +
+                "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, title VARCHAR(255) NOT NULL, " +
+                "CONSTRAINT uk_window_titles_title UNIQUE (title))");
+        
+        Integer legacyColumns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'ACTIVITIES' AND COLUMN_NAME = 'APP_NAME'",
+                Integer.class);
+        if (legacyColumns == null || legacyColumns == 0) {
+            return;
+        }
+        
+        log.info("Moving activity app names and window titles into dictionary tables");
+        int apps = jdbcTemplate.update("INSERT INTO applications (name) SELECT DISTINCT a.app_name FROM activities a " +
+                "WHERE NOT EXISTS (SELECT 1 FROM applications p WHERE p.name = a.app_name)");
+        int titles = jdbcTemplate.update("INSERT INTO window_titles (title) SELECT DISTINCT a.window_title FROM activities a " +
+                "WHERE NOT EXISTS (SELECT 1 FROM window_titles t WHERE t.title = a.window_title)");
+        
+        jdbcTemplate.execute("ALTER TABLE activities ADD COLUMN IF NOT EXISTS app_id INTEGER");
+        jdbcTemplate.execute("ALTER TABLE activities ADD COLUMN IF NOT EXISTS title_id INTEGER");
+        int activities = jdbcTemplate.update("UPDATE activities a SET " +
+                "app_id = (SELECT p.id FROM applications p WHERE p.name = a.app_name), " +
+                "title_id = (SELECT t.id FROM window_titles t WHERE t.title = a.window_title) " +
+                "WHERE a.app_id IS NULL OR a.title_id IS NULL");
+        jdbcTemplate.execute("ALTER TABLE activities ALTER COLUMN app_id SET NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE activities ALTER COLUMN title_id SET NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE activities ADD CONSTRAINT IF NOT EXISTS fk_activities_application " +
+                "FOREIGN KEY (app_id) REFERENCES applications");
+        jdbcTemplate.execute("ALTER TABLE activities ADD CONSTRAINT IF NOT EXISTS fk_activities_window_title " +
+                "FOREIGN KEY (title_id) REFERENCES window_titles");
+        
+        jdbcTemplate.execute("ALTER TABLE activities DROP COLUMN app_name");
+        jdbcTemplate.execute("ALTER TABLE activities DROP COLUMN window_title");
+        log.info("Migrated {} activities ({} applications, {} window titles)", activities, apps, titles);
+    }
+}
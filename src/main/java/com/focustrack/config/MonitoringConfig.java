@@ -0,0 +1,75 @@
+package com.focustrack.config;
+
+import com.focustrack.service.ActiveWindowSource;
+import com.focustrack.service.ScriptedActiveWindowSource;
+import com.focustrack.service.X11ActiveWindowSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MonitoringConfig {
+    
+    /**
+     * Window source for server-side sampling: "x11" (xprop, returns nothing without a
+     * display), "scripted" (replays focustrack.monitoring.script, see
+     * {@link ScriptedActiveWindowSource#parse}) or "none".
+     */
+    @Bean
+    public ActiveWindowSource activeWindowSource(@Value("${focustrack.monitoring.source:x11}") String source,
+                                                 @Value("${focustrack.monitoring.script:}") String script) {
+        return switch (source) {
+            case "none" -> () -> null;
+            case "x11" -> new X11ActiveWindowSource();
+            case "scripted" -> ScriptedActiveWindowSource.parse(script);
+            default -> throw new IllegalArgumentException("Unknown monitoring source: " + source);
+        };
+    }
+    
+    /**
+     * Runs the sampling tick that reads the focused window once for all monitored
+     * sessions.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService monitoringExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(daemonThread("activity-sampler"));
+    }
+    
+    /**
+     * Records the activities the samplers emit when ingestion is synchronous, so that
+     * database writes never delay the next sample. At most
+     * focustrack.monitoring.writer-capacity ticks wait while the database is slow; the
+     * activities of further ticks are rejected and dropped by the monitoring service.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService monitoringWriter(MeterRegistry meterRegistry,
+                                            @Value("${focustrack.monitoring.writer-capacity:600}") int capacity) {
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("monitoring.writer.queue.depth", queue, BlockingQueue::size)
+                .description("Ticks of monitored activities waiting to be recorded")
+                .register(meterRegistry);
+        Gauge.builder("monitoring.writer.queue.capacity", () -> capacity)
+                .register(meterRegistry);
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue, daemonThread("activity-writer"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    private static ThreadFactory daemonThread(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.focustrack.config;
+
+import org.hibernate.Interceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+
+/**
+ * Counts the SQL statements prepared and the entities loaded by Hibernate on the
+ * current thread between {@link #begin()} and {@link #end()}.
+ * 
+ * Registered with Hibernate as both the statement inspector and the session factory
+ * interceptor. Work done outside a begin/end window, or on another thread (e.g. a
+ * streamed response body), is not counted.
+ */
+public class RequestStatistics implements StatementInspector, Interceptor {
+    
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+    
+    public void begin() {
+        CURRENT.set(new Counts());
+    }
+    
+    public Counts end() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts;
+    }
+    
+    @Override
+    public String inspect(String sql) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.statements++;
+        }
+        return sql;
+    }
+    
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.entitiesLoaded++;
+        }
+        return false;
+    }
+    
+    public static class Counts {
+        
+        private long statements;
+        private long entitiesLoaded;
+        
+        public long getStatements() {
+            return statements;
+        }
+        
+        public long getEntitiesLoaded() {
+            return entitiesLoaded;
+        }
+    }
+}
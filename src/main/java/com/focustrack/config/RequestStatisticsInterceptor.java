@@ -0,0 +1,65 @@
+package com.focustrack.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Records the number of SQL statements and loaded entities of each request as the
+ * "http.server.requests.statements" and "http.server.requests.entities" distribution
+ * summaries, tagged with the request method and URI template.
+ * 
+ * For asynchronous responses (SSE subscriptions, streamed listings) the work done on
+ * the request thread is recorded when the response goes async, which also frees the
+ * pooled thread's statistics; the dispatch that completes the response is not counted
+ * again.
+ */
+@RequiredArgsConstructor
+public class RequestStatisticsInterceptor implements AsyncHandlerInterceptor {
+    
+    private final RequestStatistics requestStatistics;
+    private final MeterRegistry meterRegistry;
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.ASYNC) {
+            requestStatistics.begin();
+        }
+        return true;
+    }
+    
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        record(request, requestStatistics.end());
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        record(request, requestStatistics.end());
+    }
+    
+    private void record(HttpServletRequest request, RequestStatistics.Counts counts) {
+        if (counts == null) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        
+        DistributionSummary.builder("http.server.requests.statements")
+                .description("SQL statements prepared per request")
+                .tags("method", request.getMethod(), "uri", uri)
+                .register(meterRegistry)
+                .record(counts.getStatements());
+        DistributionSummary.builder("http.server.requests.entities")
+                .description("Entities loaded per request")
+                .tags("method", request.getMethod(), "uri", uri)
+                .register(meterRegistry)
+                .record(counts.getEntitiesLoaded());
+    }
+}
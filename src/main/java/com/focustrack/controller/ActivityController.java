@@ -1,11 +1,16 @@
 package com.focustrack.controller;
 
+import com.focustrack.dto.ActivityBatchRequest;
+import com.focustrack.dto.ActivityBatchResponse;
 import com.focustrack.dto.ActivityDTO;
+import com.focustrack.dto.ActivityEvent;
 import com.focustrack.dto.ActivityRequest;
 import com.focustrack.dto.SessionDTO;
 import com.focustrack.model.Activity;
+import com.focustrack.service.ActivityIngestionQueue;
 import com.focustrack.service.SessionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,11 +24,16 @@ import java.util.List;
 public class ActivityController {
     
     private final SessionService sessionService;
+    private final ActivityIngestionQueue ingestionQueue;
     
     @PostMapping("/session/{sessionId}")
     public ResponseEntity<ActivityDTO> addActivity(
             @PathVariable Long sessionId,
             @RequestBody ActivityRequest request) {
+        if (ingestionQueue.isEnabled()) {
+            return enqueue(ingestionQueue.offer(
+                    new ActivityEvent(sessionId, request.getAppName(), request.getWindowTitle(), null)));
+        }
         try {
             Activity activity = sessionService.addActivity(
                     sessionId,
@@ -32,13 +42,26 @@ public class ActivityController {
             );
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ActivityDTO.fromEntity(activity));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<ActivityBatchResponse> addActivities(@RequestBody ActivityBatchRequest request) {
+        if (request.getEvents() == null || request.getEvents().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(ActivityBatchResponse.of(sessionService.addActivities(request.getEvents())));
+    }
+    
     @PutMapping("/{id}/end")
     public ResponseEntity<Void> endActivity(@PathVariable Long id) {
+        if (ingestionQueue.isEnabled()) {
+            return enqueue(ingestionQueue.offerEnd(id));
+        }
         try {
             sessionService.endActivity(id);
             return ResponseEntity.ok().build();
@@ -50,11 +73,21 @@ public class ActivityController {
     @GetMapping("/session/{sessionId}")
     public ResponseEntity<List<ActivityDTO>> getActivitiesBySession(@PathVariable Long sessionId) {
         try {
-            SessionDTO session = sessionService.getSessionById(sessionId);
+            SessionDTO session = sessionService.getSessionById(sessionId, true);
             return ResponseEntity.ok(session.getActivities() != null ? session.getActivities() : List.of());
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
+    
+    private <T> ResponseEntity<T> enqueue(ActivityIngestionQueue.OfferResult result) {
+        return switch (result) {
+            case ACCEPTED -> ResponseEntity.accepted().build();
+            case FULL -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+            case CLOSED -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        };
+    }
 }
 
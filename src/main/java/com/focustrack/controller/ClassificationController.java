@@ -0,0 +1,58 @@
+package com.focustrack.controller;
+
+import com.focustrack.model.Activity;
+import com.focustrack.model.ClassificationRule;
+import com.focustrack.service.ActivityClassifier;
+import com.focustrack.service.ClassificationRuleService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/classification")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ClassificationController {
+    
+    private final ClassificationRuleService ruleService;
+    private final ActivityClassifier activityClassifier;
+    
+    @GetMapping
+    public ResponseEntity<Activity.ActivityType> classify(
+            @RequestParam String appName,
+            @RequestParam(required = false, defaultValue = "") String windowTitle) {
+        return ResponseEntity.ok(activityClassifier.classify(appName, windowTitle));
+    }
+    
+    @GetMapping("/rules")
+    public ResponseEntity<List<ClassificationRule>> getRules() {
+        return ResponseEntity.ok(ruleService.getAllRules());
+    }
+    
+    @PostMapping("/rules")
+    public ResponseEntity<ClassificationRule> createRule(@RequestBody ClassificationRule rule) {
+        if (rule.getKeyword() == null || rule.getKeyword().isBlank() || rule.getType() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(ruleService.createRule(rule));
+    }
+    
+    @DeleteMapping("/rules/{id}")
+    public ResponseEntity<Void> deleteRule(@PathVariable Long id) {
+        try {
+            ruleService.deleteRule(id);
+            return ResponseEntity.noContent().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @PostMapping("/rules/reload")
+    public ResponseEntity<Void> reloadRules() {
+        ruleService.reloadRules();
+        return ResponseEntity.ok().build();
+    }
+}
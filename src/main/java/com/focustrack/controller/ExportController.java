@@ -0,0 +1,65 @@
+package com.focustrack.controller;
+
+import com.focustrack.service.ExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Bulk exports for offline analysis. The rows are written to the response on the
+ * request thread as they are read, so an export is not bound by the async request
+ * timeout that applies to streamed responses.
+ */
+@RestController
+@RequestMapping("/api/export")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ExportController {
+    
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    
+    private final ExportService exportService;
+    
+    @GetMapping("/sessions")
+    public void exportSessions(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "CSV") ExportService.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        prepare(response, "sessions", startDate, endDate, format, gzip);
+        exportService.writeSessions(startDate, endDate, format, gzip, response.getOutputStream());
+    }
+    
+    @GetMapping("/activities")
+    public void exportActivities(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "CSV") ExportService.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        prepare(response, "activities", startDate, endDate, format, gzip);
+        exportService.writeActivities(startDate, endDate, format, gzip, response.getOutputStream());
+    }
+    
+    private static void prepare(HttpServletResponse response, String name, LocalDateTime startDate,
+                                LocalDateTime endDate, ExportService.Format format, boolean gzip) {
+        String extension = format == ExportService.Format.CSV ? "csv" : "ndjson";
+        String contentType = format == ExportService.Format.CSV ? "text/csv;charset=UTF-8" : "application/x-ndjson";
+        String fileName = name + "-" + FILE_DATE.format(startDate) + "-" + FILE_DATE.format(endDate) + "." + extension;
+        if (gzip) {
+            contentType = "application/gzip";
+            fileName += ".gz";
+        }
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName).build().toString());
+    }
+}
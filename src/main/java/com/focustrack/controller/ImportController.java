@@ -0,0 +1,58 @@
+package com.focustrack.controller;
+
+import com.focustrack.dto.ImportProgressDTO;
+import com.focustrack.service.ImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Bulk imports of historical sessions (see {@link ImportService}). The request body is
+ * read and written on the request thread; the response is sent once the whole import
+ * is done, while GET reports the progress of imports still running.
+ */
+@RestController
+@RequestMapping("/api/import")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ImportController {
+    
+    // Keeps "source:id" import keys within the 255 characters of the column
+    private static final int MAX_SOURCE_LENGTH = 200;
+    
+    private final ImportService importService;
+    
+    @PostMapping
+    public ResponseEntity<ImportProgressDTO> importSessions(
+            @RequestParam(defaultValue = "NDJSON") ImportService.Format format,
+            @RequestParam(defaultValue = "import") String source,
+            HttpServletRequest request) throws IOException {
+        if (source.isBlank() || source.length() > MAX_SOURCE_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        try (InputStream body = request.getInputStream()) {
+            ImportProgressDTO result = importService.importSessions(body, format, source);
+            if (result.getStatus() == ImportProgressDTO.ImportStatus.FAILED) {
+                return ResponseEntity.unprocessableEntity().body(result);
+            }
+            return ResponseEntity.ok(result);
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<ImportProgressDTO>> getImports() {
+        return ResponseEntity.ok(importService.getImports());
+    }
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportProgressDTO> getImport(@PathVariable long id) {
+        return importService.getImport(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
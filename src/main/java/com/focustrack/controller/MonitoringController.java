@@ -0,0 +1,61 @@
+package com.focustrack.controller;
+
+import com.focustrack.dto.MonitoringStatusDTO;
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Session;
+import com.focustrack.service.MonitoringService;
+import com.focustrack.service.SessionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/monitoring")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class MonitoringController {
+    
+    private final MonitoringService monitoringService;
+    private final SessionService sessionService;
+    
+    @PostMapping("/start/{sessionId}")
+    public ResponseEntity<MonitoringStatusDTO> startMonitoring(@PathVariable Long sessionId) {
+        SessionDTO session;
+        try {
+            session = sessionService.getSessionById(sessionId, false);
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (session.getStatus() == Session.SessionStatus.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        monitoringService.startMonitoring(sessionId);
+        return ResponseEntity.of(monitoringService.getMonitoringStatus(sessionId));
+    }
+    
+    @PostMapping("/stop/{sessionId}")
+    public ResponseEntity<Void> stopMonitoring(@PathVariable Long sessionId) {
+        if (!monitoringService.isMonitoringActive(sessionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        monitoringService.stopMonitoring(sessionId);
+        return ResponseEntity.ok().build();
+    }
+    
+    @GetMapping("/status")
+    public ResponseEntity<List<MonitoringStatusDTO>> getStatus() {
+        return ResponseEntity.ok(monitoringService.getMonitoredSessions().stream()
+                .map(monitoringService::getMonitoringStatus)
+                .flatMap(Optional::stream)
+                .toList());
+    }
+    
+    @GetMapping("/status/{sessionId}")
+    public ResponseEntity<MonitoringStatusDTO> getStatus(@PathVariable Long sessionId) {
+        return ResponseEntity.of(monitoringService.getMonitoringStatus(sessionId));
+    }
+}
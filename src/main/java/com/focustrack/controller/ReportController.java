@@ -1,7 +1,10 @@
 package com.focustrack.controller;
 
 import com.focustrack.dto.ProductivityReportDTO;
+import com.focustrack.service.ActivityColumnStore;
 import com.focustrack.service.ReportService;
+import com.focustrack.service.RetentionService;
+import com.focustrack.service.RollupService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +20,9 @@ import java.time.LocalDateTime;
 public class ReportController {
     
     private final ReportService reportService;
+    private final RollupService rollupService;
+    private final ActivityColumnStore activityColumnStore;
+    private final RetentionService retentionService;
     
     @GetMapping("/daily")
     public ResponseEntity<ProductivityReportDTO> getDailyReport(
@@ -39,8 +45,25 @@ public class ReportController {
     @GetMapping("/custom")
     public ResponseEntity<ProductivityReportDTO> getCustomReport(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        return ResponseEntity.ok(reportService.generateReport(startDate, endDate));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        return ResponseEntity.ok(reportService.generateReport(startDate, endDate, includeArchived));
+    }
+    
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Integer> rebuildRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        int days = startDate == null
+                ? rollupService.rebuildAll()
+                : rollupService.rebuild(startDate, endDate != null ? endDate : LocalDate.now());
+        activityColumnStore.reload();
+        return ResponseEntity.ok(days);
+    }
+    
+    @PostMapping("/archive")
+    public ResponseEntity<Integer> archiveSessions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        return ResponseEntity.ok(retentionService.archive(before != null ? before : retentionService.horizon()));
     }
 }
-
@@ -1,13 +1,23 @@
 package com.focustrack.controller;
 
+import com.focustrack.dto.SessionCounterDriftDTO;
 import com.focustrack.dto.SessionDTO;
+import com.focustrack.dto.SessionFilter;
+import com.focustrack.dto.SessionPageDTO;
 import com.focustrack.model.Session;
+import com.focustrack.service.SessionCounterCheck;
 import com.focustrack.service.SessionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 
 @RestController
@@ -16,7 +26,10 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class SessionController {
     
+    private static final int MAX_PAGE_SIZE = 500;
+    
     private final SessionService sessionService;
+    private final SessionCounterCheck sessionCounterCheck;
     
     @PostMapping
     public ResponseEntity<SessionDTO> createSession(
@@ -34,14 +47,56 @@ public class SessionController {
     }
     
     @GetMapping
-    public ResponseEntity<List<SessionDTO>> getAllSessions() {
-        return ResponseEntity.ok(sessionService.getAllSessions());
+    public ResponseEntity<List<SessionDTO>> getAllSessions(@RequestParam(required = false) String include) {
+        return ResponseEntity.ok(sessionService.getAllSessions(includesActivities(include)));
+    }
+    
+    @GetMapping("/page")
+    public ResponseEntity<SessionPageDTO> getSessionPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit,
+            @RequestParam(required = false) Session.SessionStatus status,
+            @RequestParam(required = false) Session.SessionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            SessionFilter filter = new SessionFilter(status, type, startDate, endDate);
+            return ResponseEntity.ok(sessionService.getSessionPage(filter, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSessions(
+            @RequestParam(required = false) Session.SessionStatus status,
+            @RequestParam(required = false) Session.SessionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        SessionFilter filter = new SessionFilter(status, type, startDate, endDate);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> sessionService.writeSessions(filter, out));
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<SessionDTO> getSessionById(@PathVariable Long id) {
+    public ResponseEntity<SessionDTO> getSessionById(
+            @PathVariable Long id,
+            @RequestParam(required = false) String include) {
         try {
-            return ResponseEntity.ok(sessionService.getSessionById(id));
+            return ResponseEntity.ok(sessionService.getSessionById(id, includesActivities(include)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(sessionService.subscribe(id));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -73,5 +128,14 @@ public class SessionController {
             return ResponseEntity.notFound().build();
         }
     }
+    
+    @PostMapping("/counters/check")
+    public ResponseEntity<List<SessionCounterDriftDTO>> checkCounters(
+            @RequestParam(required = false, defaultValue = "false") boolean repair) {
+        return ResponseEntity.ok(sessionCounterCheck.check(repair));
+    }
+    
+    private static boolean includesActivities(String include) {
+        return include != null && Arrays.asList(include.split(",")).contains("activities");
+    }
 }
-
@@ -0,0 +1,14 @@
+package com.focustrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityBatchRequest {
+    private List<ActivityEvent> events;
+}
@@ -0,0 +1,38 @@
+package com.focustrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityBatchResponse {
+    private int accepted;
+    private int rejected;
+    private List<EventResult> results;
+    
+    public static ActivityBatchResponse of(List<EventResult> results) {
+        int accepted = (int) results.stream()
+                .filter(r -> r.getStatus() == EventStatus.ACCEPTED)
+                .count();
+        return new ActivityBatchResponse(accepted, results.size() - accepted, results);
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EventResult {
+        private int index;
+        private Long sessionId;
+        private EventStatus status;
+        private Long activityId;
+        private String message;
+    }
+    
+    public enum EventStatus {
+        ACCEPTED, REJECTED
+    }
+}
@@ -0,0 +1,17 @@
+package com.focustrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityEvent {
+    private Long sessionId;
+    private String appName;
+    private String windowTitle;
+    private LocalDateTime timestamp;
+}
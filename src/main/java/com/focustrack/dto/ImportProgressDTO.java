@@ -0,0 +1,34 @@
+package com.focustrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * State of a bulk import, as of its last committed chunk.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgressDTO {
+    private long id;
+    private String source;
+    private String format;
+    private ImportStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    // Sessions created, already present from an earlier run, and invalid
+    private long sessionsImported;
+    private long sessionsSkipped;
+    private long sessionsRejected;
+    private long activitiesImported;
+    // Why sessions were rejected (the first few), or why the import failed
+    private List<String> errors;
+    
+    public enum ImportStatus {
+        RUNNING, COMPLETED, FAILED
+    }
+}
@@ -0,0 +1,22 @@
+package com.focustrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A session whose stored counters differ from the sums over its activities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionCounterDriftDTO {
+    private Long sessionId;
+    private long storedTotalSeconds;
+    private long storedFocusedSeconds;
+    private long storedDistractedSeconds;
+    private long actualTotalSeconds;
+    private long actualFocusedSeconds;
+    private long actualDistractedSeconds;
+    private boolean repaired;
+}
@@ -0,0 +1,28 @@
+package com.focustrack.dto;
+
+import com.focustrack.model.Session;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Running totals of a session, pushed to live subscribers whenever they change.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionCountersDTO {
+    private Long sessionId;
+    private Session.SessionStatus status;
+    private long totalDurationSeconds;
+    private long focusedDurationSeconds;
+    private long distractedDurationSeconds;
+    
+    public static SessionCountersDTO fromEntity(Session session) {
+        return new SessionCountersDTO(session.getId(),
+                session.getStatus(),
+                session.getTotalDurationSeconds(),
+                session.getFocusedDurationSeconds(),
+                session.getDistractedDurationSeconds());
+    }
+}
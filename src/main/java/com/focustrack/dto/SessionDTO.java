@@ -1,5 +1,6 @@
 package com.focustrack.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.focustrack.model.Session;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -21,9 +22,35 @@ public class SessionDTO {
     private Long totalDurationSeconds;
     private Long focusedDurationSeconds;
     private Long distractedDurationSeconds;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<ActivityDTO> activities;
     
+    /**
+     * Summary without activities, used by JPQL constructor expressions.
+     */
+    public SessionDTO(Long id, String sessionName, LocalDateTime startTime, LocalDateTime endTime,
+                      Session.SessionStatus status, Session.SessionType type, Long totalDurationSeconds,
+                      Long focusedDurationSeconds, Long distractedDurationSeconds) {
+        this(id, sessionName, startTime, endTime, status, type, totalDurationSeconds,
+                focusedDurationSeconds, distractedDurationSeconds, null);
+    }
+    
     public static SessionDTO fromEntity(Session session) {
+        SessionDTO dto = summaryOf(session);
+        
+        if (session.getActivities() != null) {
+            dto.setActivities(session.getActivities().stream()
+                    .map(ActivityDTO::fromEntity)
+                    .toList());
+        }
+        
+        return dto;
+    }
+    
+    /**
+     * Converts the session fields only, leaving activities unset so the lazy collection is not loaded.
+     */
+    public static SessionDTO summaryOf(Session session) {
         SessionDTO dto = new SessionDTO();
         dto.setId(session.getId());
         dto.setSessionName(session.getSessionName());
@@ -34,13 +61,6 @@ public class SessionDTO {
         dto.setTotalDurationSeconds(session.getTotalDurationSeconds());
         dto.setFocusedDurationSeconds(session.getFocusedDurationSeconds());
         dto.setDistractedDurationSeconds(session.getDistractedDurationSeconds());
-        
-        if (session.getActivities() != null) {
-            dto.setActivities(session.getActivities().stream()
-                    .map(ActivityDTO::fromEntity)
-                    .toList());
-        }
-        
         return dto;
     }
 }
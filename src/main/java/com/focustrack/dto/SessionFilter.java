@@ -0,0 +1,18 @@
+package com.focustrack.dto;
+
+import com.focustrack.model.Session;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionFilter {
+    private Session.SessionStatus status;
+    private Session.SessionType type;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+}
@@ -0,0 +1,45 @@
+package com.focustrack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionPageDTO {
+    private List<SessionDTO> items;
+    private String nextCursor;
+    
+    /**
+     * Position after a session in (startTime DESC, id DESC) order, exchanged with clients
+     * as an opaque string.
+     */
+    public record Cursor(LocalDateTime startTime, Long id) {
+        
+        public static Cursor after(SessionDTO session) {
+            return new Cursor(session.getStartTime(), session.getId());
+        }
+        
+        public String encode() {
+            String raw = startTime + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        public static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
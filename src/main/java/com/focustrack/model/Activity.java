@@ -1,14 +1,21 @@
 package com.focustrack.model;
 
+import com.focustrack.service.ActivityNamesListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "activities")
+@Table(name = "activities", indexes = {
+        @Index(name = "idx_activities_session_end_time", columnList = "session_id, end_time"),
+        @Index(name = "idx_activities_session_start_time", columnList = "session_id, start_time")
+})
+@EntityListeners(ActivityNamesListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,12 +29,33 @@ public class Activity {
     @JoinColumn(name = "session_id", nullable = false)
     private Session session;
     
-    @Column(nullable = false)
+    // Names are stored as ids into the applications and window_titles dictionaries;
+    // ActivityNamesListener translates between the two on persist and load
+    @Transient
     private String appName;
     
-    @Column(nullable = false)
+    @Transient
     private String windowTitle;
     
+    @Column(name = "app_id", nullable = false)
+    private Integer appId;
+    
+    @Column(name = "title_id", nullable = false)
+    private Integer titleId;
+    
+    // Read-only; mapped for the foreign keys and for queries joining the names
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "app_id", insertable = false, updatable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Application application;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "title_id", insertable = false, updatable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private WindowTitle title;
+    
     @Column(nullable = false)
     private LocalDateTime startTime;
     
@@ -49,7 +77,8 @@ public class Activity {
             startTime = LocalDateTime.now();
         }
         if (type == null) {
-            type = determineActivityType(appName, windowTitle);
+            // Callers classify through ActivityClassifier; this only guards the NOT NULL column
+            type = ActivityType.NEUTRAL;
         }
     }
     
@@ -60,35 +89,6 @@ public class Activity {
         }
     }
     
-    private ActivityType determineActivityType(String appName, String windowTitle) {
-        String lowerApp = appName.toLowerCase();
-        String lowerTitle = windowTitle.toLowerCase();
-        
-        // Distracting apps
-        if (lowerApp.contains("youtube") || lowerTitle.contains("youtube") ||
-            lowerApp.contains("instagram") || lowerTitle.contains("instagram") ||
-            lowerApp.contains("facebook") || lowerTitle.contains("facebook") ||
-            lowerApp.contains("twitter") || lowerTitle.contains("twitter") ||
-            lowerApp.contains("tiktok") || lowerTitle.contains("tiktok") ||
-            lowerApp.contains("netflix") || lowerTitle.contains("netflix") ||
-            lowerTitle.contains("reddit")) {
-            return ActivityType.DISTRACTING;
-        }
-        
-        // Productive apps
-        if (lowerApp.contains("code") || lowerApp.contains("ide") ||
-            lowerApp.contains("intellij") || lowerApp.contains("eclipse") ||
-            lowerApp.contains("vs code") || lowerApp.contains("visual studio") ||
-            lowerTitle.contains("github") || lowerTitle.contains("stackoverflow") ||
-            lowerApp.contains("notion") || lowerApp.contains("obsidian") ||
-            lowerApp.contains("word") || lowerApp.contains("excel") ||
-            lowerApp.contains("powerpoint") || lowerApp.contains("pdf")) {
-            return ActivityType.PRODUCTIVE;
-        }
-        
-        return ActivityType.NEUTRAL;
-    }
-    
     public enum ActivityType {
         PRODUCTIVE, DISTRACTING, NEUTRAL
     }
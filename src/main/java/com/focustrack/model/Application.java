@@ -0,0 +1,27 @@
+package com.focustrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Dictionary of application names; activities reference it by id. Rows are never
+ * changed or deleted once created.
+ */
+@Entity
+@Table(name = "applications", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_applications_name", columnNames = "name")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Application {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    
+    @Column(nullable = false)
+    private String name;
+}
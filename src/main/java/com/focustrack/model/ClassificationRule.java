@@ -0,0 +1,67 @@
+package com.focustrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "classification_rules")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClassificationRule {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String keyword;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MatchTarget target;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Activity.ActivityType type;
+    
+    @Column(nullable = false)
+    private Integer priority;
+    
+    @Column(nullable = false)
+    private Boolean enabled;
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    public ClassificationRule(String keyword, MatchTarget target, Activity.ActivityType type, int priority) {
+        this.keyword = keyword;
+        this.target = target;
+        this.type = type;
+        this.priority = priority;
+        this.enabled = true;
+    }
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+        if (target == null) {
+            target = MatchTarget.ANY;
+        }
+        if (priority == null) {
+            priority = 0;
+        }
+        if (enabled == null) {
+            enabled = true;
+        }
+    }
+    
+    public enum MatchTarget {
+        APP_NAME, WINDOW_TITLE, ANY
+    }
+}
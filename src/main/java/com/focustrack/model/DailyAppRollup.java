@@ -0,0 +1,42 @@
+package com.focustrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "daily_app_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_app_rollups_date_app_type", columnNames = {"rollup_date", "app_name", "type"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyAppRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private LocalDate rollupDate;
+    
+    @Column(nullable = false)
+    private String appName;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Activity.ActivityType type;
+    
+    @Column(nullable = false)
+    private Long durationSeconds;
+    
+    public DailyAppRollup(LocalDate rollupDate, String appName, Activity.ActivityType type, long durationSeconds) {
+        this.rollupDate = rollupDate;
+        this.appName = appName;
+        this.type = type;
+        this.durationSeconds = durationSeconds;
+    }
+}
@@ -0,0 +1,47 @@
+package com.focustrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "daily_rollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, unique = true)
+    private LocalDate rollupDate;
+    
+    @Column(nullable = false)
+    private Long productiveSeconds = 0L;
+    
+    @Column(nullable = false)
+    private Long distractingSeconds = 0L;
+    
+    @Column(nullable = false)
+    private Long neutralSeconds = 0L;
+    
+    @Column(nullable = false)
+    private Long sessionCount = 0L;
+    
+    public DailyRollup(LocalDate rollupDate) {
+        this.rollupDate = rollupDate;
+    }
+    
+    public long getSeconds(Activity.ActivityType type) {
+        return switch (type) {
+            case PRODUCTIVE -> productiveSeconds;
+            case DISTRACTING -> distractingSeconds;
+            case NEUTRAL -> neutralSeconds;
+        };
+    }
+}
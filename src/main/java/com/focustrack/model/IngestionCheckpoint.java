@@ -0,0 +1,25 @@
+package com.focustrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sequence number of the last event log record applied to the database. It is
+ * advanced in the same transaction that applies the records, so replaying the log
+ * after a crash never applies a record twice.
+ */
+@Entity
+@Table(name = "ingestion_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionCheckpoint {
+    
+    @Id
+    private String logName;
+    
+    @Column(nullable = false)
+    private Long appliedSequence = 0L;
+}
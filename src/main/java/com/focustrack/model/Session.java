@@ -10,7 +10,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "sessions")
+@Table(name = "sessions", indexes = {
+        @Index(name = "idx_sessions_start_time_id", columnList = "start_time, id"),
+        @Index(name = "idx_sessions_start_time_desc", columnList = "start_time DESC, id DESC"),
+        @Index(name = "idx_sessions_status_start_time", columnList = "status, start_time")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,8 +39,12 @@ public class Session {
     @Enumerated(EnumType.STRING)
     private SessionType type;
     
+    // Sums of the recorded durations of the session's activities, updated as they end
+    @Column(nullable = false)
     private Long totalDurationSeconds;
+    @Column(nullable = false)
     private Long focusedDurationSeconds;
+    @Column(nullable = false)
     private Long distractedDurationSeconds;
     
     @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true)
@@ -45,6 +53,10 @@ public class Session {
     @Column(nullable = false)
     private LocalDateTime createdAt;
     
+    // Set on sessions created by ImportService: the source and the session's id there
+    @Column(unique = true)
+    private String importKey;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -57,6 +69,15 @@ public class Session {
         if (type == null) {
             type = SessionType.FOCUS;
         }
+        if (totalDurationSeconds == null) {
+            totalDurationSeconds = 0L;
+        }
+        if (focusedDurationSeconds == null) {
+            focusedDurationSeconds = 0L;
+        }
+        if (distractedDurationSeconds == null) {
+            distractedDurationSeconds = 0L;
+        }
     }
     
     public enum SessionStatus {
@@ -0,0 +1,27 @@
+package com.focustrack.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Dictionary of window titles; activities reference it by id. Rows are never changed
+ * or deleted once created.
+ */
+@Entity
+@Table(name = "window_titles", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_window_titles_title", columnNames = "title")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WindowTitle {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    
+    @Column(nullable = false)
+    private String title;
+}
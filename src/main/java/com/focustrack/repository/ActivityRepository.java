@@ -3,12 +3,14 @@ package com.focustrack.repository;
 import com.focustrack.model.Activity;
 import com.focustrack.model.Session;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ActivityRepository extends JpaRepository<Activity, Long> {
@@ -18,9 +20,13 @@ public interface ActivityRepository extends JpaRepository<Activity, Long> {
     @Query("SELECT a FROM Activity a WHERE a.session = :session ORDER BY a.startTime ASC")
     List<Activity> findBySessionOrderByStartTime(@Param("session") Session session);
     
-    @Query("SELECT a.appName, SUM(a.durationSeconds) as totalSeconds " +
+    Optional<Activity> findFirstBySessionAndEndTimeIsNullOrderByStartTimeDesc(Session session);
+    
+    Optional<Activity> findFirstBySessionOrderByStartTimeDescIdDesc(Session session);
+    
+    @Query("SELECT a.appId, SUM(a.durationSeconds) as totalSeconds " +
            "FROM Activity a WHERE a.session.startTime >= :startDate AND a.session.startTime <= :endDate " +
-           "GROUP BY a.appName ORDER BY totalSeconds DESC")
+           "GROUP BY a.appId ORDER BY totalSeconds DESC")
     List<Object[]> getAppUsageStats(@Param("startDate") LocalDateTime startDate, 
                                      @Param("endDate") LocalDateTime endDate);
     
@@ -29,5 +35,24 @@ public interface ActivityRepository extends JpaRepository<Activity, Long> {
            "GROUP BY a.type")
     List<Object[]> getActivityTypeStats(@Param("startDate") LocalDateTime startDate, 
                                          @Param("endDate") LocalDateTime endDate);
+    
+    /**
+     * Durations per (app id, type); app ids resolve through NameDictionary.
+     */
+    @Query("SELECT a.appId, a.type, SUM(a.durationSeconds) " +
+           "FROM Activity a WHERE a.session.startTime >= :startDate AND a.session.startTime <= :endDate " +
+           "AND a.durationSeconds IS NOT NULL " +
+           "GROUP BY a.appId, a.type")
+    List<Object[]> getAppTypeUsageStats(@Param("startDate") LocalDateTime startDate,
+                                        @Param("endDate") LocalDateTime endDate);
+    
+    @Query("SELECT a.session.id FROM Activity a WHERE a.id = :id")
+    Optional<Long> findSessionIdById(@Param("id") Long id);
+    
+    @Modifying
+    @Query("DELETE FROM Activity a WHERE a.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
+    
+    @Query("SELECT COUNT(a) FROM Activity a WHERE a.session.id IN :sessionIds")
+    long countBySessionIds(@Param("sessionIds") List<Long> sessionIds);
 }
-
@@ -0,0 +1,18 @@
+package com.focustrack.repository;
+
+import com.focustrack.model.ClassificationRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ClassificationRuleRepository extends JpaRepository<ClassificationRule, Long> {
+    
+    List<ClassificationRule> findByEnabledTrueOrderByIdAsc();
+    
+    @Query("SELECT MAX(r.updatedAt) FROM ClassificationRule r")
+    LocalDateTime findLastUpdatedAt();
+}
@@ -0,0 +1,34 @@
+package com.focustrack.repository;
+
+import com.focustrack.model.Activity;
+import com.focustrack.model.DailyAppRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyAppRollupRepository extends JpaRepository<DailyAppRollup, Long> {
+    
+    @Query("SELECT r.appName, r.type, SUM(r.durationSeconds) " +
+           "FROM DailyAppRollup r WHERE r.rollupDate >= :startDate AND r.rollupDate <= :endDate " +
+           "GROUP BY r.appName, r.type")
+    List<Object[]> getAppTypeUsageStats(@Param("startDate") LocalDate startDate,
+                                        @Param("endDate") LocalDate endDate);
+    
+    @Modifying
+    @Query("UPDATE DailyAppRollup r SET r.durationSeconds = r.durationSeconds + :seconds " +
+           "WHERE r.rollupDate = :date AND r.appName = :appName AND r.type = :type")
+    int addUsage(@Param("date") LocalDate date,
+                 @Param("appName") String appName,
+                 @Param("type") Activity.ActivityType type,
+                 @Param("seconds") long seconds);
+    
+    @Modifying
+    @Query("DELETE FROM DailyAppRollup r WHERE r.rollupDate = :date")
+    void deleteByRollupDate(@Param("date") LocalDate date);
+}
@@ -0,0 +1,33 @@
+package com.focustrack.repository;
+
+import com.focustrack.model.DailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyRollupRepository extends JpaRepository<DailyRollup, Long> {
+    
+    List<DailyRollup> findByRollupDateBetween(LocalDate startDate, LocalDate endDate);
+    
+    @Modifying
+    @Query("UPDATE DailyRollup r SET r.productiveSeconds = r.productiveSeconds + :productive, " +
+           "r.distractingSeconds = r.distractingSeconds + :distracting, " +
+           "r.neutralSeconds = r.neutralSeconds + :neutral, " +
+           "r.sessionCount = r.sessionCount + :sessions " +
+           "WHERE r.rollupDate = :date")
+    int addTotals(@Param("date") LocalDate date,
+                  @Param("productive") long productiveSeconds,
+                  @Param("distracting") long distractingSeconds,
+                  @Param("neutral") long neutralSeconds,
+                  @Param("sessions") long sessionCount);
+    
+    @Modifying
+    @Query("DELETE FROM DailyRollup r WHERE r.rollupDate = :date")
+    void deleteByRollupDate(@Param("date") LocalDate date);
+}
@@ -3,6 +3,9 @@ package com.focustrack.repository;
 import com.focustrack.model.FocusEntry;
 import com.focustrack.model.Session;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,5 +14,8 @@ import java.util.List;
 public interface FocusEntryRepository extends JpaRepository<FocusEntry, Long> {
     
     List<FocusEntry> findBySession(Session session);
+    
+    @Modifying
+    @Query("DELETE FROM FocusEntry f WHERE f.session.id IN :sessionIds")
+    int deleteBySessionIds(@Param("sessionIds") List<Long> sessionIds);
 }
-
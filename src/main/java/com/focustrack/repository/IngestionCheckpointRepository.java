@@ -0,0 +1,16 @@
+package com.focustrack.repository;
+
+import com.focustrack.model.IngestionCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionCheckpointRepository extends JpaRepository<IngestionCheckpoint, String> {
+    
+    @Modifying
+    @Query("UPDATE IngestionCheckpoint c SET c.appliedSequence = :sequence WHERE c.logName = :logName")
+    int advance(@Param("logName") String logName, @Param("sequence") long sequence);
+}
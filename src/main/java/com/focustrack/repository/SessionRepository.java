@@ -1,7 +1,12 @@
 package com.focustrack.repository;
 
+import com.focustrack.dto.SessionDTO;
 import com.focustrack.model.Session;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,17 +16,85 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface SessionRepository extends JpaRepository<Session, Long> {
+public interface SessionRepository extends JpaRepository<Session, Long>, SessionSummaryQueries {
     
     List<Session> findByStatus(Session.SessionStatus status);
     
     Optional<Session> findFirstByStatusOrderByStartTimeDesc(Session.SessionStatus status);
     
+    Optional<Session> findFirstByOrderByStartTimeAsc();
+    
+    long countByStartTimeBetween(LocalDateTime startDate, LocalDateTime endDate);
+    
     @Query("SELECT s FROM Session s WHERE s.startTime >= :startDate AND s.startTime <= :endDate ORDER BY s.startTime DESC")
     List<Session> findByDateRange(@Param("startDate") LocalDateTime startDate, 
                                    @Param("endDate") LocalDateTime endDate);
     
-    @Query("SELECT s FROM Session s WHERE DATE(s.startTime) = DATE(:date) ORDER BY s.startTime DESC")
-    List<Session> findByDate(@Param("date") LocalDateTime date);
+    @Query("SELECT s.startTime FROM Session s WHERE s.startTime >= :startDate AND s.startTime <= :endDate")
+    List<LocalDateTime> findStartTimesByDateRange(@Param("startDate") LocalDateTime startDate,
+                                                  @Param("endDate") LocalDateTime endDate);
+    
+    /**
+     * Sessions started on the day of the given time, as a range over start_time so that
+     * idx_sessions_start_time_id can be used.
+     */
+    default List<Session> findByDate(LocalDateTime date) {
+        LocalDateTime dayStart = date.toLocalDate().atStartOfDay();
+        return findStartedInRange(dayStart, dayStart.plusDays(1));
+    }
+    
+    @Query("SELECT s FROM Session s WHERE s.startTime >= :from AND s.startTime < :until ORDER BY s.startTime DESC")
+    List<Session> findStartedInRange(@Param("from") LocalDateTime from, @Param("until") LocalDateTime until);
+    
+    String SUMMARY = "SELECT new com.focustrack.dto.SessionDTO(s.id, s.sessionName, s.startTime, s.endTime, " +
+                     "s.status, s.type, s.totalDurationSeconds, s.focusedDurationSeconds, s.distractedDurationSeconds) " +
+                     "FROM Session s ";
+    
+    @Query("SELECT MIN(s.startTime) FROM Session s WHERE s.status = :status AND s.startTime < :before")
+    Optional<LocalDateTime> findFirstStartTime(@Param("status") Session.SessionStatus status,
+                                               @Param("before") LocalDateTime before);
+    
+    @Modifying
+    @Query("DELETE FROM Session s WHERE s.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
+    
+    @Query(SUMMARY + "WHERE s.id = :id")
+    Optional<SessionDTO> findSummaryById(@Param("id") Long id);
+    
+    /**
+     * Loads a session and locks its row until the transaction ends. Activity writes
+     * take this lock so that concurrent writers of one session are serialized.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Session s WHERE s.id = :id")
+    Optional<Session> findByIdForUpdate(@Param("id") Long id);
+    
+    /**
+     * Locking variant for several sessions; rows are locked in id order to avoid
+     * deadlocks between batches.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Session s WHERE s.id IN :ids ORDER BY s.id")
+    List<Session> findAllByIdForUpdate(@Param("ids") List<Long> ids);
+    
+    @Query(SUMMARY + "WHERE s.status = :status ORDER BY s.startTime DESC")
+    List<SessionDTO> findSummariesByStatus(@Param("status") Session.SessionStatus status, Pageable pageable);
+    
+    @Query(SUMMARY + "ORDER BY s.id")
+    List<SessionDTO> findAllSummaries();
+    
+    @Query(SUMMARY + "WHERE s.startTime >= :startDate AND s.startTime <= :endDate ORDER BY s.startTime DESC")
+    List<SessionDTO> findSummariesByDateRange(@Param("startDate") LocalDateTime startDate,
+                                              @Param("endDate") LocalDateTime endDate);
+    
+    @Query("SELECT s FROM Session s LEFT JOIN FETCH s.activities WHERE s.id = :id")
+    Optional<Session> findWithActivitiesById(@Param("id") Long id);
+    
+    @Query("SELECT s FROM Session s LEFT JOIN FETCH s.activities ORDER BY s.id")
+    List<Session> findAllWithActivities();
+    
+    @Query("SELECT s FROM Session s LEFT JOIN FETCH s.activities " +
+           "WHERE s.startTime >= :startDate AND s.startTime <= :endDate ORDER BY s.startTime DESC")
+    List<Session> findByDateRangeWithActivities(@Param("startDate") LocalDateTime startDate,
+                                                @Param("endDate") LocalDateTime endDate);
 }
-
@@ -0,0 +1,28 @@
+package com.focustrack.repository;
+
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.dto.SessionFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Session listings with optional filters. The queries only contain the predicates of
+ * the filters that are set, so that the database can use the sessions indexes for
+ * them; an "(:param IS NULL OR ...)" form is planned as a table scan.
+ */
+public interface SessionSummaryQueries {
+    
+    /**
+     * Sessions matching the filter, newest first (ties by id, descending), that come
+     * after the cursor position if one is given.
+     */
+    List<SessionDTO> findPage(SessionFilter filter, LocalDateTime cursorStart, Long cursorId, int limit);
+    
+    /**
+     * All sessions matching the filter, newest first, read from a database cursor.
+     * The stream must be closed, within the transaction it was opened in.
+     */
+    Stream<SessionDTO> streamAll(SessionFilter filter);
+}
@@ -0,0 +1,72 @@
+package com.focustrack.repository;
+
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.dto.SessionFilter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+class SessionSummaryQueriesImpl implements SessionSummaryQueries {
+    
+    private static final String ORDER = " ORDER BY s.startTime DESC, s.id DESC";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<SessionDTO> findPage(SessionFilter filter, LocalDateTime cursorStart, Long cursorId, int limit) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringBuilder where = filter(filter, parameters);
+        if (cursorStart != null) {
+            // Written as a range on start_time so that it bounds the index scan; an OR of
+            // the two cases would not
+            where.append(" AND s.startTime <= :cursorStart AND (s.startTime < :cursorStart OR s.id < :cursorId)");
+            parameters.put("cursorStart", cursorStart);
+            parameters.put("cursorId", cursorId);
+        }
+        return query(where, parameters).setMaxResults(limit).getResultList();
+    }
+    
+    @Override
+    public Stream<SessionDTO> streamAll(SessionFilter filter) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringBuilder where = filter(filter, parameters);
+        return query(where, parameters).setHint(HINT_FETCH_SIZE, 500).getResultStream();
+    }
+    
+    private StringBuilder filter(SessionFilter filter, Map<String, Object> parameters) {
+        StringBuilder where = new StringBuilder("WHERE 1 = 1");
+        if (filter.getStatus() != null) {
+            where.append(" AND s.status = :status");
+            parameters.put("status", filter.getStatus());
+        }
+        if (filter.getType() != null) {
+            where.append(" AND s.type = :type");
+            parameters.put("type", filter.getType());
+        }
+        if (filter.getStartDate() != null) {
+            where.append(" AND s.startTime >= :startDate");
+            parameters.put("startDate", filter.getStartDate());
+        }
+        if (filter.getEndDate() != null) {
+            where.append(" AND s.startTime <= :endDate");
+            parameters.put("endDate", filter.getEndDate());
+        }
+        return where;
+    }
+    
+    private TypedQuery<SessionDTO> query(StringBuilder where, Map<String, Object> parameters) {
+        TypedQuery<SessionDTO> query = entityManager.createQuery(
+                SessionRepository.SUMMARY + where + ORDER, SessionDTO.class);
+        parameters.forEach(query::setParameter);
+        return query;
+    }
+}
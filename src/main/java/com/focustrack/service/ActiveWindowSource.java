@@ -0,0 +1,19 @@
+package com.focustrack.service;
+
+/**
+ * Source of the currently focused window, polled by the activity sampler.
+ * 
+ * Implementations must be cheap enough to call every sampling interval and must not
+ * throw when no window information is available (e.g. on a headless server); they
+ * return null instead.
+ */
+public interface ActiveWindowSource {
+    
+    /**
+     * @return The focused window, or null if it cannot be determined right now
+     */
+    ActiveWindow currentWindow();
+    
+    record ActiveWindow(String appName, String windowTitle) {
+    }
+}
@@ -0,0 +1,211 @@
+package com.focustrack.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.focustrack.model.Activity;
+import com.focustrack.model.Session;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed files of archived sessions, one per month of session start, written by
+ * {@link RetentionService}.
+ * 
+ * A file ("sessions-2024-01.ndjson.gz") is gzip-compressed NDJSON with one
+ * {@link ArchivedSession} per line, activities included, with app names and window
+ * titles spelled out so that the file can be read without the database. Sessions added
+ * to an existing month are written as a further gzip member, which readers see as one
+ * stream. The new file is written next to the old one and moved over it, so readers
+ * see either version and a crash leaves the previous file intact; sessions already in
+ * the file are not written again.
+ */
+@Component
+public class ActivityArchive {
+    
+    private static final String PREFIX = "sessions-";
+    private static final String SUFFIX = ".ndjson.gz";
+    private static final int BUFFER_BYTES = 64 * 1024;
+    
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader sessionReader;
+    private final Timer scanTimer;
+    
+    public ActivityArchive(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${focustrack.retention.dir:./data/archive}") String directory) {
+        this.directory = Path.of(directory);
+        this.objectMapper = objectMapper;
+        this.sessionReader = objectMapper.readerFor(ArchivedSession.class);
+        this.scanTimer = Timer.builder("retention.archive.scan")
+                .description("Time to stream archived sessions for a report or rollup rebuild")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * The archived months, oldest first.
+     */
+    public Set<YearMonth> months() {
+        Set<YearMonth> months = new TreeSet<>();
+        if (!Files.isDirectory(directory)) {
+            return months;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> months.add(YearMonth.parse(
+                            name.substring(PREFIX.length(), name.length() - SUFFIX.length()))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the archive directory", e);
+        }
+        return months;
+    }
+    
+    public Optional<YearMonth> firstMonth() {
+        return months().stream().findFirst();
+    }
+    
+    /**
+     * Adds sessions to a month's file. The source is called once and passes each session
+     * to the given consumer; sessions the file already holds are skipped.
+     * @return The number of sessions written
+     */
+    public synchronized int append(YearMonth month, Consumer<Consumer<ArchivedSession>> source) throws IOException {
+        Files.createDirectories(directory);
+        Path file = fileOf(month);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        Set<Long> archived = new HashSet<>();
+        if (Files.exists(file)) {
+            read(file, session -> archived.add(session.id()));
+        }
+        
+        int written;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                if (Files.exists(file)) {
+                    try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+                        existing.transferTo(0, existing.size(), channel);
+                    }
+                }
+                // Not closed: that would close the channel before it is forced
+                GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), BUFFER_BYTES);
+                int[] count = new int[1];
+                source.accept(session -> {
+                    if (archived.add(session.id())) {
+                        try {
+                            writer.write(objectMapper.writeValueAsString(session));
+                            writer.write('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        count[0]++;
+                    }
+                });
+                writer.flush();
+                gzip.finish();
+                channel.force(true);
+                written = count[0];
+            }
+            if (written > 0) {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return written;
+    }
+    
+    /**
+     * Streams the archived sessions that started within the given range (inclusive),
+     * month by month. Only the months overlapping the range are read.
+     */
+    public void scan(LocalDateTime from, LocalDateTime to, Consumer<ArchivedSession> consumer) {
+        Set<YearMonth> months = months();
+        YearMonth last = YearMonth.from(to);
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(last); month = month.plusMonths(1)) {
+            if (!months.contains(month)) {
+                continue;
+            }
+            Path file = fileOf(month);
+            scanTimer.record(() -> {
+                try {
+                    read(file, session -> {
+                        if (!session.startTime().isBefore(from) && !session.startTime().isAfter(to)) {
+                            consumer.accept(session);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read archive " + file, e);
+                }
+            });
+        }
+    }
+    
+    private void read(Path file, Consumer<ArchivedSession> consumer) throws IOException {
+        // GZIPInputStream reads concatenated members as one stream
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES));
+             MappingIterator<ArchivedSession> sessions = sessionReader.readValues(in)) {
+            while (sessions.hasNextValue()) {
+                consumer.accept(sessions.nextValue());
+            }
+        }
+    }
+    
+    private Path fileOf(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX);
+    }
+    
+    public record ArchivedSession(Long id,
+                                  String sessionName,
+                                  LocalDateTime startTime,
+                                  LocalDateTime endTime,
+                                  Session.SessionStatus status,
+                                  Session.SessionType type,
+                                  Long totalDurationSeconds,
+                                  Long focusedDurationSeconds,
+                                  Long distractedDurationSeconds,
+                                  LocalDateTime createdAt,
+                                  List<ArchivedActivity> activities) {
+    }
+    
+    public record ArchivedActivity(Long id,
+                                   String appName,
+                                   String windowTitle,
+                                   LocalDateTime startTime,
+                                   LocalDateTime endTime,
+                                   Activity.ActivityType type,
+                                   Long durationSeconds,
+                                   LocalDateTime createdAt) {
+    }
+}
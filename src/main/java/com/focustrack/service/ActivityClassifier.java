@@ -0,0 +1,24 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+
+/**
+ * Classifies an application/window pair as productive, distracting or neutral.
+ * 
+ * Implementations are called on the ingestion hot path and must be thread-safe.
+ */
+public interface ActivityClassifier {
+    
+    /**
+     * Classifies an activity.
+     * @param appName The application name (e.g., "Chrome")
+     * @param windowTitle The window or tab title (e.g., "YouTube - Google Chrome")
+     * @return The activity type; never null
+     */
+    Activity.ActivityType classify(String appName, String windowTitle);
+    
+    /**
+     * Reloads the classification rules from their source.
+     */
+    void reload();
+}
@@ -0,0 +1,361 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read-optimized, columnar copy of the ended activities, for range aggregates over
+ * primitive arrays instead of rows or entities. Enabled with
+ * focustrack.reports.column-store.enabled.
+ * 
+ * One row per activity that has a recorded duration, ordered by id:
+ * <pre>
+ *   long[] ids            8 bytes
+ *   long[] sessionStarts  8 bytes  epoch seconds (UTC) of the session start, which
+ *                                  reports attribute the activity to
+ *   long[] starts         8 bytes  epoch seconds of the activity start
+ *   long[] ends           8 bytes  start plus the recorded duration, so that
+ *                                  ends - starts is exactly durationSeconds
+ *   int[]  apps           4 bytes  application id (see {@link NameDictionary})
+ *   byte[] types          1 byte   ActivityType ordinal
+ * </pre>
+ * That is 37 bytes per activity, up to twice that while the arrays have room to grow.
+ * A managed {@link Activity} entity
+ * with its boxed ids, three LocalDateTime values and two strings takes roughly 500
+ * bytes before Hibernate's own bookkeeping. ReportBenchmark (benchmark profile) compares
+ * the paths; run it with "-prof gc" to see the allocation per report.
+ * 
+ * The store is loaded before the web server starts. Afterwards, activities ended by a
+ * transaction are snapshotted just before it commits and applied once it has committed,
+ * so readers only see committed durations, and activities archived by
+ * {@link RetentionService} are dropped through {@link #remove}. Changes made to the
+ * table directly are only seen after {@link #reload}, or once handed to {@link #add}.
+ * Range bounds are compared at second resolution.
+ */
+@Slf4j
+@Component
+public class ActivityColumnStore implements SmartLifecycle {
+    
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Activity.ActivityType[] TYPES = Activity.ActivityType.values();
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NameDictionary nameDictionary;
+    private final boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] sessionStarts = new long[INITIAL_CAPACITY];
+    private long[] starts = new long[INITIAL_CAPACITY];
+    private long[] ends = new long[INITIAL_CAPACITY];
+    private int[] apps = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int size;
+    
+    private int maxAppId;
+    
+    private volatile boolean loaded;
+    
+    public ActivityColumnStore(JdbcTemplate jdbcTemplate,
+                               NameDictionary nameDictionary,
+                               MeterRegistry meterRegistry,
+                               @Value("${focustrack.reports.column-store.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nameDictionary = nameDictionary;
+        this.enabled = enabled;
+        
+        Gauge.builder("reports.column.store.rows", this, ActivityColumnStore::size)
+                .description("Activities held by the in-memory column store")
+                .register(meterRegistry);
+    }
+    
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Records that an activity's duration changed. Within a transaction the row is
+     * applied once the transaction has committed.
+     */
+    public void record(Activity activity) {
+        if (!loaded) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(List.of(Row.of(activity)));
+            return;
+        }
+        
+        @SuppressWarnings("unchecked")
+        Set<Activity> pending = (Set<Activity>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Activity> created = Collections.newSetFromMap(new IdentityHashMap<>());
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private List<Row> rows;
+                
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Ids are assigned and the session can still be read here
+                    rows = created.stream().map(Row::of).toList();
+                }
+                
+                @Override
+                public void afterCommit() {
+                    apply(rows);
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ActivityColumnStore.this);
+                }
+            });
+            pending = created;
+        }
+        pending.add(activity);
+    }
+    
+    /**
+     * Adds activities that were inserted into the table directly, e.g. by
+     * {@link ImportService}. Call after the inserting transaction has committed.
+     */
+    void add(List<Row> rows) {
+        if (!loaded || rows.isEmpty()) {
+            return;
+        }
+        apply(rows);
+    }
+    
+    /**
+     * Drops the given activities, e.g. once they have been archived and deleted. Call
+     * after the deleting transaction has committed. Ids the store does not hold are
+     * ignored.
+     */
+    public void remove(Collection<Long> activityIds) {
+        if (!loaded || activityIds.isEmpty()) {
+            return;
+        }
+        long[] removed = activityIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        lock.writeLock().lock();
+        try {
+            // One pass, moving the kept rows down over the removed ones
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (Arrays.binarySearch(removed, ids[i]) >= 0) {
+                    continue;
+                }
+                if (kept != i) {
+                    ids[kept] = ids[i];
+                    sessionStarts[kept] = sessionStarts[i];
+                    starts[kept] = starts[i];
+                    ends[kept] = ends[i];
+                    apps[kept] = apps[i];
+                    types[kept] = types[i];
+                }
+                kept++;
+            }
+            size = kept;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Sums the recorded durations per (app, type) over the activities whose session
+     * started within the given range (inclusive). Every (app, type) pair with at least
+     * one activity is reported, including pairs summing to zero.
+     */
+    public void aggregate(LocalDateTime from, LocalDateTime to, UsageConsumer consumer) {
+        long fromSeconds = epochSeconds(from);
+        long toSeconds = epochSeconds(to);
+        long[] totals;
+        boolean[] seen;
+        
+        lock.readLock().lock();
+        try {
+            totals = new long[(maxAppId + 1) * TYPES.length];
+            seen = new boolean[totals.length];
+            for (int i = 0; i < size; i++) {
+                long sessionStart = sessionStarts[i];
+                if (sessionStart < fromSeconds || sessionStart > toSeconds) {
+                    continue;
+                }
+                int slot = apps[i] * TYPES.length + types[i];
+                totals[slot] += ends[i] - starts[i];
+                seen[slot] = true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        for (int slot = 0; slot < totals.length; slot++) {
+            if (seen[slot]) {
+                consumer.accept(nameDictionary.applicationName(slot / TYPES.length),
+                        TYPES[slot % TYPES.length], totals[slot]);
+            }
+        }
+    }
+    
+    @Override
+    public void start() {
+        if (!loaded) {
+            reload();
+        }
+    }
+    
+    /**
+     * Replaces the contents of the store with the ended activities in the database.
+     * Does nothing while the store is disabled.
+     */
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            maxAppId = 0;
+            jdbcTemplate.query("SELECT a.id, s.start_time, a.start_time, a.duration_seconds, a.app_id, a.type " +
+                            "FROM activities a JOIN sessions s ON s.id = a.session_id " +
+                            "WHERE a.duration_seconds IS NOT NULL ORDER BY a.id",
+                    rs -> {
+                        applyRow(new Row(rs.getLong(1),
+                                epochSeconds(rs.getTimestamp(2)),
+                                epochSeconds(rs.getTimestamp(3)),
+                                rs.getLong(4),
+                                rs.getInt(5),
+                                Activity.ActivityType.valueOf(rs.getString(6))));
+                    });
+            loaded = true;
+            log.info("Loaded {} activities into the column store", size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void stop() {
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return loaded;
+    }
+    
+    
+    /**
+     * Loads before the ingestion queue replays its event log, so replayed activities
+     * are recorded.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+    
+    private void apply(List<Row> rows) {
+        lock.writeLock().lock();
+        try {
+            rows.forEach(this::applyRow);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void applyRow(Row row) {
+        int index = Arrays.binarySearch(ids, 0, size, row.id());
+        if (index < 0) {
+            // Usually appended; transactions committing out of id order insert
+            index = -index - 1;
+            insertAt(index);
+            ids[index] = row.id();
+        }
+        sessionStarts[index] = row.sessionStart();
+        starts[index] = row.start();
+        ends[index] = row.start() + row.durationSeconds();
+        apps[index] = row.appId();
+        maxAppId = Math.max(maxAppId, row.appId());
+        types[index] = (byte) row.type().ordinal();
+    }
+    
+    private void insertAt(int index) {
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            sessionStarts = Arrays.copyOf(sessionStarts, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            apps = Arrays.copyOf(apps, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        int moved = size - index;
+        if (moved > 0) {
+            System.arraycopy(ids, index, ids, index + 1, moved);
+            System.arraycopy(sessionStarts, index, sessionStarts, index + 1, moved);
+            System.arraycopy(starts, index, starts, index + 1, moved);
+            System.arraycopy(ends, index, ends, index + 1, moved);
+            System.arraycopy(apps, index, apps, index + 1, moved);
+            System.arraycopy(types, index, types, index + 1, moved);
+        }
+        size++;
+    }
+    
+    private static long epochSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+    
+    private static long epochSeconds(Timestamp timestamp) {
+        return epochSeconds(timestamp.toLocalDateTime());
+    }
+    
+    @FunctionalInterface
+    public interface UsageConsumer {
+        void accept(String appName, Activity.ActivityType type, long seconds);
+    }
+    
+    record Row(long id, long sessionStart, long start, long durationSeconds,
+               int appId, Activity.ActivityType type) {
+        
+        static Row of(Activity activity) {
+            return new Row(activity.getId(),
+                    epochSeconds(activity.getSession().getStartTime()),
+                    epochSeconds(activity.getStartTime()),
+                    activity.getDurationSeconds(),
+                    activity.getAppId(),
+                    activity.getType());
+        }
+        
+        static Row of(long id, LocalDateTime sessionStart, LocalDateTime start, long durationSeconds,
+                      int appId, Activity.ActivityType type) {
+            return new Row(id, epochSeconds(sessionStart), epochSeconds(start), durationSeconds, appId, type);
+        }
+    }
+}
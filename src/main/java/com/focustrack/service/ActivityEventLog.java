@@ -0,0 +1,229 @@
+package com.focustrack.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented, memory-mapped append-only log of ingestion events.
+ * 
+ * Each segment is a fixed-size file named after the sequence number of its first
+ * record. A record is its body length, a CRC32 of the body, and the body (sequence,
+ * kind, ids, timestamp, app name, window title). The length is written last, so a
+ * record becomes visible to readers only once complete, and reading a segment stops at
+ * the first zero length or checksum mismatch, which discards a write torn by a crash.
+ * 
+ * Records are written to mapped pages: once {@link #append} returns, the record survives
+ * the process dying. With fsync enabled each record is also forced to the device, which
+ * survives power loss at the cost of a disk flush per event.
+ * 
+ * Segments are removed by {@link #compact} once every record in them has been applied.
+ * Old mappings are released when garbage collected; on Linux the file can be deleted
+ * while still mapped.
+ */
+final class ActivityEventLog {
+    
+    private static final int HEADER_BYTES = 8;
+    private static final String SUFFIX = ".log";
+    private static final long NO_ID = -1;
+    
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+    
+    // First sequence number of each segment -> file, oldest first
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    private MappedByteBuffer active;
+    private long lastSequence;
+    
+    ActivityEventLog(Path directory, int segmentBytes, boolean fsync) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+    
+    /**
+     * Opens the log and positions appends after the last intact record.
+     * @param appliedSequence The last sequence number already applied to the database
+     * @return The intact records after appliedSequence, in order
+     */
+    synchronized List<IngestionEvent> open(long appliedSequence) throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .forEach(file -> segments.put(firstSequenceOf(file), file));
+        }
+        
+        lastSequence = appliedSequence;
+        List<IngestionEvent> unapplied = new ArrayList<>();
+        for (Path file : segments.values()) {
+            MappedByteBuffer buffer = map(file, Files.size(file));
+            IngestionEvent event;
+            while ((event = read(buffer)) != null) {
+                lastSequence = Math.max(lastSequence, event.sequence());
+                if (event.sequence() > appliedSequence) {
+                    unapplied.add(event);
+                }
+            }
+            // Left positioned after its last intact record, the newest segment takes the next append
+            active = buffer;
+        }
+        return unapplied;
+    }
+    
+    /**
+     * Appends an event, assigning it the next sequence number.
+     * @return The event with its sequence number
+     */
+    synchronized IngestionEvent append(IngestionEvent event) throws IOException {
+        IngestionEvent numbered = event.withSequence(lastSequence + 1);
+        byte[] appName = utf8(numbered.appName());
+        byte[] windowTitle = utf8(numbered.windowTitle());
+        int bodyBytes = Long.BYTES + 1 + 3 * Long.BYTES + Integer.BYTES
+                + encodedLength(appName) + encodedLength(windowTitle);
+        if (HEADER_BYTES + bodyBytes > segmentBytes) {
+            throw new IllegalArgumentException("Event does not fit in a log segment");
+        }
+        if (active == null || active.remaining() < HEADER_BYTES + bodyBytes) {
+            roll(numbered.sequence());
+        }
+        
+        int start = active.position();
+        active.position(start + HEADER_BYTES);
+        active.putLong(numbered.sequence());
+        active.put((byte) numbered.kind().ordinal());
+        active.putLong(numbered.sessionId() != null ? numbered.sessionId() : NO_ID);
+        active.putLong(numbered.activityId() != null ? numbered.activityId() : NO_ID);
+        active.putLong(numbered.timestamp().toEpochSecond(ZoneOffset.UTC));
+        active.putInt(numbered.timestamp().getNano());
+        putBytes(active, appName);
+        putBytes(active, windowTitle);
+        
+        active.putInt(start + Integer.BYTES, checksum(active, start + HEADER_BYTES, bodyBytes));
+        active.putInt(start, bodyBytes);
+        if (fsync) {
+            active.force(start, HEADER_BYTES + bodyBytes);
+        }
+        lastSequence = numbered.sequence();
+        return numbered;
+    }
+    
+    /**
+     * Deletes the segments whose records have all been applied. The segment taking
+     * appends is kept.
+     * @return The number of segments deleted
+     */
+    synchronized int compact(long appliedSequence) throws IOException {
+        int deleted = 0;
+        Map.Entry<Long, Path> oldest;
+        while ((oldest = segments.firstEntry()) != null) {
+            Long next = segments.higherKey(oldest.getKey());
+            // A segment ends just before the next one begins
+            if (next == null || next - 1 > appliedSequence) {
+                break;
+            }
+            Files.deleteIfExists(oldest.getValue());
+            segments.remove(oldest.getKey());
+            deleted++;
+        }
+        return deleted;
+    }
+    
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+    
+    private void roll(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        active = map(file, segmentBytes);
+        segments.put(firstSequence, file);
+    }
+    
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+    
+    private static IngestionEvent read(MappedByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int bodyBytes = buffer.getInt(start);
+        if (bodyBytes <= 0 || bodyBytes > buffer.remaining() - HEADER_BYTES
+                || buffer.getInt(start + Integer.BYTES) != checksum(buffer, start + HEADER_BYTES, bodyBytes)) {
+            return null;
+        }
+        
+        buffer.position(start + HEADER_BYTES);
+        long sequence = buffer.getLong();
+        IngestionEvent.Kind kind = IngestionEvent.Kind.values()[buffer.get()];
+        long sessionId = buffer.getLong();
+        long activityId = buffer.getLong();
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        String appName = getString(buffer);
+        String windowTitle = getString(buffer);
+        buffer.position(start + HEADER_BYTES + bodyBytes);
+        
+        return new IngestionEvent(sequence, kind,
+                sessionId != NO_ID ? sessionId : null,
+                activityId != NO_ID ? activityId : null,
+                appName, windowTitle, timestamp);
+    }
+    
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+    
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    private static int encodedLength(byte[] bytes) {
+        return Integer.BYTES + (bytes != null ? bytes.length : 0);
+    }
+    
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        // Length -1 stands for null
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,422 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityBatchResponse;
+import com.focustrack.dto.ActivityEvent;
+import com.focustrack.model.IngestionCheckpoint;
+import com.focustrack.repository.IngestionCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Write-behind buffer for activity start and end events, enabled with
+ * focustrack.ingestion.mode=async.
+ * 
+ * Request threads only append the event to the {@link ActivityEventLog} (unless
+ * focustrack.ingestion.log.enabled is false) and enqueue it into a bounded buffer. A
+ * single consumer thread drains the buffer in batches of up to
+ * focustrack.ingestion.batch-size events and applies each batch in one transaction
+ * through {@link SessionService}, so events are applied in the order they were accepted,
+ * which keeps them ordered per session. Events that cannot be applied (unknown session
+ * or activity, out of order timestamp) are counted and logged.
+ * 
+ * The transaction applying a batch also advances the log's {@link IngestionCheckpoint}.
+ * On startup, before the web server takes requests, the log records after the
+ * checkpoint are replayed, so events acknowledged before a crash are applied exactly
+ * once. Segments below the checkpoint are deleted on a schedule. A log left behind
+ * by async mode is replayed on startup in sync mode too, so switching modes after a
+ * crash does not lose those events.
+ * 
+ * A batch that fails to persist (e.g. while the database is unreachable) is retried
+ * with backoff for as long as the server runs; later events wait behind it, and once
+ * the buffer is full new events are refused. The checkpoint therefore never passes an
+ * event that was not applied. A batch that still fails at startup fails the startup.
+ * 
+ * On shutdown, after the web server has stopped taking requests, the buffer stops
+ * accepting events and the consumer drains everything already accepted before the
+ * datasource is closed. If a batch keeps failing during the drain, the consumer stops
+ * there and leaves that batch and the rest to be replayed from the log on the next
+ * start (they are lost when the log is disabled).
+ */
+@Slf4j
+@Service
+public class ActivityIngestionQueue implements SmartLifecycle {
+    
+    public enum OfferResult {
+        ACCEPTED,
+        // Buffer is at capacity; the client should retry later
+        FULL,
+        // Shutting down or not enabled
+        CLOSED
+    }
+    
+    // Attempts before giving up on a batch while shutting down or replaying
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long MAX_BACKOFF_MS = 5000;
+    private static final String LOG_NAME = "activity-log";
+    
+    private final SessionService sessionService;
+    private final IngestionCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<IngestionEvent> buffer;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long shutdownTimeoutMs;
+    // Null when the log is disabled, or in sync mode when there is no log to replay
+    private final ActivityEventLog eventLog;
+    private volatile long appliedSequence;
+    
+    // Guards stamping and enqueueing together, so timestamps follow buffer order, and
+    // keeps closing from interleaving with an enqueue
+    private final Object offerLock = new Object();
+    private volatile boolean accepting;
+    private volatile Thread consumer;
+    // Set once a sync mode start has replayed the log
+    private boolean replayed;
+    
+    private final Counter acceptedEvents;
+    private final Counter refusedEvents;
+    private final Counter rejectedEvents;
+    private final Counter failedEvents;
+    private final Counter replayedEvents;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+    
+    public ActivityIngestionQueue(SessionService sessionService,
+                                  IngestionCheckpointRepository checkpointRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${focustrack.ingestion.mode:sync}") String mode,
+                                  @Value("${focustrack.ingestion.buffer-capacity:10000}") int capacity,
+                                  @Value("${focustrack.ingestion.batch-size:500}") int batchSize,
+                                  @Value("${focustrack.ingestion.shutdown-timeout-ms:30000}") long shutdownTimeoutMs,
+                                  @Value("${focustrack.ingestion.log.enabled:true}") boolean logEnabled,
+                                  @Value("${focustrack.ingestion.log.dir:./data/activity-log}") String logDir,
+                                  @Value("${focustrack.ingestion.log.segment-bytes:16777216}") int segmentBytes,
+                                  @Value("${focustrack.ingestion.log.fsync:false}") boolean fsync) {
+        this.sessionService = sessionService;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = "async".equalsIgnoreCase(mode);
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.eventLog = logEnabled && (enabled || Files.isDirectory(Path.of(logDir)))
+                ? new ActivityEventLog(Path.of(logDir), segmentBytes, fsync)
+                : null;
+        
+        Gauge.builder("ingestion.queue.depth", buffer, BlockingQueue::size)
+                .description("Activity events accepted but not yet persisted")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.queue.capacity", () -> capacity)
+                .register(meterRegistry);
+        this.acceptedEvents = eventCounter(meterRegistry, "accepted");
+        this.refusedEvents = eventCounter(meterRegistry, "refused");
+        this.rejectedEvents = eventCounter(meterRegistry, "rejected");
+        this.failedEvents = eventCounter(meterRegistry, "failed");
+        this.replayedEvents = eventCounter(meterRegistry, "replayed");
+        if (eventLog != null) {
+            Gauge.builder("ingestion.log.segments", eventLog, ActivityEventLog::segmentCount)
+                    .description("Event log segment files on disk")
+                    .register(meterRegistry);
+        }
+        this.batchSizes = DistributionSummary.builder("ingestion.batch.size")
+                .description("Events persisted per flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("ingestion.flush")
+                .description("Time to persist one batch of buffered events")
+                .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Enqueues a window switch without blocking. Events without a timestamp are stamped
+     * with the current time, so the activity starts when it was reported rather than
+     * when it is persisted.
+     * @throws UncheckedIOException If the event could not be appended to the log
+     */
+    public OfferResult offer(ActivityEvent event) {
+        return offer(stamped -> IngestionEvent.start(new ActivityEvent(event.getSessionId(),
+                event.getAppName(), event.getWindowTitle(),
+                event.getTimestamp() != null ? event.getTimestamp() : stamped)));
+    }
+    
+    /**
+     * Enqueues the end of an activity without blocking; it ends at the current time.
+     * @throws UncheckedIOException If the event could not be appended to the log
+     */
+    public OfferResult offerEnd(Long activityId) {
+        return offer(stamped -> IngestionEvent.end(activityId, stamped));
+    }
+    
+    private OfferResult offer(Function<LocalDateTime, IngestionEvent> stamp) {
+        synchronized (offerLock) {
+            if (!accepting) {
+                return OfferResult.CLOSED;
+            }
+            // Only the consumer removes, so capacity checked under the lock is still there below
+            if (buffer.remainingCapacity() == 0) {
+                refusedEvents.increment();
+                return OfferResult.FULL;
+            }
+            IngestionEvent event = stamp.apply(LocalDateTime.now());
+            if (eventLog != null) {
+                try {
+                    event = eventLog.append(event);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not append to the activity event log", e);
+                }
+            }
+            buffer.add(event);
+        }
+        acceptedEvents.increment();
+        return OfferResult.ACCEPTED;
+    }
+    
+    @Override
+    public void start() {
+        if (!enabled) {
+            if (eventLog != null && !replayed) {
+                replayed = true;
+                replay();
+                compactLog(appliedSequence);
+            }
+            return;
+        }
+        if (consumer != null) {
+            return;
+        }
+        if (eventLog != null) {
+            replay();
+        }
+        accepting = true;
+        consumer = new Thread(this::drain, "activity-ingestion");
+        consumer.start();
+        log.info("Asynchronous activity ingestion started (capacity {}, batch size {})",
+                buffer.remainingCapacity(), batchSize);
+    }
+    
+    @Override
+    public void stop() {
+        Thread running = consumer;
+        if (running == null) {
+            return;
+        }
+        
+        synchronized (offerLock) {
+            accepting = false;
+        }
+        
+        log.info("Draining {} buffered activity events", buffer.size());
+        try {
+            running.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (running.isAlive()) {
+            log.warn("Activity ingestion did not drain within {} ms; {} events not persisted",
+                    shutdownTimeoutMs, buffer.size());
+        }
+        consumer = null;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return consumer != null;
+    }
+    
+    /**
+     * Stops after the web server (which stops in a higher phase), so no request can
+     * enqueue once draining has begun.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+    
+    /**
+     * Compacts the event log, deleting the segments whose events have all been applied.
+     */
+    @Scheduled(fixedDelayString = "${focustrack.ingestion.log.compact-interval-ms:60000}")
+    public void compactLog() {
+        if (eventLog == null || !isRunning()) {
+            return;
+        }
+        compactLog(appliedSequence);
+    }
+    
+    private void compactLog(long appliedSequence) {
+        try {
+            int deleted = eventLog.compact(appliedSequence);
+            if (deleted > 0) {
+                log.debug("Deleted {} applied activity event log segments", deleted);
+            }
+        } catch (IOException e) {
+            log.warn("Compacting the activity event log failed", e);
+        }
+    }
+    
+    private void replay() {
+        appliedSequence = checkpointRepository.findById(LOG_NAME)
+                .orElseGet(() -> checkpointRepository.save(new IngestionCheckpoint(LOG_NAME, 0L)))
+                .getAppliedSequence();
+        List<IngestionEvent> unapplied;
+        try {
+            unapplied = eventLog.open(appliedSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the activity event log", e);
+        }
+        if (unapplied.isEmpty()) {
+            return;
+        }
+        
+        if (enabled) {
+            log.info("Replaying {} activity events from the event log after sequence {}",
+                    unapplied.size(), appliedSequence);
+        } else {
+            log.warn("Replaying {} activity events left in the event log by asynchronous ingestion after "
+                    + "sequence {}, although focustrack.ingestion.mode is sync", unapplied.size(), appliedSequence);
+        }
+        for (int from = 0; from < unapplied.size(); from += batchSize) {
+            // Starting without them would let the next batch move the checkpoint past them
+            if (!flush(unapplied.subList(from, Math.min(from + batchSize, unapplied.size())), () -> true)) {
+                throw new IllegalStateException("Could not replay the activity event log after sequence "
+                        + appliedSequence);
+            }
+        }
+        replayedEvents.increment(unapplied.size());
+    }
+    
+    private void drain() {
+        List<IngestionEvent> batch = new ArrayList<>(batchSize);
+        while (accepting || !buffer.isEmpty()) {
+            IngestionEvent first;
+            try {
+                first = buffer.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Keep going until the buffer is empty; stop() bounds the wait
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            buffer.drainTo(batch, batchSize - 1);
+            if (!flush(batch, () -> !accepting)) {
+                int unapplied = batch.size() + buffer.size();
+                buffer.clear();
+                if (eventLog == null) {
+                    failedEvents.increment(unapplied);
+                    log.error("Stopped activity ingestion; {} events were not persisted", unapplied);
+                } else {
+                    log.error("Stopped activity ingestion; {} events after sequence {} are replayed from the event "
+                            + "log on the next start", unapplied, appliedSequence);
+                }
+                return;
+            }
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Persists a batch, retrying with exponential backoff until it succeeds, or until
+     * MAX_ATTEMPTS have failed and giveUp says to stop.
+     * @return false if the batch was not applied
+     */
+    private boolean flush(List<IngestionEvent> batch, BooleanSupplier giveUp) {
+        batchSizes.record(batch.size());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<String> rejections = flushTimer.recordCallable(
+                        () -> transactionTemplate.execute(status -> apply(batch)));
+                appliedSequence = batch.get(batch.size() - 1).sequence();
+                rejectedEvents.increment(rejections.size());
+                rejections.forEach(log::warn);
+                return true;
+            } catch (Exception e) {
+                if (attempt >= MAX_ATTEMPTS && giveUp.getAsBoolean()) {
+                    log.error("Persisting {} activity events failed {} times, giving up", batch.size(), attempt, e);
+                    return false;
+                }
+                long backoffMs = Math.min(100L << Math.min(attempt - 1, 16), MAX_BACKOFF_MS);
+                log.warn("Persisting {} activity events failed (attempt {}), retrying in {} ms",
+                        batch.size(), attempt, backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Applies a batch within the caller's transaction: consecutive window switches go
+     * through {@link SessionService#addActivities} together, ends one by one in between.
+     * @return A message for each event that was rejected
+     */
+    private List<String> apply(List<IngestionEvent> batch) {
+        List<String> rejections = new ArrayList<>();
+        List<ActivityEvent> starts = new ArrayList<>();
+        for (IngestionEvent event : batch) {
+            if (event.kind() == IngestionEvent.Kind.START) {
+                starts.add(event.toActivityEvent());
+                continue;
+            }
+            applyStarts(starts, rejections);
+            if (!sessionService.endActivity(event.activityId(), event.timestamp())) {
+                rejections.add("Rejected buffered end of activity " + event.activityId() + ": Activity not found");
+            }
+        }
+        applyStarts(starts, rejections);
+        
+        if (eventLog != null) {
+            checkpointRepository.advance(LOG_NAME, batch.get(batch.size() - 1).sequence());
+        }
+        return rejections;
+    }
+    
+    private void applyStarts(List<ActivityEvent> starts, List<String> rejections) {
+        if (starts.isEmpty()) {
+            return;
+        }
+        for (ActivityBatchResponse.EventResult result : sessionService.addActivities(starts)) {
+            if (result.getStatus() == ActivityBatchResponse.EventStatus.REJECTED) {
+                rejections.add("Rejected buffered activity event for session " + result.getSessionId()
+                        + ": " + result.getMessage());
+            }
+        }
+        starts.clear();
+    }
+    
+    private static Counter eventCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ingestion.events")
+                .description("Activity events offered to the ingestion buffer, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,35 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Translates an activity's app name and window title to and from their dictionary ids
+ * (see {@link NameDictionary}). Names are resolved once, when the activity is first
+ * persisted; they never change afterwards.
+ */
+@Component
+@RequiredArgsConstructor
+public class ActivityNamesListener {
+    
+    private final NameDictionary nameDictionary;
+    
+    @PrePersist
+    public void resolveIds(Activity activity) {
+        if (activity.getAppId() == null) {
+            activity.setAppId(nameDictionary.applicationId(activity.getAppName()));
+        }
+        if (activity.getTitleId() == null) {
+            activity.setTitleId(nameDictionary.windowTitleId(activity.getWindowTitle()));
+        }
+    }
+    
+    @PostLoad
+    public void resolveNames(Activity activity) {
+        activity.setAppName(nameDictionary.applicationName(activity.getAppId()));
+        activity.setWindowTitle(nameDictionary.windowTitle(activity.getTitleId()));
+    }
+}
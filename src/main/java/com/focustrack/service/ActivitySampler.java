@@ -0,0 +1,72 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityEvent;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Turns periodic samples of the focused window into activity events for one session.
+ * 
+ * An event is emitted only when the (app, title) pair changes, and only once the new
+ * pair has been seen for at least the debounce period, so brief switches (alt-tab
+ * flapping, transient dialogs) produce no writes at all. The event is stamped with the
+ * time the pair was first seen rather than the time it is emitted. Samples where the
+ * window is unknown leave the current activity open.
+ * 
+ * The window is read by the caller, so one read can be fed to the samplers of all
+ * monitored sessions. Not thread-safe: samples must not run concurrently, which a
+ * fixed-delay schedule guarantees.
+ */
+public class ActivitySampler {
+    
+    private final Long sessionId;
+    private final Duration debounce;
+    private final Clock clock;
+    
+    private ActiveWindowSource.ActiveWindow emitted;
+    private ActiveWindowSource.ActiveWindow candidate;
+    private LocalDateTime candidateSince;
+    private volatile ActiveWindowSource.ActiveWindow lastSample;
+    
+    public ActivitySampler(Long sessionId, Duration debounce, Clock clock) {
+        this.sessionId = sessionId;
+        this.debounce = debounce;
+        this.clock = clock;
+    }
+    
+    /**
+     * Takes one sample.
+     * @param window The focused window, or null if it is unknown
+     * @return The activity event to record, or null if there is none
+     */
+    public ActivityEvent sample(ActiveWindowSource.ActiveWindow window) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        lastSample = window;
+        
+        if (window == null || window.equals(emitted)) {
+            candidate = null;
+            return null;
+        }
+        if (!window.equals(candidate)) {
+            candidate = window;
+            candidateSince = now;
+        }
+        if (Duration.between(candidateSince, now).compareTo(debounce) < 0) {
+            return null;
+        }
+        
+        emitted = window;
+        candidate = null;
+        return new ActivityEvent(sessionId, window.appName(), window.windowTitle(), candidateSince);
+    }
+    
+    public Long getSessionId() {
+        return sessionId;
+    }
+    
+    public ActiveWindowSource.ActiveWindow getLastSample() {
+        return lastSample;
+    }
+}
@@ -0,0 +1,38 @@
+package com.focustrack.service;
+
+import com.focustrack.model.ClassificationRule;
+import com.focustrack.repository.ClassificationRuleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class ClassificationRuleService {
+    
+    private final ClassificationRuleRepository ruleRepository;
+    private final ActivityClassifier activityClassifier;
+    
+    public List<ClassificationRule> getAllRules() {
+        return ruleRepository.findAll();
+    }
+    
+    public ClassificationRule createRule(ClassificationRule rule) {
+        rule.setId(null);
+        ClassificationRule saved = ruleRepository.save(rule);
+        activityClassifier.reload();
+        return saved;
+    }
+    
+    public void deleteRule(Long id) {
+        ClassificationRule rule = ruleRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Rule not found"));
+        ruleRepository.delete(rule);
+        activityClassifier.reload();
+    }
+    
+    public void reloadRules() {
+        activityClassifier.reload();
+    }
+}
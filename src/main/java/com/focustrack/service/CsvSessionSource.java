@@ -0,0 +1,188 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Session;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reads import sessions from RFC 4180 CSV with a header row, one row per activity:
+ * <pre>
+ *   sessionId, sessionName, sessionStartTime, sessionEndTime, status, sessionType,
+ *   appName, windowTitle, startTime, endTime
+ * </pre>
+ * Columns are found by their header name, in any order; sessionStartTime is required,
+ * other columns may be missing and empty fields stand for null. Consecutive rows with
+ * the same sessionId and sessionStartTime form one session, whose columns are taken
+ * from its first row. A row without appName and startTime adds no activity, so that a
+ * session without activities can be given as one such row. Timestamps are ISO-8601
+ * local times.
+ */
+class CsvSessionSource implements ImportService.SessionSource {
+    
+    private final Reader reader;
+    private Map<String, Integer> columns;
+    // Line the next record starts on, and the record read ahead of the current session
+    private long line = 1;
+    private long pendingLine;
+    private List<String> pending;
+    
+    CsvSessionSource(Reader reader) {
+        this.reader = reader;
+    }
+    
+    @Override
+    public Entry next() throws IOException {
+        if (columns == null) {
+            readHeader();
+        }
+        if (pending == null) {
+            readPending();
+            if (pending == null) {
+                return null;
+            }
+        }
+        
+        long firstLine = pendingLine;
+        List<String> first = pending;
+        String error = null;
+        List<ActivityArchive.ArchivedActivity> activities = new ArrayList<>();
+        ActivityArchive.ArchivedSession session = null;
+        try {
+            session = session(first, activities);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            error = e.getMessage();
+        }
+        
+        while (true) {
+            long rowLine = pendingLine;
+            try {
+                activity(pending, activities);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                if (error == null) {
+                    error = rowLine == firstLine ? e.getMessage() : e.getMessage() + " (line " + rowLine + ")";
+                }
+            }
+            readPending();
+            if (pending == null || !sameSession(first, pending)) {
+                break;
+            }
+        }
+        return error != null ? new Entry(firstLine, null, error) : new Entry(firstLine, session, null);
+    }
+    
+    private void readHeader() throws IOException {
+        List<String> header = readRecord();
+        columns = new HashMap<>();
+        if (header != null) {
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim(), i);
+            }
+        }
+        if (!columns.containsKey("sessionStartTime")) {
+            throw new IOException("CSV header has no sessionStartTime column");
+        }
+    }
+    
+    private void readPending() throws IOException {
+        do {
+            pendingLine = line;
+            pending = readRecord();
+        } while (pending != null && pending.size() == 1 && pending.get(0).isEmpty());
+    }
+    
+    private boolean sameSession(List<String> a, List<String> b) {
+        return Objects.equals(field(a, "sessionId"), field(b, "sessionId"))
+                && Objects.equals(field(a, "sessionStartTime"), field(b, "sessionStartTime"));
+    }
+    
+    private ActivityArchive.ArchivedSession session(List<String> row, List<ActivityArchive.ArchivedActivity> activities) {
+        String id = field(row, "sessionId");
+        String status = field(row, "status");
+        String type = field(row, "sessionType");
+        return new ActivityArchive.ArchivedSession(
+                id != null ? Long.valueOf(id) : null,
+                field(row, "sessionName"),
+                time(row, "sessionStartTime"),
+                time(row, "sessionEndTime"),
+                status != null ? Session.SessionStatus.valueOf(status) : null,
+                type != null ? Session.SessionType.valueOf(type) : null,
+                null, null, null, null,
+                activities);
+    }
+    
+    private void activity(List<String> row, List<ActivityArchive.ArchivedActivity> activities) {
+        String appName = field(row, "appName");
+        LocalDateTime startTime = time(row, "startTime");
+        if (appName == null && startTime == null) {
+            return;
+        }
+        // An empty title is a title; only a missing column leaves it null
+        String windowTitle = columns.containsKey("windowTitle") ? Objects.toString(field(row, "windowTitle"), "") : null;
+        activities.add(new ActivityArchive.ArchivedActivity(null, appName, windowTitle, startTime,
+                time(row, "endTime"), null, null, null));
+    }
+    
+    private String field(List<String> row, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= row.size() || row.get(index).isEmpty()) {
+            return null;
+        }
+        return row.get(index);
+    }
+    
+    private LocalDateTime time(List<String> row, String column) {
+        String value = field(row, column);
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+    
+    /**
+     * Reads the fields of the next record, or returns null at the end of the input.
+     * Quoted fields may hold commas, doubled quotes and line breaks.
+     */
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field before line " + line);
+                }
+                if (c == '"') {
+                    c = reader.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                line++;
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+}
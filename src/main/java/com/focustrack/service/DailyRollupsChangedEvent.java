@@ -0,0 +1,11 @@
+package com.focustrack.service;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Published after a transaction that changed the daily rollups has committed.
+ * @param dates The days whose rollups changed
+ */
+public record DailyRollupsChangedEvent(Set<LocalDate> dates) {
+}
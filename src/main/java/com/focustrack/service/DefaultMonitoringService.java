@@ -1,38 +1,114 @@
 package com.focustrack.service;
 
+import com.focustrack.dto.ActivityBatchResponse;
+import com.focustrack.dto.ActivityEvent;
+import com.focustrack.dto.MonitoringStatusDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Default implementation of MonitoringService.
+ * Server-side monitoring: samples the focused window from an {@link ActiveWindowSource}
+ * and records an activity in {@link SessionService} whenever it changes (see
+ * {@link ActivitySampler} for the coalescing and debouncing).
+ * 
+ * Any number of sessions can be monitored at once. Each has its own sampler in a
+ * concurrent registry. A single tick on the monitoring executor reads the window once
+ * and feeds it to every sampler, so the cost of a read (two xprop processes with X11)
+ * does not grow with the number of sessions. Lookups such as
+ * {@link #isMonitoringActive(Long)} read the registry without locking.
  * 
- * This is a placeholder implementation that returns mock data.
- * For production, this should be replaced with:
- * 1. A native integration (using JNA for Windows/Mac/Linux)
- * 2. An external Python script that sends data via REST API
- * 3. A browser extension for tab tracking
+ * The tick never writes to the database itself. With focustrack.ingestion.mode=async
+ * the emitted events are offered to the {@link ActivityIngestionQueue}; otherwise the
+ * events of a tick are recorded together on the monitoring writer thread, and dropped
+ * (counted by "monitoring.dropped") if the writer has too many ticks waiting. A session
+ * stops being monitored when it is ended (see {@link SessionEndedEvent}), and, with
+ * synchronous ingestion, when one of its events is rejected, e.g. because it was ended
+ * elsewhere; with async ingestion, rejections are only counted by the queue.
  * 
- * See the monitoring/ directory for example Python scripts.
+ * Sampling every second with the default one second debounce writes once per real
+ * window switch instead of once per sample. The "monitoring.samples" and
+ * "monitoring.activities" counters show the ratio.
+ * 
+ * Monitoring from the server only makes sense when it runs on the user's machine. For
+ * remote deployments, the external agent in the monitoring/ directory posts the same
+ * events through the REST API instead.
  */
 @Slf4j
 @Service
 public class DefaultMonitoringService implements MonitoringService {
     
-    private boolean monitoringActive = false;
-    private Long currentSessionId = null;
+    private final SessionService sessionService;
+    private final ActivityIngestionQueue ingestionQueue;
+    private final ActiveWindowSource windowSource;
+    private final ExecutorService writer;
+    private final Duration debounce;
+    private final Counter samples;
+    private final Counter activities;
+    private final Counter dropped;
+    
+    private final Map<Long, MonitoredSession> monitored = new ConcurrentHashMap<>();
+    // The window read by the last tick, while any session is monitored
+    private volatile ActiveWindowSource.ActiveWindow lastWindow;
+    
+    public DefaultMonitoringService(SessionService sessionService,
+                                    ActivityIngestionQueue ingestionQueue,
+                                    ActiveWindowSource windowSource,
+                                    ScheduledExecutorService monitoringExecutor,
+                                    @Qualifier("monitoringWriter") ExecutorService monitoringWriter,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${focustrack.monitoring.interval-ms:1000}") long intervalMs,
+                                    @Value("${focustrack.monitoring.debounce-ms:1000}") long debounceMs) {
+        this.sessionService = sessionService;
+        this.ingestionQueue = ingestionQueue;
+        this.windowSource = windowSource;
+        this.writer = monitoringWriter;
+        this.debounce = Duration.ofMillis(debounceMs);
+        this.samples = Counter.builder("monitoring.samples")
+                .description("Window samples taken")
+                .register(meterRegistry);
+        this.activities = Counter.builder("monitoring.activities")
+                .description("Activities recorded from window samples")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("monitoring.dropped")
+                .description("Activities from window samples dropped because the writer fell behind")
+                .register(meterRegistry);
+        Gauge.builder("monitoring.sessions", monitored, Map::size)
+                .description("Sessions being monitored")
+                .register(meterRegistry);
+        monitoringExecutor.scheduleWithFixedDelay(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
     
     @Override
     public String getActiveApplication() {
-        // Mock implementation - replace with actual monitoring
-        log.debug("Getting active application (mock: 'Unknown')");
-        return "Unknown";
+        ActiveWindowSource.ActiveWindow window = currentWindow();
+        return window != null ? window.appName() : "Unknown";
     }
     
     @Override
     public String getActiveWindowTitle() {
-        // Mock implementation - replace with actual monitoring
-        log.debug("Getting active window title (mock: 'FocusTrack Dashboard')");
-        return "FocusTrack Dashboard";
+        ActiveWindowSource.ActiveWindow window = currentWindow();
+        return window != null ? window.windowTitle() : "";
     }
     
     @Override
@@ -44,26 +120,125 @@ public class DefaultMonitoringService implements MonitoringService {
     
     @Override
     public void startMonitoring(Long sessionId) {
-        log.info("Starting monitoring for session: {}", sessionId);
-        this.currentSessionId = sessionId;
-        this.monitoringActive = true;
-        // In production, start a background thread that:
-        // 1. Polls for active window/app every few seconds
-        // 2. Sends updates to ActivityController
-        // 3. Handles focus detection if enabled
+        monitored.computeIfAbsent(sessionId, id -> {
+            log.info("Starting monitoring for session: {}", id);
+            return new MonitoredSession(LocalDateTime.now(),
+                    new ActivitySampler(id, debounce, Clock.systemDefaultZone()));
+        });
     }
     
     @Override
-    public void stopMonitoring() {
-        log.info("Stopping monitoring");
-        this.monitoringActive = false;
-        this.currentSessionId = null;
-        // In production, stop background monitoring thread
+    public void stopMonitoring(Long sessionId) {
+        if (monitored.remove(sessionId) != null) {
+            log.info("Stopped monitoring for session: {}", sessionId);
+        }
+    }
+    
+    @TransactionalEventListener
+    public void onSessionEnded(SessionEndedEvent event) {
+        stopMonitoring(event.sessionId());
+    }
+    
+    @Override
+    public boolean isMonitoringActive(Long sessionId) {
+        return monitored.containsKey(sessionId);
     }
     
     @Override
-    public boolean isMonitoringActive() {
-        return monitoringActive;
+    public Set<Long> getMonitoredSessions() {
+        return Set.copyOf(monitored.keySet());
+    }
+    
+    @Override
+    public Optional<MonitoringStatusDTO> getMonitoringStatus(Long sessionId) {
+        MonitoredSession session = monitored.get(sessionId);
+        if (session == null) {
+            return Optional.empty();
+        }
+        ActiveWindowSource.ActiveWindow window = session.sampler().getLastSample();
+        return Optional.of(new MonitoringStatusDTO(sessionId, session.startedAt(),
+                window != null ? window.appName() : null,
+                window != null ? window.windowTitle() : null));
+    }
+    
+    // Uses the last tick's read while sampling, instead of starting another one
+    private ActiveWindowSource.ActiveWindow currentWindow() {
+        return monitored.isEmpty() ? windowSource.currentWindow() : lastWindow;
+    }
+    
+    private void tick() {
+        if (monitored.isEmpty()) {
+            lastWindow = null;
+            return;
+        }
+        try {
+            ActiveWindowSource.ActiveWindow window = windowSource.currentWindow();
+            lastWindow = window;
+            List<ActivityEvent> events = new ArrayList<>();
+            Map<Long, MonitoredSession> emitters = new HashMap<>();
+            for (MonitoredSession session : monitored.values()) {
+                samples.increment();
+                ActivityEvent event = session.sampler().sample(window);
+                if (event != null) {
+                    events.add(event);
+                    emitters.put(event.getSessionId(), session);
+                }
+            }
+            if (!events.isEmpty()) {
+                record(events, emitters);
+            }
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; a failing sample is retried on the next tick
+            log.warn("Activity sample failed: {}", e.getMessage());
+        }
+    }
+    
+    private void record(List<ActivityEvent> events, Map<Long, MonitoredSession> emitters) {
+        if (!ingestionQueue.isEnabled()) {
+            try {
+                writer.execute(() -> write(events, emitters));
+            } catch (RejectedExecutionException e) {
+                if (writer.isShutdown()) {
+                    return;
+                }
+                // The previous activity runs on over the dropped ones
+                dropped.increment(events.size());
+                log.warn("{} monitored activities were not recorded: writer queue full", events.size());
+            }
+            return;
+        }
+        for (ActivityEvent event : events) {
+            ActivityIngestionQueue.OfferResult result = ingestionQueue.offer(event);
+            if (result == ActivityIngestionQueue.OfferResult.ACCEPTED) {
+                activities.increment();
+            } else {
+                log.warn("Activity event for session {} was not recorded: ingestion buffer {}",
+                        event.getSessionId(), result == ActivityIngestionQueue.OfferResult.FULL ? "full" : "closed");
+            }
+        }
+    }
+    
+    private void write(List<ActivityEvent> events, Map<Long, MonitoredSession> emitters) {
+        List<ActivityBatchResponse.EventResult> results;
+        try {
+            results = sessionService.addActivities(events);
+        } catch (RuntimeException e) {
+            log.warn("Recording {} monitored activities failed: {}", events.size(), e.getMessage());
+            return;
+        }
+        for (ActivityBatchResponse.EventResult result : results) {
+            if (result.getStatus() != ActivityBatchResponse.EventStatus.REJECTED) {
+                activities.increment();
+                continue;
+            }
+            log.warn("Stopping monitoring of session {}: {}", result.getSessionId(), result.getMessage());
+            // Only this registration; the session may have been restarted meanwhile
+            if (monitored.remove(result.getSessionId(), emitters.get(result.getSessionId()))) {
+                log.info("Stopped monitoring for session: {}", result.getSessionId());
+            }
+        }
+    }
+    
+    private record MonitoredSession(LocalDateTime startedAt, ActivitySampler sampler) {
     }
 }
-
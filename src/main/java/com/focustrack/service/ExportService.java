@@ -0,0 +1,305 @@
+package com.focustrack.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk exports of the sessions, or their activities, that started within a date range,
+ * as CSV or NDJSON, optionally gzip-compressed. Archived sessions are not included.
+ * 
+ * Rows are read with plain JDBC from a forward-only cursor (focustrack.export.fetch-size
+ * rows per round trip) and written as they arrive, so no entity or row list is built
+ * and memory use does not depend on the size of the export. The queries follow the
+ * index on the session start time, and on H2 they are executed lazily: otherwise it
+ * computes the whole result before returning the first row. Other databases are
+ * expected to stream forward-only cursors without being asked. Sessions are written in
+ * start order, each session's activities in the order they were recorded (by id); the
+ * activities of one session are held in memory to sort them. The header (CSV) is
+ * flushed before the first row is read.
+ */
+@Slf4j
+@Service
+public class ExportService {
+    
+    private static final int BUFFER_BYTES = 64 * 1024;
+    
+    private static final String[] SESSION_COLUMNS = {"id", "sessionName", "startTime", "endTime", "status", "type",
+            "totalDurationSeconds", "focusedDurationSeconds", "distractedDurationSeconds"};
+    
+    private static final String SESSION_QUERY =
+            "SELECT s.id, s.session_name, s.start_time, s.end_time, s.status, s.type, " +
+            "s.total_duration_seconds, s.focused_duration_seconds, s.distracted_duration_seconds " +
+            "FROM sessions s WHERE s.start_time >= ? AND s.start_time <= ? " +
+            "ORDER BY s.start_time, s.id";
+    
+    private static final String[] ACTIVITY_COLUMNS = {"id", "sessionId", "appName", "windowTitle", "startTime",
+            "endTime", "type", "durationSeconds"};
+    
+    // Joined in session order; sorting on a.id too would make H2 sort the whole result, so
+    // each session's activities are sorted as they are written
+    private static final String ACTIVITY_QUERY =
+            "SELECT a.id, a.session_id, p.name, t.title, a.start_time, a.end_time, a.type, a.duration_seconds " +
+            "FROM sessions s JOIN activities a ON a.session_id = s.id " +
+            "JOIN applications p ON p.id = a.app_id JOIN window_titles t ON t.id = a.title_id " +
+            "WHERE s.start_time >= ? AND s.start_time <= ? " +
+            "ORDER BY s.start_time, s.id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean h2;
+    private final ObjectMapper objectMapper;
+    private final Counter exportedSessions;
+    private final Counter exportedActivities;
+    
+    public ExportService(DataSource dataSource,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${focustrack.export.fetch-size:1000}") int fetchSize) throws MetaDataAccessException {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.h2 = "H2".equals(JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+        this.objectMapper = objectMapper;
+        this.exportedSessions = Counter.builder("export.rows")
+                .description("Rows written by bulk exports")
+                .tag("type", "sessions")
+                .register(meterRegistry);
+        this.exportedActivities = Counter.builder("export.rows")
+                .description("Rows written by bulk exports")
+                .tag("type", "activities")
+                .register(meterRegistry);
+    }
+    
+    public enum Format {
+        CSV, NDJSON
+    }
+    
+    /**
+     * Writes the sessions that started within the given range (inclusive).
+     * @return The number of sessions written
+     */
+    @Transactional(readOnly = true)
+    public long writeSessions(LocalDateTime from, LocalDateTime to, Format format, boolean gzip,
+                              OutputStream out) throws IOException {
+        long rows = write(SESSION_QUERY, SESSION_COLUMNS, false, from, to, format, gzip, out);
+        exportedSessions.increment(rows);
+        return rows;
+    }
+    
+    /**
+     * Writes the activities of the sessions that started within the given range
+     * (inclusive).
+     * @return The number of activities written
+     */
+    @Transactional(readOnly = true)
+    public long writeActivities(LocalDateTime from, LocalDateTime to, Format format, boolean gzip,
+                                OutputStream out) throws IOException {
+        long rows = write(ACTIVITY_QUERY, ACTIVITY_COLUMNS, true, from, to, format, gzip, out);
+        exportedActivities.increment(rows);
+        return rows;
+    }
+    
+    /**
+     * @param bySession Whether the rows are activities, whose session id is the second
+     *                  column, to be written in id order within each session
+     */
+    private long write(String query, String[] columns, boolean bySession, LocalDateTime from, LocalDateTime to,
+                       Format format, boolean gzip, OutputStream out) throws IOException {
+        // Flushes compress what was written so far, so the header reaches the client right away
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_BYTES, true) : out;
+        RowWriter writer = format == Format.CSV
+                ? new CsvRowWriter(new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_BYTES), columns)
+                : new NdjsonRowWriter(objectMapper.getFactory().createGenerator(target), columns);
+        writer.flush();
+        
+        long[] rows = new long[1];
+        List<Object[]> session = new ArrayList<>();
+        if (h2) {
+            jdbcTemplate.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        }
+        try {
+            jdbcTemplate.query(query, rs -> {
+                Object[] row = values(rs, columns.length);
+                try {
+                    if (!bySession) {
+                        writer.write(row);
+                    } else {
+                        if (!session.isEmpty() && !session.get(0)[1].equals(row[1])) {
+                            writeInIdOrder(writer, session);
+                        }
+                        session.add(row);
+                    }
+                } catch (IOException e) {
+                    // The client went away; stops reading the cursor
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }, from, to);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (h2) {
+                jdbcTemplate.execute("SET LAZY_QUERY_EXECUTION FALSE");
+            }
+        }
+        writeInIdOrder(writer, session);
+        
+        writer.flush();
+        if (target instanceof GZIPOutputStream compressed) {
+            compressed.finish();
+        }
+        log.debug("Exported {} rows between {} and {}", rows[0], from, to);
+        return rows[0];
+    }
+    
+    private static void writeInIdOrder(RowWriter writer, List<Object[]> rows) throws IOException {
+        rows.sort(Comparator.comparingLong(row -> ((Number) row[0]).longValue()));
+        for (Object[] row : rows) {
+            writer.write(row);
+        }
+        rows.clear();
+    }
+    
+    private static Object[] values(ResultSet rs, int columns) throws SQLException {
+        Object[] values = new Object[columns];
+        for (int i = 0; i < columns; i++) {
+            values[i] = value(rs, i + 1);
+        }
+        return values;
+    }
+    
+    /**
+     * Renders a column value: timestamps in ISO-8601 local time, everything else as is.
+     */
+    private static Object value(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Timestamp timestamp) {
+            return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(timestamp.toLocalDateTime());
+        }
+        if (value instanceof LocalDateTime time) {
+            return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(time);
+        }
+        return value;
+    }
+    
+    private interface RowWriter {
+        void write(Object[] values) throws IOException;
+        
+        void flush() throws IOException;
+    }
+    
+    /**
+     * RFC 4180 CSV with a header row; fields holding commas, quotes or line breaks are
+     * quoted, and empty fields stand for null.
+     */
+    private static class CsvRowWriter implements RowWriter {
+        
+        private final Writer out;
+        private final int columns;
+        
+        CsvRowWriter(Writer out, String[] columns) throws IOException {
+            this.out = out;
+            this.columns = columns.length;
+            out.write(String.join(",", columns));
+            out.write("\r\n");
+        }
+        
+        @Override
+        public void write(Object[] values) throws IOException {
+            for (int i = 0; i < columns; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = values[i];
+                if (value != null) {
+                    writeField(value.toString());
+                }
+            }
+            out.write("\r\n");
+        }
+        
+        private void writeField(String field) throws IOException {
+            boolean quoted = false;
+            for (int i = 0; i < field.length() && !quoted; i++) {
+                char c = field.charAt(i);
+                quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quoted) {
+                out.write(field);
+                return;
+            }
+            out.write('"');
+            out.write(field.replace("\"", "\"\""));
+            out.write('"');
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+    
+    /**
+     * One JSON object per line, keyed by the column names.
+     */
+    private static class NdjsonRowWriter implements RowWriter {
+        
+        private final JsonGenerator generator;
+        private final String[] columns;
+        
+        NdjsonRowWriter(JsonGenerator generator, String[] columns) {
+            this.generator = generator;
+            this.columns = columns;
+            generator.setRootValueSeparator(null);
+        }
+        
+        @Override
+        public void write(Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                Object value = values[i];
+                generator.writeFieldName(columns[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Number number) {
+                    generator.writeNumber(number.longValue());
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ImportProgressDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Imports files on startup when started with --import=&lt;file&gt; (repeatable). The
+ * format is taken from --import-format (CSV or NDJSON), or else from the file name
+ * (".csv" or ".csv.gz" is CSV, anything else NDJSON); the source, which import keys are
+ * made of, from --import-source, or else the file name. Importing a file again under
+ * the same source skips the sessions already imported.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImportRunner implements ApplicationRunner {
+    
+    private final ImportService importService;
+    
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        List<String> files = args.getOptionValues("import");
+        if (files == null) {
+            return;
+        }
+        for (String file : files) {
+            Path path = Path.of(file);
+            String name = path.getFileName().toString();
+            ImportService.Format format = args.containsOption("import-format")
+                    ? ImportService.Format.valueOf(args.getOptionValues("import-format").get(0).toUpperCase())
+                    : name.endsWith(".csv") || name.endsWith(".csv.gz") ? ImportService.Format.CSV : ImportService.Format.NDJSON;
+            String source = args.containsOption("import-source") ? args.getOptionValues("import-source").get(0) : name;
+            
+            ImportProgressDTO result;
+            try (InputStream in = Files.newInputStream(path)) {
+                result = importService.importSessions(in, format, source);
+            }
+            if (result.getStatus() == ImportProgressDTO.ImportStatus.FAILED) {
+                log.error("Import of {} failed: {}", path, result.getErrors());
+            }
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package com.focustrack.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.focustrack.dto.ImportProgressDTO;
+import com.focustrack.model.Activity;
+import com.focustrack.model.Session;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk import of historical sessions and their activities, e.g. from another tracker or
+ * from an export or archive of this one. The input may be gzip-compressed (detected from
+ * its first bytes) and is either
+ * <ul>
+ *   <li>NDJSON: one session per line with its activities nested, as in the files
+ *   written by {@link ActivityArchive}, or</li>
+ *   <li>CSV: one row per activity repeating its session's columns (see
+ *   {@link CsvSessionSource}), the rows of a session one after another.</li>
+ * </ul>
+ * A session without a status is COMPLETED if it has an end time and ACTIVE otherwise.
+ * Each session is stored under an import key made of the source name and the session's
+ * id in the input, or its start time if it has none. Sessions whose key already exists
+ * are skipped, so running an import again, e.g. after it failed halfway, only adds
+ * what is missing.
+ * 
+ * The rows are the ones live ingestion would have written: activities are classified
+ * by the {@link ActivityClassifier}, whatever type the input gives; an activity without
+ * an end ends where the next one starts, and the last one stays open; durations are
+ * the whole seconds between start and end; the session counters, daily rollups and the
+ * column store account for every ended activity. The rows are inserted with batched
+ * JDBC statements rather than as entities, so none of the entity callbacks, name
+ * listener or dirty checking run per row.
+ * 
+ * Sessions are read in chunks of about focustrack.import.chunk-rows session and activity
+ * rows, each written in its own transaction; a session is never split across chunks.
+ * The next chunk is read while the current one is classified, and classified (its
+ * distinct app and title pairs, on focustrack.import.classify-threads threads) while
+ * the current one is written. Progress is logged per chunk and kept for the most
+ * recent imports.
+ */
+@Slf4j
+@Service
+public class ImportService {
+    
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_ERRORS = 20;
+    private static final int MAX_RECENT_IMPORTS = 20;
+    private static final int IN_LIST_SIZE = 500;
+    
+    private static final String INSERT_SESSION =
+            "INSERT INTO sessions (session_name, start_time, end_time, status, type, total_duration_seconds, " +
+            "focused_duration_seconds, distracted_duration_seconds, created_at, import_key) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERT_ACTIVITY =
+            "INSERT INTO activities (session_id, app_id, title_id, start_time, end_time, type, duration_seconds, " +
+            "created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ActivityClassifier activityClassifier;
+    private final NameDictionary nameDictionary;
+    private final RollupService rollupService;
+    private final ActivityColumnStore activityColumnStore;
+    private final ObjectReader sessionReader;
+    private final int chunkRows;
+    private final int batchSize;
+    private final int classifyThreads;
+    private final Counter importedSessions;
+    private final Counter importedActivities;
+    
+    private final AtomicLong importIds = new AtomicLong();
+    private final Map<Long, Progress> recentImports = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Progress> eldest) {
+            return size() > MAX_RECENT_IMPORTS;
+        }
+    };
+    
+    public ImportService(JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         ActivityClassifier activityClassifier,
+                         NameDictionary nameDictionary,
+                         RollupService rollupService,
+                         ActivityColumnStore activityColumnStore,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${focustrack.import.chunk-rows:10000}") int chunkRows,
+                         @Value("${focustrack.import.batch-size:1000}") int batchSize,
+                         @Value("${focustrack.import.classify-threads:0}") int classifyThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.activityClassifier = activityClassifier;
+        this.nameDictionary = nameDictionary;
+        this.rollupService = rollupService;
+        this.activityColumnStore = activityColumnStore;
+        this.sessionReader = objectMapper.readerFor(ActivityArchive.ArchivedSession.class);
+        this.chunkRows = chunkRows;
+        this.batchSize = batchSize;
+        this.classifyThreads = classifyThreads > 0 ? classifyThreads : Runtime.getRuntime().availableProcessors();
+        this.importedSessions = Counter.builder("import.rows")
+                .description("Rows written by bulk imports")
+                .tag("type", "sessions")
+                .register(meterRegistry);
+        this.importedActivities = Counter.builder("import.rows")
+                .description("Rows written by bulk imports")
+                .tag("type", "activities")
+                .register(meterRegistry);
+    }
+    
+    public enum Format {
+        CSV, NDJSON
+    }
+    
+    /**
+     * Imports the sessions read from the given input, which the caller closes. Chunks
+     * committed before a failure are kept; importing the input again completes it.
+     * @param source Names where the sessions come from; part of their import keys
+     * @return The outcome, with status FAILED if the input could not be read or written
+     */
+    public ImportProgressDTO importSessions(InputStream input, Format format, String source) {
+        Progress progress = new Progress(importIds.incrementAndGet(), source, format);
+        synchronized (recentImports) {
+            recentImports.put(progress.id, progress);
+        }
+        log.info("Import {} of {} sessions from {} started", progress.id, format, source);
+        
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService classifiers = Executors.newFixedThreadPool(classifyThreads, runnable -> {
+            Thread thread = new Thread(runnable, "import-classify-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            SessionSource sessions = open(input, format);
+            List<ImportedSession> chunk = readChunk(sessions, source, progress);
+            CompletableFuture<Map<NamePair, Activity.ActivityType>> types = classify(chunk, classifiers);
+            while (!chunk.isEmpty()) {
+                List<ImportedSession> next = readChunk(sessions, source, progress);
+                CompletableFuture<Map<NamePair, Activity.ActivityType>> nextTypes = classify(next, classifiers);
+                
+                ChunkResult result = write(chunk, types.join());
+                activityColumnStore.add(result.columnRows());
+                importedSessions.increment(result.sessions());
+                importedActivities.increment(result.activities());
+                progress.add(result);
+                log.info("Import {}: {}", progress.id, progress);
+                
+                chunk = next;
+                types = nextTypes;
+            }
+            progress.finish(ImportProgressDTO.ImportStatus.COMPLETED, null);
+            log.info("Import {} completed: {}", progress.id, progress);
+        } catch (IOException | RuntimeException e) {
+            progress.finish(ImportProgressDTO.ImportStatus.FAILED, e.toString());
+            log.warn("Import {} from {} failed: {}", progress.id, source, progress, e);
+        } finally {
+            classifiers.shutdownNow();
+        }
+        return progress.snapshot();
+    }
+    
+    /**
+     * The most recent imports, newest first, including those still running.
+     */
+    public List<ImportProgressDTO> getImports() {
+        List<ImportProgressDTO> imports = new ArrayList<>();
+        synchronized (recentImports) {
+            recentImports.values().forEach(progress -> imports.add(progress.snapshot()));
+        }
+        Collections.reverse(imports);
+        return imports;
+    }
+    
+    public Optional<ImportProgressDTO> getImport(long id) {
+        synchronized (recentImports) {
+            return Optional.ofNullable(recentImports.get(id)).map(Progress::snapshot);
+        }
+    }
+    
+    private SessionSource open(InputStream input, Format format) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, BUFFER_BYTES);
+        buffered.mark(2);
+        boolean gzip = buffered.read() == 0x1f && buffered.read() == 0x8b;
+        buffered.reset();
+        // GZIPInputStream reads concatenated members (e.g. archive files) as one stream
+        InputStream in = gzip ? new GZIPInputStream(buffered, BUFFER_BYTES) : buffered;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_BYTES);
+        return format == Format.CSV ? new CsvSessionSource(reader) : new NdjsonSessionSource(reader, sessionReader);
+    }
+    
+    /**
+     * Reads whole sessions until the chunk holds at least chunkRows rows. Invalid
+     * sessions are counted as rejected and left out.
+     */
+    private List<ImportedSession> readChunk(SessionSource sessions, String source, Progress progress)
+            throws IOException {
+        List<ImportedSession> chunk = new ArrayList<>();
+        int rows = 0;
+        while (rows < chunkRows) {
+            SessionSource.Entry entry = sessions.next();
+            if (entry == null) {
+                break;
+            }
+            String error = entry.error();
+            ImportedSession session = null;
+            if (error == null) {
+                try {
+                    session = ImportedSession.of(source, entry.session());
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                }
+            }
+            if (session == null) {
+                progress.reject("Line " + entry.line() + ": " + error);
+                continue;
+            }
+            chunk.add(session);
+            rows += 1 + session.activities().size();
+        }
+        return chunk;
+    }
+    
+    /**
+     * Classifies the distinct app and title pairs of the chunk, split evenly over the
+     * classifier threads.
+     */
+    private CompletableFuture<Map<NamePair, Activity.ActivityType>> classify(List<ImportedSession> chunk,
+                                                                             ExecutorService classifiers) {
+        List<NamePair> pairs = chunk.stream()
+                .flatMap(session -> session.activities().stream())
+                .map(activity -> new NamePair(activity.appName(), activity.windowTitle()))
+                .distinct()
+                .toList();
+        if (pairs.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        
+        int sliceSize = (pairs.size() + classifyThreads - 1) / classifyThreads;
+        List<CompletableFuture<Map<NamePair, Activity.ActivityType>>> slices = new ArrayList<>();
+        for (int from = 0; from < pairs.size(); from += sliceSize) {
+            List<NamePair> slice = pairs.subList(from, Math.min(pairs.size(), from + sliceSize));
+            slices.add(CompletableFuture.supplyAsync(() -> {
+                Map<NamePair, Activity.ActivityType> types = new HashMap<>();
+                slice.forEach(pair -> types.put(pair, activityClassifier.classify(pair.appName(), pair.windowTitle())));
+                return types;
+            }, classifiers));
+        }
+        return CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            Map<NamePair, Activity.ActivityType> types = new HashMap<>();
+            slices.forEach(slice -> types.putAll(slice.join()));
+            return types;
+        });
+    }
+    
+    private ChunkResult write(List<ImportedSession> chunk, Map<NamePair, Activity.ActivityType> types) {
+        try {
+            return transactionTemplate.execute(status -> insert(chunk, types));
+        } catch (DuplicateKeyException e) {
+            // A concurrent import of the same sessions committed some of them first; they are skipped now
+            return transactionTemplate.execute(status -> insert(chunk, types));
+        }
+    }
+    
+    private ChunkResult insert(List<ImportedSession> chunk, Map<NamePair, Activity.ActivityType> types) {
+        // The first of several sessions with the same key wins, as across chunks
+        Map<String, ImportedSession> sessions = new LinkedHashMap<>();
+        chunk.forEach(session -> sessions.putIfAbsent(session.key(), session));
+        sessions.keySet().removeAll(findSessionIds(sessions.keySet()).keySet());
+        if (sessions.isEmpty()) {
+            return new ChunkResult(0, chunk.size(), 0, List.of());
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_SESSION, sessions.values(), batchSize, (ps, session) -> {
+            long[] counters = session.counters(types);
+            ps.setString(1, session.sessionName());
+            ps.setObject(2, session.startTime());
+            ps.setObject(3, session.endTime());
+            ps.setString(4, session.status().name());
+            ps.setString(5, session.type().name());
+            ps.setLong(6, counters[0]);
+            ps.setLong(7, counters[1]);
+            ps.setLong(8, counters[2]);
+            ps.setObject(9, now);
+            ps.setString(10, session.key());
+        });
+        Map<String, Long> sessionIds = findSessionIds(sessions.keySet());
+        
+        List<ActivityRow> activities = new ArrayList<>();
+        for (ImportedSession session : sessions.values()) {
+            long sessionId = sessionIds.get(session.key());
+            rollupService.recordSession(session.startTime().toLocalDate());
+            for (ImportedActivity activity : session.activities()) {
+                Activity.ActivityType type = types.get(new NamePair(activity.appName(), activity.windowTitle()));
+                activities.add(new ActivityRow(sessionId, nameDictionary.applicationId(activity.appName()),
+                        nameDictionary.windowTitleId(activity.windowTitle()), activity, type));
+                if (activity.durationSeconds() != null) {
+                    rollupService.recordActivity(session.startTime().toLocalDate(), activity.appName(), type,
+                            activity.durationSeconds());
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_ACTIVITY, activities, batchSize, (ps, row) -> {
+            ps.setLong(1, row.sessionId());
+            ps.setInt(2, row.appId());
+            ps.setInt(3, row.titleId());
+            ps.setObject(4, row.activity().startTime());
+            ps.setObject(5, row.activity().endTime());
+            ps.setString(6, row.type().name());
+            ps.setObject(7, row.activity().durationSeconds());
+            ps.setObject(8, now);
+        });
+        
+        List<ActivityColumnStore.Row> columnRows = activityColumnStore.isLoaded()
+                ? findEndedActivities(sessions.values(), sessionIds)
+                : List.of();
+        return new ChunkResult(sessions.size(), chunk.size() - sessions.size(), activities.size(), columnRows);
+    }
+    
+    private Map<String, Long> findSessionIds(Collection<String> keys) {
+        Map<String, Long> ids = new HashMap<>();
+        forEachSlice(new ArrayList<>(keys), (placeholders, slice) ->
+                jdbcTemplate.query("SELECT import_key, id FROM sessions WHERE import_key IN (" + placeholders + ")",
+                        rs -> {
+                            ids.put(rs.getString(1), rs.getLong(2));
+                        }, slice.toArray()));
+        return ids;
+    }
+    
+    private List<ActivityColumnStore.Row> findEndedActivities(Collection<ImportedSession> sessions,
+                                                              Map<String, Long> sessionIds) {
+        Map<Long, LocalDateTime> sessionStarts = new HashMap<>();
+        sessions.forEach(session -> sessionStarts.put(sessionIds.get(session.key()), session.startTime()));
+        List<ActivityColumnStore.Row> rows = new ArrayList<>();
+        forEachSlice(new ArrayList<>(sessionStarts.keySet()), (placeholders, slice) ->
+                jdbcTemplate.query("SELECT id, session_id, start_time, duration_seconds, app_id, type " +
+                                "FROM activities WHERE duration_seconds IS NOT NULL AND session_id IN (" +
+                                placeholders + ")",
+                        rs -> {
+                            rows.add(ActivityColumnStore.Row.of(rs.getLong(1),
+                                    sessionStarts.get(rs.getLong(2)),
+                                    rs.getTimestamp(3).toLocalDateTime(),
+                                    rs.getLong(4),
+                                    rs.getInt(5),
+                                    Activity.ActivityType.valueOf(rs.getString(6))));
+                        }, slice.toArray()));
+        return rows;
+    }
+    
+    private static <T> void forEachSlice(List<T> values, SliceConsumer<T> consumer) {
+        for (int from = 0; from < values.size(); from += IN_LIST_SIZE) {
+            List<T> slice = values.subList(from, Math.min(values.size(), from + IN_LIST_SIZE));
+            consumer.accept(String.join(", ", Collections.nCopies(slice.size(), "?")), slice);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface SliceConsumer<T> {
+        void accept(String placeholders, List<T> slice);
+    }
+    
+    private record NamePair(String appName, String windowTitle) {
+    }
+    
+    private record ActivityRow(long sessionId, int appId, int titleId, ImportedActivity activity,
+                               Activity.ActivityType type) {
+    }
+    
+    private record ChunkResult(long sessions, long skipped, long activities, List<ActivityColumnStore.Row> columnRows) {
+    }
+    
+    private record ImportedActivity(String appName, String windowTitle, LocalDateTime startTime,
+                                    LocalDateTime endTime, Long durationSeconds) {
+    }
+    
+    /**
+     * A valid input session, with the defaults a new session gets and the activity ends
+     * filled in.
+     */
+    private record ImportedSession(String key, String sessionName, LocalDateTime startTime, LocalDateTime endTime,
+                                   Session.SessionStatus status, Session.SessionType type,
+                                   List<ImportedActivity> activities) {
+        
+        static ImportedSession of(String source, ActivityArchive.ArchivedSession session) {
+            if (session.startTime() == null) {
+                throw new IllegalArgumentException("session has no startTime");
+            }
+            if (session.endTime() != null && session.endTime().isBefore(session.startTime())) {
+                throw new IllegalArgumentException("session ends before it starts");
+            }
+            
+            List<ActivityArchive.ArchivedActivity> input = session.activities() != null ? session.activities() : List.of();
+            List<ImportedActivity> activities = new ArrayList<>(input.size());
+            for (int i = 0; i < input.size(); i++) {
+                ActivityArchive.ArchivedActivity activity = input.get(i);
+                if (activity.appName() == null || activity.windowTitle() == null || activity.startTime() == null) {
+                    throw new IllegalArgumentException("activity " + (i + 1) + " lacks appName, windowTitle or startTime");
+                }
+                // As live, where the next activity ends the previous one
+                LocalDateTime endTime = activity.endTime();
+                if (endTime == null && i + 1 < input.size()) {
+                    endTime = input.get(i + 1).startTime();
+                }
+                if (endTime != null && endTime.isBefore(activity.startTime())) {
+                    throw new IllegalArgumentException("activity " + (i + 1) + " ends before it starts");
+                }
+                activities.add(new ImportedActivity(activity.appName(), activity.windowTitle(), activity.startTime(),
+                        endTime, endTime != null ? Duration.between(activity.startTime(), endTime).getSeconds() : null));
+            }
+            
+            String key = source + ":" + (session.id() != null ? session.id() : session.startTime());
+            return new ImportedSession(key,
+                    session.sessionName() != null ? session.sessionName() : "Session " + session.startTime(),
+                    session.startTime(),
+                    session.endTime(),
+                    session.status() != null ? session.status() : defaultStatus(session),
+                    session.type() != null ? session.type() : Session.SessionType.FOCUS,
+                    activities);
+        }
+        
+        /**
+         * A session without a status is completed if it has an end time, so that
+         * backfilled history is neither shown as live nor kept from the archive, and
+         * active otherwise.
+         */
+        private static Session.SessionStatus defaultStatus(ActivityArchive.ArchivedSession session) {
+            return session.endTime() != null ? Session.SessionStatus.COMPLETED : Session.SessionStatus.ACTIVE;
+        }
+        
+        /**
+         * Total, focused and distracted seconds over the ended activities.
+         */
+        long[] counters(Map<NamePair, Activity.ActivityType> types) {
+            long[] counters = new long[3];
+            for (ImportedActivity activity : activities) {
+                if (activity.durationSeconds() == null) {
+                    continue;
+                }
+                counters[0] += activity.durationSeconds();
+                Activity.ActivityType type = types.get(new NamePair(activity.appName(), activity.windowTitle()));
+                if (type == Activity.ActivityType.PRODUCTIVE) {
+                    counters[1] += activity.durationSeconds();
+                } else if (type == Activity.ActivityType.DISTRACTING) {
+                    counters[2] += activity.durationSeconds();
+                }
+            }
+            return counters;
+        }
+    }
+    
+    /**
+     * Progress of one import, updated by the importing thread and read by others.
+     */
+    private static final class Progress {
+        
+        private final long id;
+        private final ImportProgressDTO state;
+        private long errorCount;
+        
+        Progress(long id, String source, Format format) {
+            this.id = id;
+            this.state = new ImportProgressDTO(id, source, format.name(), ImportProgressDTO.ImportStatus.RUNNING,
+                    LocalDateTime.now(), null, 0, 0, 0, 0, new ArrayList<>());
+        }
+        
+        synchronized void add(ChunkResult result) {
+            state.setSessionsImported(state.getSessionsImported() + result.sessions());
+            state.setSessionsSkipped(state.getSessionsSkipped() + result.skipped());
+            state.setActivitiesImported(state.getActivitiesImported() + result.activities());
+        }
+        
+        synchronized void reject(String error) {
+            state.setSessionsRejected(state.getSessionsRejected() + 1);
+            addError(error);
+        }
+        
+        synchronized void finish(ImportProgressDTO.ImportStatus status, String error) {
+            state.setStatus(status);
+            state.setFinishedAt(LocalDateTime.now());
+            if (error != null) {
+                addError(error);
+            }
+        }
+        
+        synchronized ImportProgressDTO snapshot() {
+            return new ImportProgressDTO(id, state.getSource(), state.getFormat(), state.getStatus(),
+                    state.getStartedAt(), state.getFinishedAt(), state.getSessionsImported(),
+                    state.getSessionsSkipped(), state.getSessionsRejected(), state.getActivitiesImported(),
+                    List.copyOf(state.getErrors()));
+        }
+        
+        @Override
+        public synchronized String toString() {
+            return state.getSessionsImported() + " sessions and " + state.getActivitiesImported() +
+                    " activities imported, " + state.getSessionsSkipped() + " sessions skipped, " +
+                    state.getSessionsRejected() + " rejected";
+        }
+        
+        private void addError(String error) {
+            // Only the first errors are kept; the count of rejected sessions covers the rest
+            if (errorCount++ < MAX_ERRORS) {
+                state.getErrors().add(error);
+            }
+        }
+    }
+    
+    /**
+     * Reads the sessions of an input one by one.
+     */
+    interface SessionSource {
+        
+        /**
+         * The next session, or null at the end of the input.
+         */
+        Entry next() throws IOException;
+        
+        /**
+         * A session read from the input starting at the given line, or why it could not
+         * be read.
+         */
+        record Entry(long line, ActivityArchive.ArchivedSession session, String error) {
+        }
+    }
+    
+    /**
+     * One {@link ActivityArchive.ArchivedSession} per line; unknown fields are ignored.
+     */
+    private static class NdjsonSessionSource implements SessionSource {
+        
+        private final BufferedReader reader;
+        private final ObjectReader sessionReader;
+        private long line;
+        
+        NdjsonSessionSource(BufferedReader reader, ObjectReader sessionReader) {
+            this.reader = reader;
+            this.sessionReader = sessionReader;
+        }
+        
+        @Override
+        public Entry next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+            } while (text != null && text.isBlank());
+            if (text == null) {
+                return null;
+            }
+            try {
+                return new Entry(line, sessionReader.readValue(text), null);
+            } catch (JsonProcessingException e) {
+                return new Entry(line, null, e.getOriginalMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * An activity start or end event accepted for asynchronous ingestion. The sequence
+ * number is its position in the {@link ActivityEventLog}, or 0 when the log is disabled.
+ */
+record IngestionEvent(long sequence, Kind kind, Long sessionId, Long activityId,
+                      String appName, String windowTitle, LocalDateTime timestamp) {
+    
+    enum Kind {
+        // A window switch reported for a session (POST /api/activities/session/{id})
+        START,
+        // An activity ended explicitly (PUT /api/activities/{id}/end)
+        END
+    }
+    
+    static IngestionEvent start(ActivityEvent event) {
+        return new IngestionEvent(0, Kind.START, event.getSessionId(), null,
+                event.getAppName(), event.getWindowTitle(), event.getTimestamp());
+    }
+    
+    static IngestionEvent end(Long activityId, LocalDateTime timestamp) {
+        return new IngestionEvent(0, Kind.END, null, activityId, null, null, timestamp);
+    }
+    
+    IngestionEvent withSequence(long sequence) {
+        return new IngestionEvent(sequence, kind, sessionId, activityId, appName, windowTitle, timestamp);
+    }
+    
+    ActivityEvent toActivityEvent() {
+        return new ActivityEvent(sessionId, appName, windowTitle, timestamp);
+    }
+}
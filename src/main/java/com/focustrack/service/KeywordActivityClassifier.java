@@ -0,0 +1,130 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+import com.focustrack.model.ClassificationRule;
+import com.focustrack.model.ClassificationRule.MatchTarget;
+import com.focustrack.repository.ClassificationRuleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keyword based classifier backed by the classification_rules table.
+ * 
+ * The enabled rules are compiled into a {@link KeywordMatcher} which is swapped in
+ * atomically, so classification never blocks on a reload. The table is polled for
+ * changes and recompiled when rules are added, edited or removed. An empty table is
+ * seeded with the built-in default rules on startup.
+ * 
+ * Results are memoized per (appName, windowTitle) in a bounded cache, since the same
+ * pairs repeat constantly. The cache is cleared whenever the rules are recompiled and
+ * its statistics are published as the "activity.classification" cache metrics.
+ */
+@Slf4j
+@Service
+public class KeywordActivityClassifier implements ActivityClassifier {
+    
+    private static final int DISTRACTING_PRIORITY = 20;
+    private static final int PRODUCTIVE_PRIORITY = 10;
+    
+    private final ClassificationRuleRepository ruleRepository;
+    private final Cache<ClassificationKey, Activity.ActivityType> cache;
+    private final Lock reloadLock = new ReentrantLock();
+    
+    private volatile KeywordMatcher matcher;
+    private volatile String loadedVersion;
+    
+    public KeywordActivityClassifier(ClassificationRuleRepository ruleRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${focustrack.classifier.cache.max-size:10000}") long cacheMaxSize) {
+        this.ruleRepository = ruleRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "activity.classification");
+    }
+    
+    @PostConstruct
+    public void init() {
+        if (ruleRepository.count() == 0) {
+            ruleRepository.saveAll(defaultRules());
+        }
+        reload();
+    }
+    
+    @Override
+    public Activity.ActivityType classify(String appName, String windowTitle) {
+        // The matcher is read inside the mapping function so that an entry computed
+        // concurrently with a reload is removed by the invalidation that follows the swap
+        return cache.get(new ClassificationKey(appName, windowTitle),
+                key -> matcher.classify(key.appName(), key.windowTitle()));
+    }
+    
+    @Override
+    public void reload() {
+        // A lock rather than synchronized: the reload queries the database, which would
+        // pin the carrier thread when running on a virtual thread
+        reloadLock.lock();
+        try {
+            String version = currentVersion();
+            List<ClassificationRule> rules = ruleRepository.findByEnabledTrueOrderByIdAsc();
+            
+            matcher = KeywordMatcher.compile(rules, Activity.ActivityType.NEUTRAL);
+            cache.invalidateAll();
+            loadedVersion = version;
+            log.info("Loaded {} classification rules", rules.size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${focustrack.classifier.reload-interval-ms:30000}")
+    public void reloadIfChanged() {
+        if (!Objects.equals(loadedVersion, currentVersion())) {
+            reload();
+        }
+    }
+    
+    private String currentVersion() {
+        LocalDateTime lastUpdate = ruleRepository.findLastUpdatedAt();
+        return ruleRepository.count() + ":" + lastUpdate;
+    }
+    
+    public static List<ClassificationRule> defaultRules() {
+        List<ClassificationRule> rules = new ArrayList<>();
+        
+        // Distracting apps
+        for (String keyword : List.of("youtube", "instagram", "facebook", "twitter", "tiktok", "netflix")) {
+            rules.add(new ClassificationRule(keyword, MatchTarget.ANY, Activity.ActivityType.DISTRACTING, DISTRACTING_PRIORITY));
+        }
+        rules.add(new ClassificationRule("reddit", MatchTarget.WINDOW_TITLE, Activity.ActivityType.DISTRACTING, DISTRACTING_PRIORITY));
+        
+        // Productive apps
+        for (String keyword : List.of("code", "ide", "intellij", "eclipse", "vs code", "visual studio",
+                "notion", "obsidian", "word", "excel", "powerpoint", "pdf")) {
+            rules.add(new ClassificationRule(keyword, MatchTarget.APP_NAME, Activity.ActivityType.PRODUCTIVE, PRODUCTIVE_PRIORITY));
+        }
+        for (String keyword : List.of("github", "stackoverflow")) {
+            rules.add(new ClassificationRule(keyword, MatchTarget.WINDOW_TITLE, Activity.ActivityType.PRODUCTIVE, PRODUCTIVE_PRIORITY));
+        }
+        
+        return rules;
+    }
+    
+    private record ClassificationKey(String appName, String windowTitle) {
+    }
+}
@@ -0,0 +1,181 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+import com.focustrack.model.ClassificationRule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Immutable Aho-Corasick automaton compiled from a set of classification rules.
+ * 
+ * Keywords are matched case-insensitively. The app name and the window title are fed
+ * through the same automaton in one pass (the state is reset between the two strings),
+ * and every state carries the highest priority rule that may fire for each of the two
+ * targets, so matching does not allocate and does no work beyond one table lookup per
+ * character. Among matching rules the highest priority wins; ties go to the rule that
+ * was listed first.
+ */
+public final class KeywordMatcher {
+    
+    private static final int NO_RULE = -1;
+    
+    private final char[] alphabet;
+    private final int[] asciiIndex;
+    private final int[][] transitions;
+    private final int[] bestAppRule;
+    private final int[] bestTitleRule;
+    private final int[] rulePriority;
+    private final Activity.ActivityType[] ruleType;
+    private final Activity.ActivityType defaultType;
+    
+    private KeywordMatcher(char[] alphabet, int[][] transitions, int[] bestAppRule, int[] bestTitleRule,
+                           int[] rulePriority, Activity.ActivityType[] ruleType, Activity.ActivityType defaultType) {
+        this.alphabet = alphabet;
+        this.transitions = transitions;
+        this.bestAppRule = bestAppRule;
+        this.bestTitleRule = bestTitleRule;
+        this.rulePriority = rulePriority;
+        this.ruleType = ruleType;
+        this.defaultType = defaultType;
+        
+        this.asciiIndex = new int[128];
+        for (int i = 0; i < alphabet.length; i++) {
+            if (alphabet[i] < 128) {
+                asciiIndex[alphabet[i]] = i + 1;
+            }
+        }
+    }
+    
+    public static KeywordMatcher compile(List<ClassificationRule> rules, Activity.ActivityType defaultType) {
+        List<ClassificationRule> usable = rules.stream()
+                .filter(r -> r.getKeyword() != null && !r.getKeyword().isEmpty())
+                .toList();
+        
+        // Trie construction over the lower-cased keywords
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> outputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        outputs.add(new ArrayList<>());
+        
+        for (int r = 0; r < usable.size(); r++) {
+            String keyword = usable.get(r).getKeyword().toLowerCase(Locale.ROOT);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new HashMap<>());
+                    outputs.add(new ArrayList<>());
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            outputs.get(state).add(r);
+        }
+        
+        SortedSet<Character> symbols = new TreeSet<>();
+        children.forEach(m -> symbols.addAll(m.keySet()));
+        char[] alphabet = new char[symbols.size()];
+        int n = 0;
+        for (char c : symbols) {
+            alphabet[n++] = c;
+        }
+        
+        int states = children.size();
+        int[][] transitions = new int[states][alphabet.length + 1];
+        int[] fail = new int[states];
+        int[] rulePriority = new int[usable.size()];
+        Activity.ActivityType[] ruleType = new Activity.ActivityType[usable.size()];
+        for (int r = 0; r < usable.size(); r++) {
+            rulePriority[r] = usable.get(r).getPriority() != null ? usable.get(r).getPriority() : 0;
+            ruleType[r] = usable.get(r).getType();
+        }
+        
+        int[] bestAppRule = new int[states];
+        int[] bestTitleRule = new int[states];
+        Arrays.fill(bestAppRule, NO_RULE);
+        Arrays.fill(bestTitleRule, NO_RULE);
+        
+        // Breadth-first pass computes failure links and folds them into a full transition table
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            
+            bestAppRule[state] = state == 0 ? NO_RULE : bestAppRule[fail[state]];
+            bestTitleRule[state] = state == 0 ? NO_RULE : bestTitleRule[fail[state]];
+            for (int r : outputs.get(state)) {
+                ClassificationRule.MatchTarget target = usable.get(r).getTarget();
+                if (target != ClassificationRule.MatchTarget.WINDOW_TITLE) {
+                    bestAppRule[state] = better(r, bestAppRule[state], rulePriority);
+                }
+                if (target != ClassificationRule.MatchTarget.APP_NAME) {
+                    bestTitleRule[state] = better(r, bestTitleRule[state], rulePriority);
+                }
+            }
+            
+            for (int a = 0; a < alphabet.length; a++) {
+                Integer child = children.get(state).get(alphabet[a]);
+                if (child != null) {
+                    fail[child] = state == 0 ? 0 : transitions[fail[state]][a + 1];
+                    transitions[state][a + 1] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state][a + 1] = state == 0 ? 0 : transitions[fail[state]][a + 1];
+                }
+            }
+        }
+        
+        return new KeywordMatcher(alphabet, transitions, bestAppRule, bestTitleRule,
+                rulePriority, ruleType, defaultType);
+    }
+    
+    public Activity.ActivityType classify(String appName, String windowTitle) {
+        int best = scan(appName, bestAppRule, NO_RULE);
+        best = scan(windowTitle, bestTitleRule, best);
+        return best == NO_RULE ? defaultType : ruleType[best];
+    }
+    
+    private int scan(String text, int[] bestRule, int best) {
+        if (text == null) {
+            return best;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state][indexOf(Character.toLowerCase(text.charAt(i)))];
+            int candidate = bestRule[state];
+            if (candidate != NO_RULE) {
+                best = better(candidate, best, rulePriority);
+            }
+        }
+        return best;
+    }
+    
+    private int indexOf(char c) {
+        if (c < 128) {
+            return asciiIndex[c];
+        }
+        int i = Arrays.binarySearch(alphabet, c);
+        return i >= 0 ? i + 1 : 0;
+    }
+    
+    private static int better(int candidate, int current, int[] rulePriority) {
+        if (current == NO_RULE) {
+            return candidate;
+        }
+        if (rulePriority[candidate] != rulePriority[current]) {
+            return rulePriority[candidate] > rulePriority[current] ? candidate : current;
+        }
+        return Math.min(candidate, current);
+    }
+}
@@ -1,5 +1,10 @@
 package com.focustrack.service;
 
+import com.focustrack.dto.MonitoringStatusDTO;
+
+import java.util.Optional;
+import java.util.Set;
+
 /**
  * Service interface for monitoring user activity.
  * 
@@ -34,20 +39,32 @@ public interface MonitoringService {
     boolean isUserFocused();
     
     /**
-     * Starts monitoring activity in the background.
+     * Starts monitoring activity for the given session in the background.
      * This should periodically send activity updates to the backend.
+     * Starting a session that is already monitored has no effect.
      */
     void startMonitoring(Long sessionId);
     
     /**
-     * Stops monitoring activity.
+     * Stops monitoring activity for the given session.
+     */
+    void stopMonitoring(Long sessionId);
+    
+    /**
+     * Checks if monitoring is currently active for the given session.
+     * @return true if the session is being monitored
      */
-    void stopMonitoring();
+    boolean isMonitoringActive(Long sessionId);
     
     /**
-     * Checks if monitoring is currently active.
-     * @return true if monitoring is running
+     * Gets the ids of all sessions currently being monitored.
+     * @return The monitored session ids
      */
-    boolean isMonitoringActive();
+    Set<Long> getMonitoredSessions();
+    
+    /**
+     * Gets the monitoring state of one session, including the last window sampled for it.
+     * @return The state, or empty if the session is not being monitored
+     */
+    Optional<MonitoringStatusDTO> getMonitoringStatus(Long sessionId);
 }
-
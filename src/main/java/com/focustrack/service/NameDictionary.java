@@ -0,0 +1,144 @@
+package com.focustrack.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Intern cache over the applications and window_titles dictionary tables, mapping
+ * names to the integer ids stored on activities and back.
+ * 
+ * Lookups are served from bounded in-memory caches, so ingesting a known app or title
+ * costs no query. An unknown name is inserted in the caller's transaction (through
+ * JDBC, so that losing a race with a concurrent insert of the same name only fails
+ * that statement) and is cached once that transaction has committed; until then it is
+ * remembered for the rest of the transaction only.
+ */
+@Component
+public class NameDictionary {
+    
+    private final Dictionary applications;
+    private final Dictionary windowTitles;
+    
+    public NameDictionary(JdbcTemplate jdbcTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${focustrack.names.cache.max-size:100000}") long maxSize) {
+        this.applications = new Dictionary(jdbcTemplate, "applications", "name", maxSize);
+        this.windowTitles = new Dictionary(jdbcTemplate, "window_titles", "title", maxSize);
+        CaffeineCacheMetrics.monitor(meterRegistry, applications.ids, "names.applications");
+        CaffeineCacheMetrics.monitor(meterRegistry, windowTitles.ids, "names.window_titles");
+    }
+    
+    public int applicationId(String name) {
+        return applications.idOf(name);
+    }
+    
+    public String applicationName(int id) {
+        return applications.valueOf(id);
+    }
+    
+    public int windowTitleId(String title) {
+        return windowTitles.idOf(title);
+    }
+    
+    public String windowTitle(int id) {
+        return windowTitles.valueOf(id);
+    }
+    
+    private static final class Dictionary {
+        
+        private final JdbcTemplate jdbcTemplate;
+        private final String selectId;
+        private final String selectValue;
+        private final String insert;
+        private final Cache<String, Integer> ids;
+        private final Cache<Integer, String> values;
+        
+        Dictionary(JdbcTemplate jdbcTemplate, String table, String column, long maxSize) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.selectId = "SELECT id FROM " + table + " WHERE " + column + " = ?";
+            this.selectValue = "SELECT " + column + " FROM " + table + " WHERE id = ?";
+            this.insert = "INSERT INTO " + table + " (" + column + ") VALUES (?)";
+            this.ids = Caffeine.newBuilder().maximumSize(maxSize).recordStats().build();
+            this.values = Caffeine.newBuilder().maximumSize(maxSize).build();
+        }
+        
+        int idOf(String value) {
+            Integer id = ids.getIfPresent(value);
+            if (id != null) {
+                return id;
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Integer> created = (Map<String, Integer>) TransactionSynchronizationManager.getResource(this);
+            if (created != null && (id = created.get(value)) != null) {
+                return id;
+            }
+            
+            id = select(value);
+            if (id != null) {
+                cache(value, id);
+                return id;
+            }
+            
+            try {
+                jdbcTemplate.update(insert, value);
+            } catch (DuplicateKeyException e) {
+                // Inserted by a concurrent transaction that committed first
+            }
+            id = select(value);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                createdInTransaction().put(value, id);
+            } else {
+                cache(value, id);
+            }
+            return id;
+        }
+        
+        String valueOf(int id) {
+            return values.get(id, key -> jdbcTemplate.queryForObject(selectValue, String.class, key));
+        }
+        
+        private Integer select(String value) {
+            List<Integer> found = jdbcTemplate.queryForList(selectId, Integer.class, value);
+            return found.isEmpty() ? null : found.get(0);
+        }
+        
+        private void cache(String value, int id) {
+            ids.put(value, id);
+            values.put(id, value);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private Map<String, Integer> createdInTransaction() {
+            Map<String, Integer> created = (Map<String, Integer>) TransactionSynchronizationManager.getResource(this);
+            if (created == null) {
+                Map<String, Integer> bound = new HashMap<>();
+                TransactionSynchronizationManager.bindResource(this, bound);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        bound.forEach(Dictionary.this::cache);
+                    }
+                    
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(Dictionary.this);
+                    }
+                });
+                created = bound;
+            }
+            return created;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.focustrack.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the id of the open (not yet ended) activity of each session so that a
+ * window switch can find it with a primary-key lookup instead of a query.
+ * 
+ * Entries are hints only: callers must verify the activity is still open and fall back
+ * to the indexed query on a miss, which also covers rolled back transactions.
+ */
+@Component
+public class OpenActivityTracker {
+    
+    private final Map<Long, Long> openActivityIds = new ConcurrentHashMap<>();
+    
+    public Optional<Long> get(Long sessionId) {
+        return Optional.ofNullable(openActivityIds.get(sessionId));
+    }
+    
+    public void put(Long sessionId, Long activityId) {
+        openActivityIds.put(sessionId, activityId);
+    }
+    
+    public void remove(Long sessionId, Long activityId) {
+        openActivityIds.remove(sessionId, activityId);
+    }
+    
+    public void clear(Long sessionId) {
+        openActivityIds.remove(sessionId);
+    }
+}
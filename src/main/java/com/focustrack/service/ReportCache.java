@@ -0,0 +1,81 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ProductivityReportDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * Caches generated reports per kind and date range.
+ * 
+ * Entries do not expire; they are evicted when a committed write changes the rollups
+ * of a day inside their range (see {@link DailyRollupsChangedEvent}). Reports over past
+ * days therefore stay cached until capacity runs out, while a report covering today is
+ * regenerated after the next activity write. A report generated while an invalidation
+ * happened is returned but not cached, since it may predate the write.
+ */
+@Component
+public class ReportCache {
+    
+    private final Cache<ReportKey, ProductivityReportDTO> cache;
+    private final MeterRegistry meterRegistry;
+    private final Object invalidationLock = new Object();
+    private long invalidations;
+    
+    public ReportCache(MeterRegistry meterRegistry,
+                       @Value("${focustrack.reports.cache.max-size:1000}") long maxSize) {
+        this.meterRegistry = meterRegistry;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "reports");
+    }
+    
+    public ProductivityReportDTO get(String kind, LocalDate startDate, LocalDate endDate,
+                                     Supplier<ProductivityReportDTO> generator) {
+        ReportKey key = new ReportKey(kind, startDate, endDate);
+        ProductivityReportDTO cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        
+        long observed;
+        synchronized (invalidationLock) {
+            observed = invalidations;
+        }
+        ProductivityReportDTO report = Timer.builder("reports.generation")
+                .tag("kind", kind)
+                .register(meterRegistry)
+                .record(generator);
+        synchronized (invalidationLock) {
+            if (observed == invalidations) {
+                cache.put(key, report);
+            }
+        }
+        return report;
+    }
+    
+    @EventListener
+    public void onRollupsChanged(DailyRollupsChangedEvent event) {
+        synchronized (invalidationLock) {
+            invalidations++;
+            cache.asMap().keySet().removeIf(key -> event.dates().stream().anyMatch(key::covers));
+        }
+    }
+    
+    private record ReportKey(String kind, LocalDate startDate, LocalDate endDate) {
+        
+        boolean covers(LocalDate date) {
+            return !date.isBefore(startDate) && !date.isAfter(endDate);
+        }
+    }
+}
@@ -2,153 +2,256 @@ package com.focustrack.service;
 
 import com.focustrack.dto.ProductivityReportDTO;
 import com.focustrack.model.Activity;
-import com.focustrack.model.Session;
+import com.focustrack.model.DailyRollup;
 import com.focustrack.repository.ActivityRepository;
+import com.focustrack.repository.DailyAppRollupRepository;
+import com.focustrack.repository.DailyRollupRepository;
 import com.focustrack.repository.SessionRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Productivity reports. The report builders run in read-only transactions, which the
+ * "reports.generate" timer measures; the public entry points open those transactions
+ * through a template, since calls between the methods of this class bypass the
+ * {@link Transactional} proxy.
+ */
 @Service
-@RequiredArgsConstructor
 public class ReportService {
     
     private final SessionRepository sessionRepository;
     private final ActivityRepository activityRepository;
+    private final DailyRollupRepository dailyRollupRepository;
+    private final DailyAppRollupRepository dailyAppRollupRepository;
+    private final ReportCache reportCache;
+    private final ActivityColumnStore activityColumnStore;
+    private final ActivityArchive activityArchive;
+    private final NameDictionary nameDictionary;
+    private final ServiceMetrics serviceMetrics;
+    private final TransactionTemplate readOnlyTransaction;
+    
+    public ReportService(SessionRepository sessionRepository,
+                         ActivityRepository activityRepository,
+                         DailyRollupRepository dailyRollupRepository,
+                         DailyAppRollupRepository dailyAppRollupRepository,
+                         ReportCache reportCache,
+                         ActivityColumnStore activityColumnStore,
+                         ActivityArchive activityArchive,
+                         TransactionTemplate transactionTemplate,
+                         NameDictionary nameDictionary,
+                         ServiceMetrics serviceMetrics) {
+        this.sessionRepository = sessionRepository;
+        this.activityRepository = activityRepository;
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.dailyAppRollupRepository = dailyAppRollupRepository;
+        this.reportCache = reportCache;
+        this.activityColumnStore = activityColumnStore;
+        this.activityArchive = activityArchive;
+        this.nameDictionary = nameDictionary;
+        this.serviceMetrics = serviceMetrics;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+    }
     
     public ProductivityReportDTO generateDailyReport(LocalDate date) {
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(23, 59, 59);
-        
-        return generateReport(startOfDay, endOfDay);
+        return reportCache.get("daily", date, date,
+                () -> readOnlyTransaction.execute(status -> generateReportFromRollups(date, date)));
     }
     
     public ProductivityReportDTO generateWeeklyReport(LocalDate startDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = start.plusDays(7).minusSeconds(1);
-        
-        return generateReport(start, end);
+        LocalDate endDate = startDate.plusDays(6);
+        return reportCache.get("weekly", startDate, endDate,
+                () -> readOnlyTransaction.execute(status -> generateReportFromRollups(startDate, endDate)));
     }
     
-    public ProductivityReportDTO generateReport(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Session> sessions = sessionRepository.findByDateRange(startDate, endDate);
-        List<Activity> allActivities = new ArrayList<>();
+    /**
+     * Builds a report for whole days from the daily rollups instead of the raw activities.
+     */
+    @Transactional(readOnly = true)
+    public ProductivityReportDTO generateReportFromRollups(LocalDate startDate, LocalDate endDate) {
+        serviceMetrics.timeTransaction("reports.generate", "source", "rollups");
+        UsageAccumulator usage = new UsageAccumulator();
         
-        for (Session session : sessions) {
-            allActivities.addAll(activityRepository.findBySession(session));
+        for (DailyRollup rollup : dailyRollupRepository.findByRollupDateBetween(startDate, endDate)) {
+            for (Activity.ActivityType type : Activity.ActivityType.values()) {
+                usage.addTypeTotal(type, rollup.getSeconds(type));
+            }
+            usage.addSessions(rollup.getRollupDate(), rollup.getSessionCount());
         }
         
-        // Calculate totals
-        long totalFocusTime = allActivities.stream()
-                .filter(a -> a.getType() == Activity.ActivityType.PRODUCTIVE && a.getDurationSeconds() != null)
-                .mapToLong(Activity::getDurationSeconds)
-                .sum();
-        
-        long totalDistractedTime = allActivities.stream()
-                .filter(a -> a.getType() == Activity.ActivityType.DISTRACTING && a.getDurationSeconds() != null)
-                .mapToLong(Activity::getDurationSeconds)
-                .sum();
-        
-        long totalNeutralTime = allActivities.stream()
-                .filter(a -> a.getType() == Activity.ActivityType.NEUTRAL && a.getDurationSeconds() != null)
-                .mapToLong(Activity::getDurationSeconds)
-                .sum();
-        
-        long totalTime = totalFocusTime + totalDistractedTime + totalNeutralTime;
+        for (Object[] row : dailyAppRollupRepository.getAppTypeUsageStats(startDate, endDate)) {
+            usage.addAppUsage((String) row[0], (Activity.ActivityType) row[1], ((Number) row[2]).longValue());
+        }
         
-        // Calculate scores
-        double productivityScore = totalTime > 0 ? (double) totalFocusTime / totalTime * 100 : 0;
-        double distractionScore = totalTime > 0 ? (double) totalDistractedTime / totalTime * 100 : 0;
+        return usage.toReport();
+    }
+    
+    /**
+     * Builds a report for an arbitrary range from the column store, or from the
+     * activities table while the store is disabled.
+     */
+    public ProductivityReportDTO generateReport(LocalDateTime startDate, LocalDateTime endDate) {
+        return readOnlyTransaction.execute(status -> activityColumnStore.isLoaded()
+                ? generateReportFromColumns(startDate, endDate)
+                : generateReportFromActivities(startDate, endDate));
+    }
+    
+    /**
+     * Like {@link #generateReport(LocalDateTime, LocalDateTime)}, optionally adding the
+     * sessions archived by {@link RetentionService}. Every archived month overlapping
+     * the range is streamed from its file, before a database connection is taken.
+     */
+    public ProductivityReportDTO generateReport(LocalDateTime startDate, LocalDateTime endDate, boolean includeArchived) {
+        if (!includeArchived) {
+            return generateReport(startDate, endDate);
+        }
+        UsageAccumulator usage = new UsageAccumulator();
+        activityArchive.scan(startDate, endDate, session -> {
+            usage.addSessions(session.startTime().toLocalDate(), 1);
+            for (ActivityArchive.ArchivedActivity activity : session.activities()) {
+                if (activity.durationSeconds() != null) {
+                    usage.add(activity.appName(), activity.type(), activity.durationSeconds());
+                }
+            }
+        });
+        readOnlyTransaction.executeWithoutResult(status -> {
+            serviceMetrics.timeTransaction("reports.generate", "source", "archive");
+            if (activityColumnStore.isLoaded()) {
+                addColumnUsage(usage, startDate, endDate);
+            } else {
+                addActivityUsage(usage, startDate, endDate);
+            }
+            addSessions(usage, startDate, endDate);
+        });
+        return usage.toReport();
+    }
+    
+    @Transactional(readOnly = true)
+    public ProductivityReportDTO generateReportFromColumns(LocalDateTime startDate, LocalDateTime endDate) {
+        serviceMetrics.timeTransaction("reports.generate", "source", "columns");
+        UsageAccumulator usage = new UsageAccumulator();
+        addColumnUsage(usage, startDate, endDate);
+        return addSessions(usage, startDate, endDate).toReport();
+    }
+    
+    @Transactional(readOnly = true)
+    public ProductivityReportDTO generateReportFromActivities(LocalDateTime startDate, LocalDateTime endDate) {
+        serviceMetrics.timeTransaction("reports.generate", "source", "activities");
+        UsageAccumulator usage = new UsageAccumulator();
+        addActivityUsage(usage, startDate, endDate);
+        return addSessions(usage, startDate, endDate).toReport();
+    }
+    
+    private void addColumnUsage(UsageAccumulator usage, LocalDateTime startDate, LocalDateTime endDate) {
+        activityColumnStore.aggregate(startDate, endDate, usage::add);
+    }
+    
+    private void addActivityUsage(UsageAccumulator usage, LocalDateTime startDate, LocalDateTime endDate) {
+        // Durations are summed per (app id, type) in the database; one row per group comes back
+        for (Object[] row : activityRepository.getAppTypeUsageStats(startDate, endDate)) {
+            usage.add(nameDictionary.applicationName((Integer) row[0]), (Activity.ActivityType) row[1],
+                    ((Number) row[2]).longValue());
+        }
+    }
+    
+    private UsageAccumulator addSessions(UsageAccumulator usage, LocalDateTime startDate, LocalDateTime endDate) {
         
-        // Get app usage stats
-        Map<String, Long> appUsageMap = allActivities.stream()
-                .filter(a -> a.getDurationSeconds() != null)
-                .collect(Collectors.groupingBy(
-                        Activity::getAppName,
-                        Collectors.summingLong(Activity::getDurationSeconds)
-                ));
+        for (LocalDateTime sessionStart : sessionRepository.findStartTimesByDateRange(startDate, endDate)) {
+            usage.addSessions(sessionStart.toLocalDate(), 1);
+        }
+        return usage;
+    }
+    
+    /**
+     * Single-pass accumulator for report figures. Usage is fed as (app, type, seconds)
+     * triples, in any grouping, or as type totals and per-app usage separately when
+     * those come from different sources; sessions are fed as per-day counts.
+     */
+    static class UsageAccumulator {
         
-        List<ProductivityReportDTO.AppUsageDTO> topApps = appUsageMap.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(10)
-                .map(entry -> {
-                    ProductivityReportDTO.AppUsageDTO dto = new ProductivityReportDTO.AppUsageDTO();
-                    dto.setAppName(entry.getKey());
-                    dto.setDurationSeconds(entry.getValue());
-                    dto.setPercentage(totalTime > 0 ? (double) entry.getValue() / totalTime * 100 : 0);
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        private long totalFocusTime;
+        private long totalDistractedTime;
+        private long totalNeutralTime;
+        private final Map<String, Long> appUsage = new HashMap<>();
+        private final Map<String, Long> distractingAppUsage = new HashMap<>();
+        private final Map<String, Long> productiveAppUsage = new HashMap<>();
+        private final Map<LocalDate, Long> sessionsPerDay = new HashMap<>();
         
-        // Get distracting apps
-        List<ProductivityReportDTO.AppUsageDTO> topDistractingApps = allActivities.stream()
-                .filter(a -> a.getType() == Activity.ActivityType.DISTRACTING && a.getDurationSeconds() != null)
-                .collect(Collectors.groupingBy(
-                        Activity::getAppName,
-                        Collectors.summingLong(Activity::getDurationSeconds)
-                ))
-                .entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(5)
-                .map(entry -> {
-                    ProductivityReportDTO.AppUsageDTO dto = new ProductivityReportDTO.AppUsageDTO();
-                    dto.setAppName(entry.getKey());
-                    dto.setDurationSeconds(entry.getValue());
-                    dto.setPercentage(totalTime > 0 ? (double) entry.getValue() / totalTime * 100 : 0);
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        void add(String appName, Activity.ActivityType type, long seconds) {
+            addTypeTotal(type, seconds);
+            addAppUsage(appName, type, seconds);
+        }
         
-        // Get productive apps
-        List<ProductivityReportDTO.AppUsageDTO> topProductiveApps = allActivities.stream()
-                .filter(a -> a.getType() == Activity.ActivityType.PRODUCTIVE && a.getDurationSeconds() != null)
-                .collect(Collectors.groupingBy(
-                        Activity::getAppName,
-                        Collectors.summingLong(Activity::getDurationSeconds)
-                ))
-                .entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(5)
-                .map(entry -> {
-                    ProductivityReportDTO.AppUsageDTO dto = new ProductivityReportDTO.AppUsageDTO();
-                    dto.setAppName(entry.getKey());
-                    dto.setDurationSeconds(entry.getValue());
-                    dto.setPercentage(totalTime > 0 ? (double) entry.getValue() / totalTime * 100 : 0);
-                    return dto;
-                })
-                .collect(Collectors.toList());
+        void addTypeTotal(Activity.ActivityType type, long seconds) {
+            switch (type) {
+                case PRODUCTIVE -> totalFocusTime += seconds;
+                case DISTRACTING -> totalDistractedTime += seconds;
+                case NEUTRAL -> totalNeutralTime += seconds;
+            }
+        }
         
-        // Calculate consistency (sessions per day)
-        Map<LocalDate, Long> sessionsPerDay = sessions.stream()
-                .collect(Collectors.groupingBy(
-                        session -> session.getStartTime().toLocalDate(),
-                        Collectors.counting()
-                ));
+        void addAppUsage(String appName, Activity.ActivityType type, long seconds) {
+            appUsage.merge(appName, seconds, Long::sum);
+            switch (type) {
+                case PRODUCTIVE -> productiveAppUsage.merge(appName, seconds, Long::sum);
+                case DISTRACTING -> distractingAppUsage.merge(appName, seconds, Long::sum);
+                case NEUTRAL -> { }
+            }
+        }
         
-        long consistencyRating = sessionsPerDay.isEmpty() ? 0 : 
-                (long) sessionsPerDay.values().stream()
-                        .mapToLong(Long::longValue)
-                        .average()
-                        .orElse(0);
+        void addSessions(LocalDate day, long count) {
+            if (count > 0) {
+                sessionsPerDay.merge(day, count, Long::sum);
+            }
+        }
         
-        ProductivityReportDTO report = new ProductivityReportDTO();
-        report.setReportDate(LocalDateTime.now());
-        report.setTotalFocusTimeSeconds(totalFocusTime);
-        report.setTotalDistractedTimeSeconds(totalDistractedTime);
-        report.setTotalNeutralTimeSeconds(totalNeutralTime);
-        report.setProductivityScore(Math.round(productivityScore * 100.0) / 100.0);
-        report.setDistractionScore(Math.round(distractionScore * 100.0) / 100.0);
-        report.setTopApps(topApps);
-        report.setTopDistractingApps(topDistractingApps);
-        report.setTopProductiveApps(topProductiveApps);
-        report.setConsistencyRating(consistencyRating);
+        ProductivityReportDTO toReport() {
+            long totalTime = totalFocusTime + totalDistractedTime + totalNeutralTime;
+            
+            // Calculate scores
+            double productivityScore = totalTime > 0 ? (double) totalFocusTime / totalTime * 100 : 0;
+            double distractionScore = totalTime > 0 ? (double) totalDistractedTime / totalTime * 100 : 0;
+            
+            // Calculate consistency (sessions per day)
+            long consistencyRating = sessionsPerDay.isEmpty() ? 0 :
+                    (long) sessionsPerDay.values().stream()
+                            .mapToLong(Long::longValue)
+                            .average()
+                            .orElse(0);
+            
+            ProductivityReportDTO report = new ProductivityReportDTO();
+            report.setReportDate(LocalDateTime.now());
+            report.setTotalFocusTimeSeconds(totalFocusTime);
+            report.setTotalDistractedTimeSeconds(totalDistractedTime);
+            report.setTotalNeutralTimeSeconds(totalNeutralTime);
+            report.setProductivityScore(Math.round(productivityScore * 100.0) / 100.0);
+            report.setDistractionScore(Math.round(distractionScore * 100.0) / 100.0);
+            report.setTopApps(topApps(appUsage, 10, totalTime));
+            report.setTopDistractingApps(topApps(distractingAppUsage, 5, totalTime));
+            report.setTopProductiveApps(topApps(productiveAppUsage, 5, totalTime));
+            report.setConsistencyRating(consistencyRating);
+            
+            return report;
+        }
         
-        return report;
+        private static List<ProductivityReportDTO.AppUsageDTO> topApps(Map<String, Long> usage, int limit, long totalTime) {
+            return usage.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(limit)
+                    .map(entry -> {
+                        ProductivityReportDTO.AppUsageDTO dto = new ProductivityReportDTO.AppUsageDTO();
+                        dto.setAppName(entry.getKey());
+                        dto.setDurationSeconds(entry.getValue());
+                        dto.setPercentage(totalTime > 0 ? (double) entry.getValue() / totalTime * 100 : 0);
+                        return dto;
+                    })
+                    .collect(Collectors.toList());
+        }
     }
 }
-
@@ -0,0 +1,223 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+import com.focustrack.model.Session;
+import com.focustrack.repository.ActivityRepository;
+import com.focustrack.repository.FocusEntryRepository;
+import com.focustrack.repository.SessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Moves completed sessions that started before the retention horizon, with their
+ * activities, out of the database into the {@link ActivityArchive}. Runs on a schedule
+ * when focustrack.retention.enabled is set, or on demand.
+ * 
+ * Each month is archived in one transaction that first locks the month's completed
+ * sessions, then reads them, writes them to the month's archive file and deletes them
+ * from the database. Activities are added and ended under their session's lock, and
+ * completed sessions take no new activities, so nothing can change between the read
+ * and the delete. Only the activities that were read are deleted, and the transaction
+ * fails if a session still has others. A run that fails after writing the file leaves
+ * sessions in both places; the next run skips them in the archive and deletes them. Daily
+ * rollups are left alone, so daily and weekly reports keep covering archived days, and
+ * {@link RollupService#rebuild} reads archived days back from the archive. Sessions that
+ * were never completed stay in the database. Focus entries of archived sessions are
+ * deleted with them.
+ */
+@Slf4j
+@Service
+public class RetentionService {
+    
+    private static final int DELETE_BATCH_SIZE = 500;
+    
+    private static final String LOCK_QUERY =
+            "SELECT id FROM sessions WHERE status = ? AND start_time >= ? AND start_time < ? FOR UPDATE";
+    
+    private static final String ARCHIVE_QUERY =
+            "SELECT s.id, s.session_name, s.start_time, s.end_time, s.status, s.type, s.total_duration_seconds, " +
+            "s.focused_duration_seconds, s.distracted_duration_seconds, s.created_at, " +
+            "a.id, p.name, t.title, a.start_time, a.end_time, a.type, a.duration_seconds, a.created_at " +
+            "FROM sessions s LEFT JOIN activities a ON a.session_id = s.id " +
+            "LEFT JOIN applications p ON p.id = a.app_id LEFT JOIN window_titles t ON t.id = a.title_id " +
+            "WHERE s.status = ? AND s.start_time >= ? AND s.start_time < ? " +
+            "ORDER BY s.id, a.id";
+    
+    private final ActivityArchive activityArchive;
+    private final ActivityColumnStore activityColumnStore;
+    private final SessionRepository sessionRepository;
+    private final ActivityRepository activityRepository;
+    private final FocusEntryRepository focusEntryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int horizonDays;
+    
+    private final Counter archivedSessions;
+    private final Counter archivedActivities;
+    
+    public RetentionService(ActivityArchive activityArchive,
+                            ActivityColumnStore activityColumnStore,
+                            SessionRepository sessionRepository,
+                            ActivityRepository activityRepository,
+                            FocusEntryRepository focusEntryRepository,
+                            JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${focustrack.retention.enabled:false}") boolean enabled,
+                            @Value("${focustrack.retention.horizon-days:365}") int horizonDays) {
+        this.activityArchive = activityArchive;
+        this.activityColumnStore = activityColumnStore;
+        this.sessionRepository = sessionRepository;
+        this.activityRepository = activityRepository;
+        this.focusEntryRepository = focusEntryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+        
+        this.archivedSessions = Counter.builder("retention.archived.sessions")
+                .description("Sessions moved to the archive")
+                .register(meterRegistry);
+        this.archivedActivities = Counter.builder("retention.archived.activities")
+                .description("Activities moved to the archive")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Sessions that started before this day are archived.
+     */
+    public LocalDate horizon() {
+        return LocalDate.now().minusDays(horizonDays);
+    }
+    
+    @Scheduled(fixedDelayString = "${focustrack.retention.interval-ms:3600000}")
+    public void archiveExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archive(horizon());
+        } catch (RuntimeException e) {
+            log.warn("Archiving sessions before {} failed", horizon(), e);
+        }
+    }
+    
+    /**
+     * Archives the completed sessions that started before the given day.
+     * @return The number of sessions archived
+     */
+    public int archive(LocalDate before) {
+        LocalDateTime cutoff = before.atStartOfDay();
+        int sessions = 0;
+        Optional<LocalDateTime> oldest;
+        while ((oldest = sessionRepository.findFirstStartTime(Session.SessionStatus.COMPLETED, cutoff)).isPresent()) {
+            YearMonth month = YearMonth.from(oldest.get());
+            LocalDateTime nextMonth = month.plusMonths(1).atDay(1).atStartOfDay();
+            int archived = archiveMonth(month, month.atDay(1).atStartOfDay(),
+                    nextMonth.isBefore(cutoff) ? nextMonth : cutoff);
+            if (archived == 0) {
+                break;
+            }
+            sessions += archived;
+        }
+        if (sessions > 0) {
+            log.info("Archived {} sessions that started before {}", sessions, before);
+        }
+        return sessions;
+    }
+    
+    private int archiveMonth(YearMonth month, LocalDateTime from, LocalDateTime until) {
+        List<Long> sessionIds = new ArrayList<>();
+        List<Long> activityIds = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList(LOCK_QUERY, Long.class, Session.SessionStatus.COMPLETED.name(), from, until);
+            try {
+                activityArchive.append(month, sink -> readSessions(from, until, session -> {
+                    sessionIds.add(session.id());
+                    session.activities().forEach(activity -> activityIds.add(activity.id()));
+                    sink.accept(session);
+                }));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write the archive of " + month, e);
+            }
+            
+            for (int i = 0; i < activityIds.size(); i += DELETE_BATCH_SIZE) {
+                activityRepository.deleteByIds(
+                        activityIds.subList(i, Math.min(i + DELETE_BATCH_SIZE, activityIds.size())));
+            }
+            for (int i = 0; i < sessionIds.size(); i += DELETE_BATCH_SIZE) {
+                List<Long> batch = sessionIds.subList(i, Math.min(i + DELETE_BATCH_SIZE, sessionIds.size()));
+                if (activityRepository.countBySessionIds(batch) > 0) {
+                    throw new IllegalStateException("Sessions of " + month + " have activities that were not archived");
+                }
+                focusEntryRepository.deleteBySessionIds(batch);
+                sessionRepository.deleteByIds(batch);
+            }
+        });
+        activityColumnStore.remove(activityIds);
+        
+        archivedSessions.increment(sessionIds.size());
+        archivedActivities.increment(activityIds.size());
+        log.debug("Archived {} sessions and {} activities of {}", sessionIds.size(), activityIds.size(), month);
+        return sessionIds.size();
+    }
+    
+    /**
+     * Streams the completed sessions that started within [from, until), each with its
+     * activities, from one query ordered by session.
+     */
+    private void readSessions(LocalDateTime from, LocalDateTime until, Consumer<ActivityArchive.ArchivedSession> consumer) {
+        ActivityArchive.ArchivedSession[] current = new ActivityArchive.ArchivedSession[1];
+        jdbcTemplate.query(ARCHIVE_QUERY, rs -> {
+            long sessionId = rs.getLong(1);
+            if (current[0] == null || current[0].id() != sessionId) {
+                if (current[0] != null) {
+                    consumer.accept(current[0]);
+                }
+                String type = rs.getString(6);
+                current[0] = new ActivityArchive.ArchivedSession(sessionId,
+                        rs.getString(2),
+                        rs.getObject(3, LocalDateTime.class),
+                        rs.getObject(4, LocalDateTime.class),
+                        Session.SessionStatus.valueOf(rs.getString(5)),
+                        type != null ? Session.SessionType.valueOf(type) : null,
+                        rs.getObject(7, Long.class),
+                        rs.getObject(8, Long.class),
+                        rs.getObject(9, Long.class),
+                        rs.getObject(10, LocalDateTime.class),
+                        new ArrayList<>());
+            }
+            Long activityId = rs.getObject(11, Long.class);
+            if (activityId != null) {
+                current[0].activities().add(new ActivityArchive.ArchivedActivity(activityId,
+                        rs.getString(12),
+                        rs.getString(13),
+                        rs.getObject(14, LocalDateTime.class),
+                        rs.getObject(15, LocalDateTime.class),
+                        Activity.ActivityType.valueOf(rs.getString(16)),
+                        rs.getObject(17, Long.class),
+                        rs.getObject(18, LocalDateTime.class)));
+            }
+        }, Session.SessionStatus.COMPLETED.name(), from, until);
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+}
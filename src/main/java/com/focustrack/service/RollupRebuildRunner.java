@@ -0,0 +1,27 @@
+package com.focustrack.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the daily rollups on startup when started with --rebuild-rollups, or when the
+ * rollup table is still empty (first start after upgrading an existing database).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RollupRebuildRunner implements ApplicationRunner {
+    
+    private final RollupService rollupService;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption("rebuild-rollups") || rollupService.isEmpty()) {
+            int days = rollupService.rebuildAll();
+            log.info("Daily rollups rebuilt for {} days", days);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+import com.focustrack.repository.ActivityRepository;
+import com.focustrack.repository.DailyAppRollupRepository;
+import com.focustrack.repository.DailyRollupRepository;
+import com.focustrack.repository.SessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the daily_rollups and daily_app_rollups aggregates.
+ * 
+ * Activities and sessions are attributed to the day their session started, matching
+ * the raw report queries. Changes recorded during a transaction are coalesced and
+ * written just before it commits, so a batch touching many activities costs one
+ * update per affected day and app rather than one per activity. A
+ * {@link DailyRollupsChangedEvent} is published once the change has committed.
+ * 
+ * Archiving sessions ({@link RetentionService}) leaves their rollups in place; rebuilding
+ * an archived day reads its sessions back from the {@link ActivityArchive}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RollupService {
+    
+    private final DailyRollupRepository dailyRollupRepository;
+    private final DailyAppRollupRepository dailyAppRollupRepository;
+    private final ActivityRepository activityRepository;
+    private final SessionRepository sessionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final NameDictionary nameDictionary;
+    private final ActivityArchive activityArchive;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public void recordSession(LocalDate date) {
+        withPending(pending -> pending.addSessions(date, 1));
+    }
+    
+    public void recordActivity(LocalDate date, String appName, Activity.ActivityType type, long seconds) {
+        // Zero seconds are recorded too: closed zero-length activities still list their app in reports
+        withPending(pending -> pending.addUsage(date, appName, type, seconds));
+    }
+    
+    /**
+     * Regenerates the rollups of every day from the first archived month or session,
+     * whichever is older.
+     * @return The number of days rebuilt
+     */
+    public int rebuildAll() {
+        Optional<LocalDate> firstArchived = activityArchive.firstMonth().map(month -> month.atDay(1));
+        Optional<LocalDate> firstSession = sessionRepository.findFirstByOrderByStartTimeAsc()
+                .map(first -> first.getStartTime().toLocalDate());
+        return Stream.of(firstArchived, firstSession)
+                .flatMap(Optional::stream)
+                .min(LocalDate::compareTo)
+                .map(first -> rebuild(first, LocalDate.now()))
+                .orElse(0);
+    }
+    
+    /**
+     * Regenerates the rollups of the given days (inclusive) from the raw tables and the
+     * archive, one transaction per day. Each archived month is read once.
+     * @return The number of days rebuilt
+     */
+    public int rebuild(LocalDate startDate, LocalDate endDate) {
+        int days = 0;
+        YearMonth archivedMonth = null;
+        PendingRollups archived = null;
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            if (!YearMonth.from(day).equals(archivedMonth)) {
+                archivedMonth = YearMonth.from(day);
+                archived = readArchive(archivedMonth);
+            }
+            LocalDate current = day;
+            PendingRollups fromArchive = archived;
+            transactionTemplate.executeWithoutResult(status -> rebuildDay(current, fromArchive));
+            eventPublisher.publishEvent(new DailyRollupsChangedEvent(Set.of(current)));
+            days++;
+        }
+        log.info("Rebuilt daily rollups from {} to {}", startDate, endDate);
+        return days;
+    }
+    
+    public boolean isEmpty() {
+        return dailyRollupRepository.count() == 0;
+    }
+    
+    private void rebuildDay(LocalDate day, PendingRollups archived) {
+        dailyAppRollupRepository.deleteByRollupDate(day);
+        dailyRollupRepository.deleteByRollupDate(day);
+        
+        PendingRollups rebuilt = new PendingRollups();
+        rebuilt.addDay(archived, day);
+        for (Object[] row : activityRepository.getAppTypeUsageStats(day.atStartOfDay(), day.atTime(LocalTime.MAX))) {
+            rebuilt.addUsage(day, nameDictionary.applicationName((Integer) row[0]), (Activity.ActivityType) row[1],
+                    ((Number) row[2]).longValue());
+        }
+        rebuilt.addSessions(day, sessionRepository.countByStartTimeBetween(day.atStartOfDay(), day.atTime(LocalTime.MAX)));
+        
+        apply(rebuilt);
+    }
+    
+    private PendingRollups readArchive(YearMonth month) {
+        PendingRollups archived = new PendingRollups();
+        activityArchive.scan(month.atDay(1).atStartOfDay(), month.atEndOfMonth().atTime(LocalTime.MAX), session -> {
+            LocalDate day = session.startTime().toLocalDate();
+            archived.addSessions(day, 1);
+            for (ActivityArchive.ArchivedActivity activity : session.activities()) {
+                if (activity.durationSeconds() != null) {
+                    archived.addUsage(day, activity.appName(), activity.type(), activity.durationSeconds());
+                }
+            }
+        });
+        return archived;
+    }
+    
+    private void withPending(Consumer<PendingRollups> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            PendingRollups pending = new PendingRollups();
+            change.accept(pending);
+            transactionTemplate.executeWithoutResult(status -> apply(pending));
+            eventPublisher.publishEvent(new DailyRollupsChangedEvent(pending.totals.keySet()));
+            return;
+        }
+        
+        PendingRollups pending = (PendingRollups) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            PendingRollups created = new PendingRollups();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    apply(created);
+                }
+                
+                @Override
+                public void afterCommit() {
+                    eventPublisher.publishEvent(new DailyRollupsChangedEvent(created.totals.keySet()));
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RollupService.this);
+                }
+            });
+            pending = created;
+        }
+        change.accept(pending);
+    }
+    
+    private void apply(PendingRollups pending) {
+        pending.totals.forEach((date, totals) -> {
+            if (dailyRollupRepository.addTotals(date, totals[0], totals[1], totals[2], totals[3]) == 0) {
+                insertIfAbsent("INSERT INTO daily_rollups (rollup_date, productive_seconds, distracting_seconds, " +
+                        "neutral_seconds, session_count) VALUES (?, 0, 0, 0, 0)", date);
+                dailyRollupRepository.addTotals(date, totals[0], totals[1], totals[2], totals[3]);
+            }
+        });
+        pending.appUsage.forEach((key, seconds) -> {
+            if (dailyAppRollupRepository.addUsage(key.date(), key.appName(), key.type(), seconds) == 0) {
+                insertIfAbsent("INSERT INTO daily_app_rollups (rollup_date, app_name, type, duration_seconds) " +
+                        "VALUES (?, ?, ?, 0)", key.date(), key.appName(), key.type().name());
+                dailyAppRollupRepository.addUsage(key.date(), key.appName(), key.type(), seconds);
+            }
+        });
+    }
+    
+    /**
+     * Creates an empty rollup row unless a concurrent transaction already has. The
+     * insert goes through JDBC so that a duplicate key only fails that statement,
+     * instead of marking the surrounding JPA transaction for rollback.
+     */
+    private void insertIfAbsent(String sql, Object... args) {
+        try {
+            jdbcTemplate.update(sql, args);
+        } catch (DuplicateKeyException e) {
+            // Created by a concurrent transaction that committed first
+        }
+    }
+    
+    private static class PendingRollups {
+        
+        // Indexed by ActivityType ordinal (productive, distracting, neutral), then session count
+        private final Map<LocalDate, long[]> totals = new HashMap<>();
+        private final Map<AppKey, Long> appUsage = new HashMap<>();
+        
+        void addUsage(LocalDate date, String appName, Activity.ActivityType type, long seconds) {
+            totals.computeIfAbsent(date, d -> new long[4])[type.ordinal()] += seconds;
+            appUsage.merge(new AppKey(date, appName, type), seconds, Long::sum);
+        }
+        
+        void addSessions(LocalDate date, long count) {
+            totals.computeIfAbsent(date, d -> new long[4])[3] += count;
+        }
+        
+        void addDay(PendingRollups other, LocalDate date) {
+            long[] dayTotals = other.totals.get(date);
+            if (dayTotals == null) {
+                return;
+            }
+            long[] target = totals.computeIfAbsent(date, d -> new long[4]);
+            for (int i = 0; i < target.length; i++) {
+                target[i] += dayTotals[i];
+            }
+            other.appUsage.forEach((key, seconds) -> {
+                if (key.date().equals(date)) {
+                    appUsage.merge(key, seconds, Long::sum);
+                }
+            });
+        }
+    }
+    
+    private record AppKey(LocalDate date, String appName, Activity.ActivityType type) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.focustrack.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic source that replays a fixed sequence of windows, one per sample, and
+ * then keeps returning the last one. Null entries stand for samples where no window
+ * could be determined. Intended for tests and demos; selected with
+ * focustrack.monitoring.source=scripted, which replays focustrack.monitoring.script.
+ */
+public class ScriptedActiveWindowSource implements ActiveWindowSource {
+    
+    private final List<ActiveWindow> script;
+    private int next;
+    
+    public ScriptedActiveWindowSource(List<ActiveWindow> script) {
+        this.script = script;
+    }
+    
+    /**
+     * Reads a script of samples separated by ";", each "app|title" (the title may be
+     * left out); an empty sample stands for an unknown window. For example
+     * "Code|Main.java;Code|Main.java;;Firefox|Docs".
+     */
+    public static ScriptedActiveWindowSource parse(String script) {
+        List<ActiveWindow> windows = new ArrayList<>();
+        if (!script.isBlank()) {
+            for (String sample : script.split(";", -1)) {
+                if (sample.isBlank()) {
+                    windows.add(null);
+                    continue;
+                }
+                int separator = sample.indexOf('|');
+                windows.add(separator < 0
+                        ? new ActiveWindow(sample.trim(), "")
+                        : new ActiveWindow(sample.substring(0, separator).trim(), sample.substring(separator + 1)));
+            }
+        }
+        return new ScriptedActiveWindowSource(windows);
+    }
+    
+    @Override
+    public synchronized ActiveWindow currentWindow() {
+        if (script.isEmpty()) {
+            return null;
+        }
+        ActiveWindow window = script.get(Math.min(next, script.size() - 1));
+        next++;
+        return window;
+    }
+}
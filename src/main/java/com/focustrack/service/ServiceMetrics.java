@@ -0,0 +1,83 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Timers and counters for the service hot paths.
+ * 
+ * Operations are timed per transaction rather than per method call, so the recorded
+ * time includes the flush and the rollup writes that happen at commit. Timers are
+ * tagged with the transaction outcome ("committed" or "rolled_back"). Histogram
+ * buckets and percentiles are configured under management.metrics.distribution.
+ */
+@Component
+public class ServiceMetrics {
+    
+    private final MeterRegistry meterRegistry;
+    private final Map<Activity.ActivityType, Counter> ingested = new EnumMap<>(Activity.ActivityType.class);
+    private final Counter merged;
+    
+    public ServiceMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Activity.ActivityType type : Activity.ActivityType.values()) {
+            ingested.put(type, Counter.builder("activities.ingested")
+                    .description("Activities stored, by classified type")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        this.merged = Counter.builder("activities.merged")
+                .description("Activity reports merged into an existing activity instead of stored")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Times the current transaction from now until it completes under the given timer
+     * name and tags. Does nothing when no transaction is active.
+     */
+    public void timeTransaction(String timerName, String... tags) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                sample.stop(Timer.builder(timerName)
+                        .tags(tags)
+                        .tag("outcome", status == STATUS_COMMITTED ? "committed" : "rolled_back")
+                        .register(meterRegistry));
+            }
+        });
+    }
+    
+    public void countMerged() {
+        merged.increment();
+    }
+    
+    /**
+     * Counts the given activities as ingested once the current transaction commits,
+     * or immediately when no transaction is active.
+     */
+    public void countIngested(Collection<Activity> activities) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            activities.forEach(activity -> ingested.get(activity.getType()).increment());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                activities.forEach(activity -> ingested.get(activity.getType()).increment());
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.SessionCounterDriftDTO;
+import com.focustrack.model.Session;
+import com.focustrack.repository.SessionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recomputes the running counters of all sessions from their activities and reports
+ * the sessions whose stored counters drifted, e.g. after activities were edited in the
+ * database directly. Runs on a schedule when focustrack.counters.check.enabled is set,
+ * or on demand; drifted counters are only overwritten when asked to repair them.
+ * 
+ * The check is one grouped query over sessions and activities, which sees both as of
+ * the same moment. A repair locks the session, as writers do, and recomputes it before
+ * overwriting, so a change committed since the check is not lost.
+ */
+@Slf4j
+@Service
+public class SessionCounterCheck {
+    
+    private static final String SUMS =
+            "COALESCE(SUM(a.duration_seconds), 0), " +
+            "COALESCE(SUM(CASE WHEN a.type = 'PRODUCTIVE' THEN a.duration_seconds END), 0), " +
+            "COALESCE(SUM(CASE WHEN a.type = 'DISTRACTING' THEN a.duration_seconds END), 0) ";
+    
+    private static final String CHECK_QUERY =
+            "SELECT s.id, s.total_duration_seconds, s.focused_duration_seconds, s.distracted_duration_seconds, " +
+            SUMS +
+            "FROM sessions s LEFT JOIN activities a ON a.session_id = s.id " +
+            "GROUP BY s.id, s.total_duration_seconds, s.focused_duration_seconds, s.distracted_duration_seconds";
+    
+    private static final String SESSION_QUERY =
+            "SELECT " + SUMS + "FROM activities a WHERE a.session_id = ?";
+    
+    private final SessionRepository sessionRepository;
+    private final SessionEventBroadcaster sessionEvents;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean repair;
+    
+    private final AtomicInteger drifted = new AtomicInteger();
+    private final Timer checkTimer;
+    
+    public SessionCounterCheck(SessionRepository sessionRepository,
+                               SessionEventBroadcaster sessionEvents,
+                               JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${focustrack.counters.check.enabled:true}") boolean enabled,
+                               @Value("${focustrack.counters.check.repair:false}") boolean repair) {
+        this.sessionRepository = sessionRepository;
+        this.sessionEvents = sessionEvents;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.repair = repair;
+        
+        Gauge.builder("sessions.counters.drift", drifted, AtomicInteger::get)
+                .description("Sessions whose counters differed from their activities at the last check")
+                .register(meterRegistry);
+        this.checkTimer = Timer.builder("sessions.counters.check")
+                .description("Time to recompute the counters of all sessions")
+                .register(meterRegistry);
+    }
+    
+    @Scheduled(initialDelayString = "${focustrack.counters.check.initial-delay-ms:600000}",
+            fixedDelayString = "${focustrack.counters.check.interval-ms:86400000}")
+    public void checkScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            check(repair);
+        } catch (RuntimeException e) {
+            log.warn("Checking the session counters failed", e);
+        }
+    }
+    
+    /**
+     * Compares the counters of all sessions with their activities.
+     * @param repair Whether to overwrite drifted counters with the recomputed sums
+     * @return The sessions whose counters drifted
+     */
+    public List<SessionCounterDriftDTO> check(boolean repair) {
+        List<SessionCounterDriftDTO> drifts = checkTimer.record(this::findDrifts);
+        drifted.set(drifts.size());
+        if (drifts.isEmpty()) {
+            log.debug("Session counters match their activities");
+            return drifts;
+        }
+        
+        log.warn("Counters of {} sessions differ from their activities{}", drifts.size(),
+                repair ? "; repairing them" : "");
+        for (SessionCounterDriftDTO drift : drifts) {
+            log.warn("Session {}: stored total/focused/distracted {}/{}/{} s, activities sum to {}/{}/{} s",
+                    drift.getSessionId(),
+                    drift.getStoredTotalSeconds(), drift.getStoredFocusedSeconds(), drift.getStoredDistractedSeconds(),
+                    drift.getActualTotalSeconds(), drift.getActualFocusedSeconds(), drift.getActualDistractedSeconds());
+            if (repair) {
+                repair(drift);
+            }
+        }
+        return drifts;
+    }
+    
+    private List<SessionCounterDriftDTO> findDrifts() {
+        List<SessionCounterDriftDTO> drifts = new ArrayList<>();
+        jdbcTemplate.query(CHECK_QUERY, rs -> {
+            SessionCounterDriftDTO drift = new SessionCounterDriftDTO(rs.getLong(1),
+                    rs.getLong(2), rs.getLong(3), rs.getLong(4),
+                    rs.getLong(5), rs.getLong(6), rs.getLong(7), false);
+            if (drift.getStoredTotalSeconds() != drift.getActualTotalSeconds()
+                    || drift.getStoredFocusedSeconds() != drift.getActualFocusedSeconds()
+                    || drift.getStoredDistractedSeconds() != drift.getActualDistractedSeconds()) {
+                drifts.add(drift);
+            }
+        });
+        return drifts;
+    }
+    
+    private void repair(SessionCounterDriftDTO drift) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Session session = sessionRepository.findByIdForUpdate(drift.getSessionId()).orElse(null);
+            if (session == null) {
+                return;
+            }
+            jdbcTemplate.query(SESSION_QUERY, rs -> {
+                session.setTotalDurationSeconds(rs.getLong(1));
+                session.setFocusedDurationSeconds(rs.getLong(2));
+                session.setDistractedDurationSeconds(rs.getLong(3));
+            }, drift.getSessionId());
+            sessionEvents.sessionChanged(session);
+            drift.setRepaired(true);
+        });
+    }
+}
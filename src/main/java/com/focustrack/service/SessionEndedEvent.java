@@ -0,0 +1,8 @@
+package com.focustrack.service;
+
+/**
+ * Published when a session is ended, within the transaction that ends it.
+ * @param sessionId The session that ended
+ */
+public record SessionEndedEvent(Long sessionId) {
+}
@@ -0,0 +1,704 @@
+package com.focustrack.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.focustrack.dto.ActivityDTO;
+import com.focustrack.dto.SessionCountersDTO;
+import com.focustrack.model.Activity;
+import com.focustrack.model.Session;
+import com.focustrack.repository.SessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Pushes changes of a session to its live subscribers as server-sent events:
+ * "activity-started" and "activity-ended" carry the activity, "counters" the session
+ * status and running totals ({@link SessionCountersDTO}). A subscriber first receives
+ * the current counters.
+ * 
+ * {@link SessionService} reports its writes here; they are collected during the
+ * transaction and dispatched once it has committed, and skipped for sessions nobody
+ * subscribed to. Sessions are spread over focustrack.live.dispatch-threads dispatcher
+ * threads, which keep the order of a session's events and own its subscriber list, so
+ * no locking is needed. Each event is serialized once and the same bytes are queued for
+ * every subscriber. Dispatchers never write to a connection and never touch the
+ * database: each subscriber has its own queue of at most focustrack.live.subscriber-buffer
+ * messages, written by the focustrack.live.send-threads sender threads, and a subscriber
+ * whose queue is full is dropped rather than waited for. A write to a client that stopped
+ * reading blocks until the server gives up on the connection, so a subscriber whose write
+ * has taken longer than focustrack.live.send-timeout-ms is dropped as well, and another
+ * sender thread takes over from the blocked one until its write returns. Connections do
+ * not time out; a comment sent every focustrack.live.heartbeat-ms detects subscribers
+ * that went away.
+ * 
+ * Counters are the session's own running totals, read from the session row without
+ * querying its activities. Writers hold the session's row lock, so each commit draws a
+ * ticket in commit order; counters older than the ones last sent are dropped. The
+ * initial counters are read on the subscribing request's thread, without a lock. Write
+ * transactions are counted from their first report until they complete, and the read
+ * waits until none that could touch the session is in progress, so the counters it reads
+ * include every commit whose ticket is older than its own.
+ */
+@Slf4j
+@Component
+public class SessionEventBroadcaster implements SmartLifecycle {
+    
+    private static final String ACTIVITY_STARTED = "activity-started";
+    private static final String ACTIVITY_ENDED = "activity-ended";
+    private static final String COUNTERS = "counters";
+    
+    // Write transactions in progress are counted per stripe of session ids
+    private static final int WRITE_STRIPES = 64;
+    // How long the initial read waits for writes in progress before reading anyway
+    private static final long SNAPSHOT_WAIT_MS = 1000;
+    // Messages a sender writes to one subscriber before letting the others have a turn
+    private static final int SEND_BATCH = 64;
+    // Start time of a subscriber's write when none is in progress, or once it is stalled
+    private static final long NOT_SENDING = 0;
+    private static final long STALLED = -1;
+    
+    private final SessionRepository sessionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService[] dispatchers;
+    private final ThreadPoolExecutor senders;
+    private final int sendThreads;
+    private final int subscriberBuffer;
+    private final long sendTimeoutNanos;
+    
+    // Added by subscribing requests and removed with the last subscriber; the rest of a
+    // channel is only used by the session's dispatcher thread
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray writesInProgress = new AtomicIntegerArray(WRITE_STRIPES);
+    private final AtomicLong tickets = new AtomicLong();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter sentMessages;
+    private final Counter droppedSubscribers;
+    private volatile boolean running;
+    // Sender threads blocked in a write that timed out; guarded by this
+    private int stalledSenders;
+    
+    public SessionEventBroadcaster(SessionRepository sessionRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${focustrack.live.dispatch-threads:2}") int dispatchThreads,
+                                   @Value("${focustrack.live.send-threads:4}") int sendThreads,
+                                   @Value("${focustrack.live.subscriber-buffer:256}") int subscriberBuffer,
+                                   @Value("${focustrack.live.send-timeout-ms:5000}") long sendTimeoutMs) {
+        this.sessionRepository = sessionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.sendThreads = sendThreads;
+        this.subscriberBuffer = subscriberBuffer;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.dispatchers = new ExecutorService[dispatchThreads];
+        for (int i = 0; i < dispatchThreads; i++) {
+            dispatchers[i] = Executors.newSingleThreadExecutor(daemonThreads("live-dispatch-" + (i + 1)));
+        }
+        AtomicInteger senderNumber = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(sendThreads, sendThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> daemonThreads("live-send-" + senderNumber.incrementAndGet()).newThread(runnable));
+        
+        Gauge.builder("live.subscribers", subscribers, AtomicInteger::get)
+                .description("Open live session event streams")
+                .register(meterRegistry);
+        this.sentMessages = Counter.builder("live.messages")
+                .description("Server-sent events written to live subscribers")
+                .register(meterRegistry);
+        this.droppedSubscribers = Counter.builder("live.dropped")
+                .description("Live subscribers dropped because they did not keep up")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Opens an event stream for a session; the caller has checked that it exists. The
+     * initial counters are read on the calling thread.
+     */
+    public SseEmitter subscribe(Long sessionId) {
+        SseEmitter emitter = createEmitter();
+        if (!running) {
+            emitter.complete();
+            return emitter;
+        }
+        // Joined before the counters are read, so that writers committing afterwards publish
+        // and the subscriber is held their events
+        Channel channel = channels.compute(sessionId, (id, existing) -> {
+            Channel joined = existing != null ? existing : new Channel(sessionId);
+            joined.members++;
+            return joined;
+        });
+        Subscriber subscriber = new Subscriber(emitter);
+        Runnable unsubscribe = () -> dispatch(sessionId, () -> unregister(channel, subscriber));
+        dispatch(sessionId, () -> join(channel, subscriber));
+        
+        long ticket;
+        Optional<SessionCountersDTO> counters;
+        try {
+            ticket = awaitWrites(sessionId);
+            counters = transactionTemplate.execute(status ->
+                    sessionRepository.findById(sessionId).map(SessionCountersDTO::fromEntity));
+        } catch (RuntimeException e) {
+            unsubscribe.run();
+            throw e;
+        }
+        if (counters.isEmpty()) {
+            unsubscribe.run();
+            emitter.complete();
+            return emitter;
+        }
+        
+        emitter.onCompletion(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        dispatch(sessionId, () -> register(channel, subscriber, ticket, counters.get()));
+        return emitter;
+    }
+    
+    public void activityStarted(Activity activity) {
+        publish(activity.getSession(), ACTIVITY_STARTED, () -> ActivityDTO.fromEntity(activity));
+    }
+    
+    public void activityEnded(Activity activity) {
+        publish(activity.getSession(), ACTIVITY_ENDED, () -> ActivityDTO.fromEntity(activity));
+    }
+    
+    /**
+     * Reports a change of the session's status or counters.
+     */
+    public void sessionChanged(Session session) {
+        publish(session, null, null);
+    }
+    
+    /**
+     * Keeps idle connections alive and drops subscribers whose connection is gone.
+     */
+    @Scheduled(fixedDelayString = "${focustrack.live.heartbeat-ms:30000}")
+    public void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> comment = SseEmitter.event().comment("").build();
+        forEachChannel((sessionId, channel) -> send(channel, comment));
+    }
+    
+    /**
+     * Drops subscribers whose write has not returned within focustrack.live.send-timeout-ms
+     * and replaces the sender threads blocked in those writes.
+     */
+    @Scheduled(fixedDelayString = "${focustrack.live.send-check-ms:1000}")
+    public void checkSends() {
+        long now = System.nanoTime();
+        forEachChannel((sessionId, channel) -> {
+            for (Subscriber subscriber : channel.subscribers) {
+                if (subscriber.stall(now)) {
+                    log.debug("Dropping a live subscriber of session {} whose write has not returned in {} ms",
+                            sessionId, TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                    resizeSenders(1);
+                    if (subscriber.drop()) {
+                        droppedSubscribers.increment();
+                    }
+                }
+            }
+        });
+    }
+    
+    @Override
+    public void start() {
+        running = true;
+    }
+    
+    /**
+     * Closes all streams once their queued messages are written, so that the web
+     * server's graceful shutdown does not wait for them.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        forEachChannel((sessionId, channel) -> channel.subscribers.forEach(Subscriber::complete));
+        for (ExecutorService dispatcher : dispatchers) {
+            dispatcher.shutdown();
+        }
+        awaitTermination(dispatchers);
+        senders.shutdown();
+        awaitTermination(senders);
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Stops before the web server shuts down gracefully.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+    
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+    
+    /**
+     * A stream that does not time out.
+     */
+    SseEmitter createEmitter() {
+        return new SseEmitter(0L);
+    }
+    
+    private void publish(Session session, String name, Supplier<Object> data) {
+        Pending event = new Pending(session, name, data);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Already committed
+            if (channels.containsKey(session.getId())) {
+                Delta delta = event.toDelta(tickets.incrementAndGet());
+                dispatch(delta.sessionId(), () -> apply(delta));
+            }
+            return;
+        }
+        
+        Transaction transaction = (Transaction) TransactionSynchronizationManager.getResource(this);
+        if (transaction == null) {
+            Transaction created = new Transaction();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private List<Delta> deltas = List.of();
+                
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Still under the session locks, and ids are assigned. Sessions
+                    // subscribed to since their event was reported publish too.
+                    long ticket = tickets.incrementAndGet();
+                    deltas = created.events.stream()
+                            .filter(event -> channels.containsKey(event.session().getId()))
+                            .map(event -> event.toDelta(ticket))
+                            .toList();
+                }
+                
+                @Override
+                public void afterCommit() {
+                    deltas.forEach(delta -> dispatch(delta.sessionId(), () -> apply(delta)));
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SessionEventBroadcaster.this);
+                    created.stripes.forEach(writesInProgress::decrementAndGet);
+                }
+            });
+            transaction = created;
+        }
+        if (transaction.stripes.add(stripeOf(session.getId()))) {
+            writesInProgress.incrementAndGet(stripeOf(session.getId()));
+        }
+        transaction.events.add(event);
+    }
+    
+    /**
+     * Waits until no write transaction that may have changed the session is in
+     * progress, and returns a ticket that orders a read made afterwards with the
+     * commits: those with an older ticket are visible to the read, those with a newer
+     * one are published to the session's channel.
+     */
+    private long awaitWrites(Long sessionId) {
+        int stripe = stripeOf(sessionId);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_WAIT_MS);
+        while (true) {
+            long ticket = tickets.incrementAndGet();
+            if (writesInProgress.get(stripe) == 0) {
+                return ticket;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                // Counters may miss that write until the session changes again
+                log.debug("Reading live counters of session {} while a write is in progress", sessionId);
+                return ticket;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+    
+    // The methods below run on the session's dispatcher thread
+    
+    private void join(Channel channel, Subscriber subscriber) {
+        channel.subscribers.add(subscriber);
+        subscribers.incrementAndGet();
+    }
+    
+    /**
+     * Starts a joined subscriber with the counters read for it, followed by the events
+     * held for it that are newer than those counters.
+     */
+    private void register(Channel channel, Subscriber subscriber, long ticket, SessionCountersDTO counters) {
+        if (!channel.subscribers.contains(subscriber)) {
+            return;
+        }
+        if (ticket > channel.ticket) {
+            channel.ticket = ticket;
+            if (!counters.equals(channel.counters)) {
+                channel.counters = counters;
+                send(channel, event(COUNTERS, counters));
+            }
+        }
+        
+        List<Delta> held = subscriber.held;
+        subscriber.held = null;
+        boolean keptUp = subscriber.offer(event(COUNTERS, counters));
+        SessionCountersDTO sent = counters;
+        for (Delta delta : held) {
+            if (delta.ticket() <= ticket) {
+                continue;
+            }
+            if (delta.name() != null) {
+                keptUp &= subscriber.offer(event(delta.name(), delta.data()));
+            }
+            if (!delta.counters().equals(sent)) {
+                sent = delta.counters();
+                keptUp &= subscriber.offer(event(COUNTERS, sent));
+            }
+        }
+        if (!keptUp) {
+            drop(channel, subscriber);
+        } else if (channel.isCompleted()) {
+            subscriber.complete();
+        }
+    }
+    
+    private void unregister(Channel channel, Subscriber subscriber) {
+        if (channel.subscribers.remove(subscriber)) {
+            subscribers.decrementAndGet();
+            channels.computeIfPresent(channel.sessionId, (id, existing) ->
+                    existing == channel && --existing.members == 0 ? null : existing);
+        }
+    }
+    
+    private void apply(Delta delta) {
+        Channel channel = channels.get(delta.sessionId());
+        if (channel == null) {
+            return;
+        }
+        for (Subscriber subscriber : channel.subscribers) {
+            if (subscriber.held != null) {
+                subscriber.held.add(delta);
+            }
+        }
+        if (delta.name() != null) {
+            send(channel, event(delta.name(), delta.data()));
+        }
+        if (delta.ticket() > channel.ticket) {
+            channel.ticket = delta.ticket();
+            if (!delta.counters().equals(channel.counters)) {
+                channel.counters = delta.counters();
+                send(channel, event(COUNTERS, channel.counters));
+            }
+        }
+    }
+    
+    private Set<ResponseBodyEmitter.DataWithMediaType> event(String name, Object data) {
+        try {
+            return SseEmitter.event().name(name).data(objectMapper.writeValueAsString(data)).build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + name + " event", e);
+        }
+    }
+    
+    /**
+     * Queues the message for the subscribers that have their initial counters.
+     */
+    private void send(Channel channel, Set<ResponseBodyEmitter.DataWithMediaType> message) {
+        for (Subscriber subscriber : channel.subscribers) {
+            if (subscriber.held == null && !subscriber.offer(message)) {
+                drop(channel, subscriber);
+            }
+        }
+        if (channel.isCompleted()) {
+            channel.subscribers.stream().filter(subscriber -> subscriber.held == null).forEach(Subscriber::complete);
+        }
+    }
+    
+    private void drop(Channel channel, Subscriber subscriber) {
+        // The emitter's callbacks unregister it once the sender has closed it
+        if (subscriber.drop()) {
+            log.debug("Dropping a live subscriber of session {} that fell {} events behind",
+                    channel.sessionId, subscriberBuffer);
+            droppedSubscribers.increment();
+        }
+    }
+    
+    /**
+     * Grows the sender pool by a thread for each write that stalled, and shrinks it
+     * again once the write returns, so that sendThreads threads are always free to write.
+     */
+    private synchronized void resizeSenders(int change) {
+        stalledSenders += change;
+        int size = sendThreads + stalledSenders;
+        if (change > 0) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+    
+    /**
+     * Runs the action for each channel on the channel's dispatcher thread.
+     */
+    private void forEachChannel(BiConsumer<Long, Channel> action) {
+        for (int i = 0; i < dispatchers.length; i++) {
+            int partition = i;
+            execute(dispatchers[i], () -> channels.forEach((sessionId, channel) -> {
+                if (partitionOf(sessionId) == partition) {
+                    action.accept(sessionId, channel);
+                }
+            }));
+        }
+    }
+    
+    private void dispatch(Long sessionId, Runnable task) {
+        execute(dispatchers[partitionOf(sessionId)], task);
+    }
+    
+    private void execute(ExecutorService executor, Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Dispatching a live session event failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+    
+    private int partitionOf(Long sessionId) {
+        return Math.floorMod(sessionId.hashCode(), dispatchers.length);
+    }
+    
+    private static int stripeOf(Long sessionId) {
+        return Math.floorMod(sessionId.hashCode(), WRITE_STRIPES);
+    }
+    
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private static void awaitTermination(ExecutorService... executors) {
+        for (ExecutorService executor : executors) {
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * The events a transaction reported, and the write stripes it holds until it
+     * completes.
+     */
+    private static class Transaction {
+        
+        private final List<Pending> events = new ArrayList<>();
+        private final Set<Integer> stripes = new HashSet<>();
+    }
+    
+    /**
+     * An event reported during a transaction; data and counters are read at commit.
+     */
+    private record Pending(Session session, String name, Supplier<Object> data) {
+        
+        Delta toDelta(long ticket) {
+            return new Delta(session.getId(), ticket, name, data != null ? data.get() : null,
+                    SessionCountersDTO.fromEntity(session));
+        }
+    }
+    
+    private record Delta(Long sessionId, long ticket, String name, Object data, SessionCountersDTO counters) {
+    }
+    
+    private static class Channel {
+        
+        private final Long sessionId;
+        // Requests subscribing or subscribed; changed only inside channels.compute
+        private int members;
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        // Counters last sent, and the ticket of the commit they came from
+        private SessionCountersDTO counters;
+        private long ticket;
+        
+        Channel(Long sessionId) {
+            this.sessionId = sessionId;
+        }
+        
+        boolean isCompleted() {
+            return counters != null && counters.getStatus() == Session.SessionStatus.COMPLETED;
+        }
+    }
+    
+    /**
+     * A connection with its own queue of messages, written on a sender thread. At most
+     * one sender works on a subscriber at a time, so its messages keep their order.
+     */
+    private class Subscriber {
+        
+        private final SseEmitter emitter;
+        // Events committed while its initial counters are read; null once it has them.
+        // Used by the dispatcher thread only
+        private List<Delta> held = new ArrayList<>();
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        // When the write in progress started, NOT_SENDING or STALLED
+        private final AtomicLong sendStarted = new AtomicLong(NOT_SENDING);
+        private volatile boolean completing;
+        // Set by the sender that closed the emitter
+        private boolean closed;
+        
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        /**
+         * Queues a message, or returns false if the queue is full.
+         */
+        boolean offer(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+            if (dropped.get() || completing) {
+                return true;
+            }
+            if (queued.incrementAndGet() > subscriberBuffer) {
+                queued.decrementAndGet();
+                return false;
+            }
+            queue.add(message);
+            schedule();
+            return true;
+        }
+        
+        /**
+         * Closes the connection after the queued messages.
+         */
+        void complete() {
+            completing = true;
+            schedule();
+        }
+        
+        /**
+         * Closes the connection without writing what is still queued; returns false if
+         * it was already dropped.
+         */
+        boolean drop() {
+            if (!dropped.compareAndSet(false, true)) {
+                return false;
+            }
+            schedule();
+            return true;
+        }
+        
+        /**
+         * Marks the write in progress as stalled if it started longer than the send
+         * timeout before now; returns true only the first time.
+         */
+        boolean stall(long now) {
+            long started = sendStarted.get();
+            return started != NOT_SENDING && started != STALLED && now - started > sendTimeoutNanos
+                    && sendStarted.compareAndSet(started, STALLED);
+        }
+        
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::write);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+        
+        private void write() {
+            try {
+                if (closed) {
+                    return;
+                }
+                for (int sent = 0; sent < SEND_BATCH && !dropped.get(); sent++) {
+                    Set<ResponseBodyEmitter.DataWithMediaType> message = queue.poll();
+                    if (message == null) {
+                        break;
+                    }
+                    queued.decrementAndGet();
+                    send(message);
+                    sentMessages.increment();
+                }
+                if (dropped.get() || completing && queue.isEmpty()) {
+                    closed = true;
+                    queue.clear();
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The connection is gone; the error callback unregisters the emitter
+                closed = true;
+                queue.clear();
+                emitter.completeWithError(e);
+            } finally {
+                scheduled.set(false);
+            }
+            // Messages, completion or a drop that came in while writing
+            if (!closed && (!queue.isEmpty() || completing || dropped.get())) {
+                schedule();
+            }
+        }
+        
+        private void send(Set<ResponseBodyEmitter.DataWithMediaType> message) throws IOException {
+            sendStarted.set(System.nanoTime());
+            try {
+                emitter.send(message);
+            } finally {
+                if (sendStarted.getAndSet(NOT_SENDING) == STALLED) {
+                    resizeSenders(-1);
+                }
+            }
+        }
+    }
+}
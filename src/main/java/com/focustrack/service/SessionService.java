@@ -1,17 +1,38 @@
 package com.focustrack.service;
 
+import com.focustrack.dto.ActivityBatchResponse;
+import com.focustrack.dto.ActivityEvent;
 import com.focustrack.dto.SessionDTO;
+import com.focustrack.dto.SessionFilter;
+import com.focustrack.dto.SessionPageDTO;
 import com.focustrack.model.Activity;
 import com.focustrack.model.Session;
 import com.focustrack.repository.ActivityRepository;
 import com.focustrack.repository.SessionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,6 +41,20 @@ public class SessionService {
     
     private final SessionRepository sessionRepository;
     private final ActivityRepository activityRepository;
+    private final OpenActivityTracker openActivityTracker;
+    private final ActivityClassifier activityClassifier;
+    private final RollupService rollupService;
+    private final ActivityColumnStore activityColumnStore;
+    private final SessionEventBroadcaster sessionEvents;
+    private final ObjectMapper objectMapper;
+    private final ServiceMetrics serviceMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${focustrack.ingestion.merge-identical:true}")
+    private boolean mergeIdentical;
+    
+    @Value("${focustrack.ingestion.merge-gap-seconds:0}")
+    private long mergeGapSeconds;
     
     @Transactional
     public SessionDTO createSession(String sessionName, Session.SessionType type) {
@@ -30,123 +65,390 @@ public class SessionService {
         session.setStartTime(LocalDateTime.now());
         
         Session saved = sessionRepository.save(session);
+        rollupService.recordSession(saved.getStartTime().toLocalDate());
         return SessionDTO.fromEntity(saved);
     }
     
     @Transactional
     public SessionDTO pauseSession(Long sessionId) {
-        Session session = sessionRepository.findById(sessionId)
+        serviceMetrics.timeTransaction("sessions.pause");
+        Session session = sessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
         session.setStatus(Session.SessionStatus.PAUSED);
-        updateSessionDuration(session);
+        sessionEvents.sessionChanged(session);
         
-        return SessionDTO.fromEntity(sessionRepository.save(session));
+        return SessionDTO.summaryOf(sessionRepository.save(session));
     }
     
     @Transactional
     public SessionDTO resumeSession(Long sessionId) {
-        Session session = sessionRepository.findById(sessionId)
+        Session session = sessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
         session.setStatus(Session.SessionStatus.ACTIVE);
+        sessionEvents.sessionChanged(session);
         
-        return SessionDTO.fromEntity(sessionRepository.save(session));
+        return SessionDTO.summaryOf(sessionRepository.save(session));
     }
     
     @Transactional
     public SessionDTO endSession(Long sessionId) {
-        Session session = sessionRepository.findById(sessionId)
+        serviceMetrics.timeTransaction("sessions.end");
+        Session session = sessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
         
         session.setStatus(Session.SessionStatus.COMPLETED);
         session.setEndTime(LocalDateTime.now());
-        updateSessionDuration(session);
+        openActivityTracker.clear(sessionId);
+        sessionEvents.sessionChanged(session);
+        eventPublisher.publishEvent(new SessionEndedEvent(sessionId));
         
-        return SessionDTO.fromEntity(sessionRepository.save(session));
+        return SessionDTO.summaryOf(sessionRepository.save(session));
+    }
+    
+    /**
+     * Opens a stream of the session's changes; see {@link SessionEventBroadcaster}.
+     */
+    public SseEmitter subscribe(Long sessionId) {
+        if (!sessionRepository.existsById(sessionId)) {
+            throw new RuntimeException("Session not found");
+        }
+        return sessionEvents.subscribe(sessionId);
     }
     
+    /**
+     * Records a switch to the given window in the session.
+     * @throws IllegalStateException If the session has ended
+     */
     @Transactional
     public Activity addActivity(Long sessionId, String appName, String windowTitle) {
-        Session session = sessionRepository.findById(sessionId)
+        serviceMetrics.timeTransaction("activities.add");
+        Session session = sessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
+        if (session.getStatus() == Session.SessionStatus.COMPLETED) {
+            throw new IllegalStateException("Session has ended");
+        }
         
-        // End previous activity if exists
-        Optional<Activity> lastActivity = activityRepository.findBySessionOrderByStartTime(session)
-                .stream()
-                .filter(a -> a.getEndTime() == null)
-                .findFirst();
+        LocalDateTime now = LocalDateTime.now();
+        Optional<Activity> lastActivity = findOpenActivity(session);
+        
+        // The same window again only extends the activity
+        Optional<Activity> mergeTarget = findMergeTarget(session, lastActivity, appName, windowTitle, now);
+        if (mergeTarget.isPresent()) {
+            Activity extended = activityRepository.save(extend(mergeTarget.get()));
+            openActivityTracker.put(sessionId, extended.getId());
+            return extended;
+        }
         
+        // End previous activity if exists
         if (lastActivity.isPresent()) {
             Activity prev = lastActivity.get();
-            prev.setEndTime(LocalDateTime.now());
+            closeActivity(prev, now);
             activityRepository.save(prev);
         }
         
         // Create new activity
-        Activity activity = new Activity();
-        activity.setSession(session);
-        activity.setAppName(appName);
-        activity.setWindowTitle(windowTitle);
-        activity.setStartTime(LocalDateTime.now());
+        Activity activity = newActivity(session, appName, windowTitle, now);
         
-        return activityRepository.save(activity);
+        Activity saved = activityRepository.save(activity);
+        openActivityTracker.put(sessionId, saved.getId());
+        serviceMetrics.countIngested(List.of(saved));
+        return saved;
     }
     
+    /**
+     * Ingests an ordered list of activity events, possibly spanning several sessions,
+     * in a single transaction. Each event closes the open activity of its session at the
+     * event timestamp and opens a new one, unless it reports the window of the open
+     * activity, which is then extended instead. Events that cannot be applied, including
+     * those for sessions that have ended, are rejected individually without failing the
+     * rest of the batch.
+     */
     @Transactional
-    public void endActivity(Long activityId) {
-        Activity activity = activityRepository.findById(activityId)
-                .orElseThrow(() -> new RuntimeException("Activity not found"));
+    public List<ActivityBatchResponse.EventResult> addActivities(List<ActivityEvent> events) {
+        serviceMetrics.timeTransaction("activities.add.batch");
+        List<Long> sessionIds = events.stream()
+                .map(ActivityEvent::getSessionId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, Session> sessions = sessionRepository.findAllByIdForUpdate(sessionIds).stream()
+                .collect(Collectors.toMap(Session::getId, Function.identity()));
+        
+        Map<Long, Optional<Activity>> openActivities = new HashMap<>();
+        // Activity each event resulted in (null if rejected), and the new ones among them
+        List<Activity> applied = new ArrayList<>();
+        List<Activity> created = new ArrayList<>();
+        List<ActivityBatchResponse.EventResult> results = new ArrayList<>();
+        
+        for (int i = 0; i < events.size(); i++) {
+            ActivityEvent event = events.get(i);
+            ActivityBatchResponse.EventResult result = new ActivityBatchResponse.EventResult();
+            result.setIndex(i);
+            result.setSessionId(event.getSessionId());
+            results.add(result);
+            
+            Session session = event.getSessionId() != null ? sessions.get(event.getSessionId()) : null;
+            if (session == null) {
+                reject(result, "Session not found");
+                applied.add(null);
+                continue;
+            }
+            if (session.getStatus() == Session.SessionStatus.COMPLETED) {
+                reject(result, "Session has ended");
+                applied.add(null);
+                continue;
+            }
+            if (event.getAppName() == null || event.getWindowTitle() == null) {
+                reject(result, "appName and windowTitle are required");
+                applied.add(null);
+                continue;
+            }
+            
+            LocalDateTime timestamp = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+            Optional<Activity> open = openActivities.computeIfAbsent(session.getId(),
+                    id -> findOpenActivity(session));
+            
+            if (open.isPresent() && timestamp.isBefore(open.get().getStartTime())) {
+                reject(result, "Timestamp precedes the open activity of the session");
+                applied.add(null);
+                continue;
+            }
+            result.setStatus(ActivityBatchResponse.EventStatus.ACCEPTED);
+            
+            Optional<Activity> mergeTarget = findMergeTarget(session, open, event.getAppName(),
+                    event.getWindowTitle(), timestamp);
+            if (mergeTarget.isPresent()) {
+                Activity extended = extend(mergeTarget.get());
+                openActivities.put(session.getId(), Optional.of(extended));
+                applied.add(extended);
+                result.setMessage("Merged into the open activity");
+                continue;
+            }
+            
+            open.ifPresent(prev -> closeActivity(prev, timestamp));
+            Activity activity = newActivity(session, event.getAppName(), event.getWindowTitle(), timestamp);
+            openActivities.put(session.getId(), Optional.of(activity));
+            applied.add(activity);
+            created.add(activity);
+        }
         
-        activity.setEndTime(LocalDateTime.now());
+        activityRepository.saveAll(created);
+        serviceMetrics.countIngested(created);
+        
+        for (int i = 0; i < results.size(); i++) {
+            if (applied.get(i) != null) {
+                results.get(i).setActivityId(applied.get(i).getId());
+            }
+        }
+        openActivities.forEach((sessionId, open) ->
+                open.ifPresent(activity -> openActivityTracker.put(sessionId, activity.getId())));
+        return results;
+    }
+    
+    @Transactional
+    public void endActivity(Long activityId) {
+        if (!endActivity(activityId, LocalDateTime.now())) {
+            throw new RuntimeException("Activity not found");
+        }
+    }
+    
+    /**
+     * Ends an activity at the given time, e.g. when replaying a logged end event.
+     * @return false if the activity does not exist
+     */
+    @Transactional
+    public boolean endActivity(Long activityId, LocalDateTime endTime) {
+        // The session is locked first, as when adding activities, before its counters change
+        Optional<Long> sessionId = activityRepository.findSessionIdById(activityId);
+        if (sessionId.isEmpty()) {
+            return false;
+        }
+        sessionRepository.findByIdForUpdate(sessionId.get());
+        Optional<Activity> found = activityRepository.findById(activityId);
+        if (found.isEmpty()) {
+            return false;
+        }
+        Activity activity = found.get();
+        closeActivity(activity, endTime);
         activityRepository.save(activity);
+        openActivityTracker.remove(activity.getSession().getId(), activityId);
+        return true;
     }
     
     public Optional<SessionDTO> getActiveSession() {
-        return sessionRepository.findFirstByStatusOrderByStartTimeDesc(Session.SessionStatus.ACTIVE)
-                .map(SessionDTO::fromEntity);
+        return sessionRepository.findSummariesByStatus(Session.SessionStatus.ACTIVE, PageRequest.ofSize(1))
+                .stream()
+                .findFirst();
     }
     
-    public List<SessionDTO> getAllSessions() {
-        return sessionRepository.findAll().stream()
+    public List<SessionDTO> getAllSessions(boolean includeActivities) {
+        if (!includeActivities) {
+            return sessionRepository.findAllSummaries();
+        }
+        return sessionRepository.findAllWithActivities().stream()
                 .map(SessionDTO::fromEntity)
                 .collect(Collectors.toList());
     }
     
-    public SessionDTO getSessionById(Long id) {
-        return sessionRepository.findById(id)
-                .map(SessionDTO::fromEntity)
-                .orElseThrow(() -> new RuntimeException("Session not found"));
+    /**
+     * Returns one page of sessions, newest first, starting after the given cursor.
+     * Activities are not included.
+     */
+    @Transactional(readOnly = true)
+    public SessionPageDTO getSessionPage(SessionFilter filter, String cursor, int limit) {
+        SessionPageDTO.Cursor after = cursor != null ? SessionPageDTO.Cursor.decode(cursor) : null;
+        
+        // Fetch one extra row to learn whether another page follows
+        List<SessionDTO> sessions = sessionRepository.findPage(filter,
+                after != null ? after.startTime() : null, after != null ? after.id() : null, limit + 1);
+        
+        boolean hasMore = sessions.size() > limit;
+        List<SessionDTO> page = hasMore ? sessions.subList(0, limit) : sessions;
+        String nextCursor = hasMore ? SessionPageDTO.Cursor.after(page.get(limit - 1)).encode() : null;
+        
+        return new SessionPageDTO(page, nextCursor);
+    }
+    
+    /**
+     * Writes all matching sessions, newest first, to the stream as newline-delimited JSON.
+     * Rows are read from a database cursor as summary projections, so no entities are
+     * managed and memory use does not grow with the number of sessions. Activities are
+     * not included.
+     */
+    @Transactional(readOnly = true)
+    public void writeSessions(SessionFilter filter, OutputStream out) throws IOException {
+        try (Stream<SessionDTO> sessions = sessionRepository.streamAll(filter);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            ObjectWriter writer = objectMapper.writerFor(SessionDTO.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            
+            for (SessionDTO session : (Iterable<SessionDTO>) sessions::iterator) {
+                writer.writeValue(generator, session);
+                generator.writeRaw('\n');
+            }
+        }
     }
     
-    public List<SessionDTO> getSessionsByDateRange(LocalDateTime start, LocalDateTime end) {
-        return sessionRepository.findByDateRange(start, end).stream()
+    public SessionDTO getSessionById(Long id, boolean includeActivities) {
+        Optional<SessionDTO> session = includeActivities
+                ? sessionRepository.findWithActivitiesById(id).map(SessionDTO::fromEntity)
+                : sessionRepository.findSummaryById(id);
+        return session.orElseThrow(() -> new RuntimeException("Session not found"));
+    }
+    
+    public List<SessionDTO> getSessionsByDateRange(LocalDateTime start, LocalDateTime end, boolean includeActivities) {
+        if (!includeActivities) {
+            return sessionRepository.findSummariesByDateRange(start, end);
+        }
+        return sessionRepository.findByDateRangeWithActivities(start, end).stream()
                 .map(SessionDTO::fromEntity)
                 .collect(Collectors.toList());
     }
     
-    private void updateSessionDuration(Session session) {
-        List<Activity> activities = activityRepository.findBySession(session);
-        
-        long totalSeconds = 0;
-        long focusedSeconds = 0;
-        long distractedSeconds = 0;
+    private Optional<Activity> findOpenActivity(Session session) {
+        Optional<Activity> tracked = openActivityTracker.get(session.getId())
+                .flatMap(activityRepository::findById)
+                .filter(a -> a.getEndTime() == null && session.getId().equals(a.getSession().getId()));
+        if (tracked.isPresent()) {
+            return tracked;
+        }
         
-        for (Activity activity : activities) {
-            if (activity.getDurationSeconds() != null) {
-                totalSeconds += activity.getDurationSeconds();
-                
-                if (activity.getType() == Activity.ActivityType.PRODUCTIVE) {
-                    focusedSeconds += activity.getDurationSeconds();
-                } else if (activity.getType() == Activity.ActivityType.DISTRACTING) {
-                    distractedSeconds += activity.getDurationSeconds();
-                }
-            }
+        Optional<Activity> open = activityRepository.findFirstBySessionAndEndTimeIsNullOrderByStartTimeDesc(session);
+        open.ifPresentOrElse(
+                a -> openActivityTracker.put(session.getId(), a.getId()),
+                () -> openActivityTracker.clear(session.getId()));
+        return open;
+    }
+    
+    /**
+     * Finds the activity that a report of the given window should extend rather than
+     * replace: the open activity if it shows the same window, or, when no activity is
+     * open and a merge gap is configured, the latest activity of the session if it shows
+     * the same window and ended at most merge-gap-seconds before the timestamp.
+     */
+    private Optional<Activity> findMergeTarget(Session session, Optional<Activity> open,
+                                               String appName, String windowTitle, LocalDateTime timestamp) {
+        if (!mergeIdentical) {
+            return Optional.empty();
+        }
+        if (open.isPresent()) {
+            return open.filter(a -> sameWindow(a, appName, windowTitle));
+        }
+        if (mergeGapSeconds <= 0) {
+            return Optional.empty();
         }
+        return activityRepository.findFirstBySessionOrderByStartTimeDescIdDesc(session)
+                .filter(a -> a.getEndTime() != null && sameWindow(a, appName, windowTitle))
+                .filter(a -> !timestamp.isBefore(a.getEndTime())
+                        && Duration.between(a.getEndTime(), timestamp).getSeconds() <= mergeGapSeconds);
+    }
+    
+    /**
+     * Keeps the activity open, reopening it if it had ended. Its recorded duration is
+     * kept, so closing it again adds only the difference to the rollups.
+     */
+    private Activity extend(Activity activity) {
+        if (activity.getEndTime() != null) {
+            sessionEvents.activityStarted(activity);
+        }
+        activity.setEndTime(null);
+        serviceMetrics.countMerged();
+        return activity;
+    }
+    
+    private static boolean sameWindow(Activity activity, String appName, String windowTitle) {
+        return activity.getAppName().equals(appName) && activity.getWindowTitle().equals(windowTitle);
+    }
+    
+    private Activity newActivity(Session session, String appName, String windowTitle, LocalDateTime startTime) {
+        Activity activity = new Activity();
+        activity.setSession(session);
+        activity.setAppName(appName);
+        activity.setWindowTitle(windowTitle);
+        activity.setStartTime(startTime);
+        activity.setType(activityClassifier.classify(appName, windowTitle));
+        sessionEvents.activityStarted(activity);
+        return activity;
+    }
+    
+    private void closeActivity(Activity activity, LocalDateTime endTime) {
+        long previousSeconds = activity.getDurationSeconds() != null ? activity.getDurationSeconds() : 0;
+        long seconds = Duration.between(activity.getStartTime(), endTime).getSeconds();
         
-        session.setTotalDurationSeconds(totalSeconds);
-        session.setFocusedDurationSeconds(focusedSeconds);
-        session.setDistractedDurationSeconds(distractedSeconds);
+        activity.setEndTime(endTime);
+        // Set eagerly so activities opened and closed within one batch get their duration on insert
+        activity.setDurationSeconds(seconds);
+        
+        // Ending an already ended activity again only shifts the counters and rollups by the difference
+        addToCounters(activity.getSession(), activity.getType(), seconds - previousSeconds);
+        rollupService.recordActivity(activity.getSession().getStartTime().toLocalDate(),
+                activity.getAppName(), activity.getType(), seconds - previousSeconds);
+        activityColumnStore.record(activity);
+        sessionEvents.activityEnded(activity);
+    }
+    
+    private void reject(ActivityBatchResponse.EventResult result, String message) {
+        result.setStatus(ActivityBatchResponse.EventStatus.REJECTED);
+        result.setMessage(message);
+    }
+    
+    /**
+     * Adds to the session's running counters. Callers hold the session's row lock, so
+     * concurrent transactions do not overwrite each other's counts.
+     */
+    private static void addToCounters(Session session, Activity.ActivityType type, long seconds) {
+        if (seconds == 0) {
+            return;
+        }
+        session.setTotalDurationSeconds(session.getTotalDurationSeconds() + seconds);
+        if (type == Activity.ActivityType.PRODUCTIVE) {
+            session.setFocusedDurationSeconds(session.getFocusedDurationSeconds() + seconds);
+        } else if (type == Activity.ActivityType.DISTRACTING) {
+            session.setDistractedDurationSeconds(session.getDistractedDurationSeconds() + seconds);
+        }
     }
 }
 
@@ -0,0 +1,79 @@
+package com.focustrack.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the focused window of an X11 display through the xprop utility.
+ * 
+ * Uses the EWMH _NET_ACTIVE_WINDOW property of the root window, and the WM_CLASS and
+ * _NET_WM_NAME properties of that window for the app name and title. Returns null when
+ * DISPLAY is not set, so it is safe on headless machines, and stops trying after the
+ * first failure to run xprop.
+ */
+@Slf4j
+public class X11ActiveWindowSource implements ActiveWindowSource {
+    
+    private static final long TIMEOUT_MS = 1000;
+    private static final Pattern WINDOW_ID = Pattern.compile("window id # (0x[0-9a-fA-F]+)");
+    private static final Pattern WM_CLASS = Pattern.compile("WM_CLASS = \"[^\"]*\", \"([^\"]*)\"");
+    private static final Pattern WM_NAME = Pattern.compile("_NET_WM_NAME = \"(.*)\"");
+    
+    private final boolean hasDisplay = System.getenv("DISPLAY") != null && !System.getenv("DISPLAY").isEmpty();
+    private volatile boolean available = true;
+    
+    @Override
+    public ActiveWindow currentWindow() {
+        if (!hasDisplay || !available) {
+            return null;
+        }
+        
+        String root = xprop("-root", "-notype", "_NET_ACTIVE_WINDOW");
+        Matcher id = root != null ? WINDOW_ID.matcher(root) : null;
+        if (id == null || !id.find() || Long.decode(id.group(1)) == 0) {
+            return null;
+        }
+        
+        String properties = xprop("-id", id.group(1), "-notype", "WM_CLASS", "_NET_WM_NAME");
+        if (properties == null) {
+            return null;
+        }
+        Matcher appName = WM_CLASS.matcher(properties);
+        Matcher title = WM_NAME.matcher(properties);
+        return new ActiveWindow(
+                appName.find() ? appName.group(1) : "Unknown",
+                title.find() ? title.group(1).replace("\\\"", "\"") : "");
+    }
+    
+    private String xprop(String... args) {
+        String[] command = new String[args.length + 1];
+        command[0] = "xprop";
+        System.arraycopy(args, 0, command, 1, args.length);
+        
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (!process.waitFor(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                return null;
+            }
+            return process.exitValue() == 0 ? output : null;
+        } catch (IOException e) {
+            available = false;
+            log.warn("xprop is not available, X11 window sampling disabled: {}", e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+-- Schema as created by Hibernate's ddl-auto=update before migrations were introduced.
+-- Databases from that time are baselined at version 0 and run this script too, so
+-- every statement only creates what is missing.
+
+CREATE TABLE IF NOT EXISTS sessions (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    session_name VARCHAR(255) NOT NULL,
+    start_time TIMESTAMP(6) NOT NULL,
+    end_time TIMESTAMP(6),
+    status VARCHAR(255) NOT NULL CHECK (status IN ('ACTIVE', 'PAUSED', 'COMPLETED')),
+    type VARCHAR(255) CHECK (type IN ('FOCUS', 'POMODORO_WORK', 'POMODORO_BREAK')),
+    total_duration_seconds BIGINT,
+    focused_duration_seconds BIGINT,
+    distracted_duration_seconds BIGINT,
+    created_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS activities (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    session_id BIGINT NOT NULL,
+    app_name VARCHAR(255) NOT NULL,
+    window_title VARCHAR(255) NOT NULL,
+    start_time TIMESTAMP(6) NOT NULL,
+    end_time TIMESTAMP(6),
+    type VARCHAR(255) NOT NULL CHECK (type IN ('PRODUCTIVE', 'DISTRACTING', 'NEUTRAL')),
+    duration_seconds BIGINT,
+    created_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_activities_session FOREIGN KEY (session_id) REFERENCES sessions
+);
+
+CREATE INDEX IF NOT EXISTS idx_activities_session_end_time ON activities (session_id, end_time);
+CREATE INDEX IF NOT EXISTS idx_activities_session_start_time ON activities (session_id, start_time);
+
+CREATE TABLE IF NOT EXISTS focus_entries (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    session_id BIGINT NOT NULL,
+    timestamp TIMESTAMP(6) NOT NULL,
+    is_focused BOOLEAN NOT NULL,
+    notes VARCHAR(255),
+    created_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_focus_entries_session FOREIGN KEY (session_id) REFERENCES sessions
+);
+
+CREATE TABLE IF NOT EXISTS classification_rules (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    keyword VARCHAR(255) NOT NULL,
+    target VARCHAR(255) NOT NULL CHECK (target IN ('APP_NAME', 'WINDOW_TITLE', 'ANY')),
+    type VARCHAR(255) NOT NULL CHECK (type IN ('PRODUCTIVE', 'DISTRACTING', 'NEUTRAL')),
+    priority INTEGER NOT NULL,
+    enabled BOOLEAN NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS daily_rollups (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    rollup_date DATE NOT NULL UNIQUE,
+    productive_seconds BIGINT NOT NULL,
+    distracting_seconds BIGINT NOT NULL,
+    neutral_seconds BIGINT NOT NULL,
+    session_count BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS daily_app_rollups (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    rollup_date DATE NOT NULL,
+    app_name VARCHAR(255) NOT NULL,
+    type VARCHAR(255) NOT NULL CHECK (type IN ('PRODUCTIVE', 'DISTRACTING', 'NEUTRAL')),
+    duration_seconds BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_daily_app_rollups_date_app_type UNIQUE (rollup_date, app_name, type)
+);
+
+CREATE TABLE IF NOT EXISTS ingestion_checkpoints (
+    log_name VARCHAR(255) NOT NULL,
+    applied_sequence BIGINT NOT NULL,
+    PRIMARY KEY (log_name)
+);
@@ -0,0 +1,6 @@
+-- Sessions are looked up by start time: date ranges (reports, rollup rebuilds, listings),
+-- newest first with the id as tie-breaker (cursor pages and exports), and oldest first.
+CREATE INDEX IF NOT EXISTS idx_sessions_start_time_id ON sessions (start_time, id);
+
+-- Active and paused sessions, newest first
+CREATE INDEX IF NOT EXISTS idx_sessions_status_start_time ON sessions (status, start_time);
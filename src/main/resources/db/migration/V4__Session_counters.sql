@@ -0,0 +1,17 @@
+-- Session counters are kept up to date as activities end instead of being summed on
+-- pause and end. Recompute them once for all sessions, including those never paused or
+-- ended, and keep them set from now on.
+UPDATE sessions s SET
+    total_duration_seconds = (SELECT COALESCE(SUM(a.duration_seconds), 0) FROM activities a
+                              WHERE a.session_id = s.id),
+    focused_duration_seconds = (SELECT COALESCE(SUM(a.duration_seconds), 0) FROM activities a
+                                WHERE a.session_id = s.id AND a.type = 'PRODUCTIVE'),
+    distracted_duration_seconds = (SELECT COALESCE(SUM(a.duration_seconds), 0) FROM activities a
+                                   WHERE a.session_id = s.id AND a.type = 'DISTRACTING');
+
+ALTER TABLE sessions ALTER COLUMN total_duration_seconds SET DEFAULT 0;
+ALTER TABLE sessions ALTER COLUMN total_duration_seconds SET NOT NULL;
+ALTER TABLE sessions ALTER COLUMN focused_duration_seconds SET DEFAULT 0;
+ALTER TABLE sessions ALTER COLUMN focused_duration_seconds SET NOT NULL;
+ALTER TABLE sessions ALTER COLUMN distracted_duration_seconds SET DEFAULT 0;
+ALTER TABLE sessions ALTER COLUMN distracted_duration_seconds SET NOT NULL;
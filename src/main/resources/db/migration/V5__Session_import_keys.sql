@@ -0,0 +1,6 @@
+-- Sessions created by a bulk import carry the key they were imported under (source and
+-- the session's id in that source), so that importing the same file again skips them.
+-- Sessions recorded live have none.
+ALTER TABLE sessions ADD COLUMN IF NOT EXISTS import_key VARCHAR(255);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_sessions_import_key ON sessions (import_key);
@@ -0,0 +1,4 @@
+-- Session listings, cursor pages and exports are newest first. H2 only reads an index in
+-- its own order, so (start_time, id) left those queries sorting every matching row; this
+-- index returns them in listing order, so a page stops after its last row.
+CREATE INDEX IF NOT EXISTS idx_sessions_start_time_desc ON sessions (start_time DESC, id DESC);
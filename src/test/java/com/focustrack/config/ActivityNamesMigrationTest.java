@@ -0,0 +1,71 @@
+package com.focustrack.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A database written with schema version 1, where activities hold their names,
+ * migrates to the dictionaries with every activity keeping its app and title.
+ */
+class ActivityNamesMigrationTest {
+    
+    private static final LocalDateTime START = LocalDateTime.of(2021, 6, 1, 9, 0);
+    
+    @Test
+    void activitiesKeepTheirNamesThroughTheDictionaries() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:activity-names-migration-test;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        
+        flyway(dataSource, "1").migrate();
+        jdbcTemplate.update("INSERT INTO sessions (id, session_name, start_time, status, type, created_at) " +
+                "VALUES (1, 'v1', ?, 'COMPLETED', 'FOCUS', ?)", START, START);
+        List<List<String>> names = List.of(
+                List.of("Code", "Main.java"),
+                List.of("Firefox", "Docs"),
+                List.of("Code", "Test.java"),
+                List.of("Firefox", "Main.java"),
+                List.of("Code", "Main.java"));
+        for (int i = 0; i < names.size(); i++) {
+            jdbcTemplate.update("INSERT INTO activities (id, session_id, app_name, window_title, start_time, type, " +
+                    "created_at) VALUES (?, 1, ?, ?, ?, 'NEUTRAL', ?)", i + 1, names.get(i).get(0),
+                    names.get(i).get(1), START.plusMinutes(i), START);
+        }
+        
+        flyway(dataSource, "latest").migrate();
+        
+        List<List<String>> migrated = jdbcTemplate.query("SELECT p.name, t.title FROM activities a " +
+                        "JOIN applications p ON p.id = a.app_id JOIN window_titles t ON t.id = a.title_id ORDER BY a.id",
+                (rs, row) -> List.of(rs.getString(1), rs.getString(2)));
+        assertThat(migrated).isEqualTo(names);
+        assertThat(jdbcTemplate.queryForList("SELECT name FROM applications ORDER BY name", String.class))
+                .containsExactly("Code", "Firefox");
+        assertThat(jdbcTemplate.queryForList("SELECT title FROM window_titles ORDER BY title", String.class))
+                .containsExactly("Docs", "Main.java", "Test.java");
+        assertThat(jdbcTemplate.queryForList("SELECT column_name FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE table_schema = SCHEMA() AND table_name = 'ACTIVITIES'", String.class))
+                .contains("APP_ID", "TITLE_ID").doesNotContain("APP_NAME", "WINDOW_TITLE");
+        
+        // Names added after the migration get new ids rather than colliding with the copied ones
+        jdbcTemplate.update("INSERT INTO applications (name) VALUES ('Slack')");
+        assertThat(jdbcTemplate.queryForList("SELECT name FROM applications ORDER BY id", String.class))
+                .endsWith("Slack").hasSize(3);
+    }
+    
+    private static Flyway flyway(DriverManagerDataSource dataSource, String target) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .javaMigrations(new ActivityNamesMigration())
+                .target(target)
+                .load();
+    }
+}
@@ -0,0 +1,49 @@
+package com.focustrack.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A request whose response goes async is counted once, with the statements run on the
+ * request thread, and leaves nothing behind on that thread.
+ */
+class RequestStatisticsInterceptorTest {
+    
+    private final RequestStatistics requestStatistics = new RequestStatistics();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestStatisticsInterceptor interceptor =
+            new RequestStatisticsInterceptor(requestStatistics, meterRegistry);
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/sessions/1/events");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    
+    @Test
+    void asyncRequestsAreRecordedWhenTheyGoAsync() {
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/sessions/{id}/events");
+        
+        interceptor.preHandle(request, response, null);
+        requestStatistics.inspect("select 1");
+        requestStatistics.inspect("select 2");
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        
+        assertThat(requestStatistics.end()).isNull();
+        
+        // The dispatch that completes the response
+        request.setDispatcherType(DispatcherType.ASYNC);
+        interceptor.preHandle(request, response, null);
+        requestStatistics.inspect("select 3");
+        interceptor.afterCompletion(request, response, null, null);
+        
+        DistributionSummary statements = meterRegistry.find("http.server.requests.statements")
+                .tags("method", "GET", "uri", "/api/sessions/{id}/events")
+                .summary();
+        assertThat(statements.count()).isEqualTo(1);
+        assertThat(statements.totalAmount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,155 @@
+package com.focustrack.repository;
+
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.dto.SessionFilter;
+import com.focustrack.model.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The session listings must be planned as range scans of the sessions indexes, not as
+ * table scans. The SQL Hibernate generates is recorded and explained by H2.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:session-repository-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.reports.column-store.enabled=false"
+})
+@Transactional
+class SessionRepositoryTest {
+    
+    private static final LocalDateTime FIRST_START = LocalDateTime.of(2026, 1, 1, 9, 0);
+    private static final int SESSIONS = 1000;
+    
+    @Autowired
+    private SessionRepository sessionRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            Timestamp start = Timestamp.valueOf(FIRST_START.plusHours(i));
+            String status = i == SESSIONS - 1 ? "ACTIVE" : "COMPLETED";
+            rows.add(new Object[]{"session " + i, start, status, "FOCUS", start});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO sessions (session_name, start_time, status, type, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)", rows);
+        STATEMENTS.clear();
+    }
+    
+    @Test
+    void dateRangeIsAnIndexRange() {
+        SessionFilter filter = new SessionFilter(null, null, FIRST_START.plusDays(10), FIRST_START.plusDays(11));
+        
+        List<SessionDTO> page = sessionRepository.findPage(filter, null, null, 50);
+        
+        assertThat(page).hasSize(25);
+        assertThat(explainLast()).contains("IDX_SESSIONS_START_TIME_DESC: START_TIME >=").contains("index sorted");
+    }
+    
+    @Test
+    void statusFilterUsesTheStatusIndex() {
+        List<SessionDTO> page = sessionRepository.findPage(
+                new SessionFilter(Session.SessionStatus.ACTIVE, null, null, null), null, null, 50);
+        
+        assertThat(page).extracting(SessionDTO::getSessionName).containsExactly("session " + (SESSIONS - 1));
+        assertThat(explainLast()).contains("IDX_SESSIONS_STATUS_START_TIME: STATUS =").doesNotContain("tableScan");
+    }
+    
+    @Test
+    void cursorPagesAreIndexRangesThatContinueWhereThePreviousPageEnded() {
+        SessionFilter filter = new SessionFilter();
+        List<SessionDTO> first = sessionRepository.findPage(filter, null, null, 10);
+        SessionDTO last = first.get(first.size() - 1);
+        
+        STATEMENTS.clear();
+        List<SessionDTO> second = sessionRepository.findPage(filter, last.getStartTime(), last.getId(), 10);
+        
+        assertThat(second.get(0).getStartTime()).isEqualTo(last.getStartTime().minusHours(1));
+        assertThat(second).hasSize(10).isSortedAccordingTo((a, b) -> b.getStartTime().compareTo(a.getStartTime()));
+        assertThat(explainLast()).contains("IDX_SESSIONS_START_TIME_DESC: START_TIME <=").contains("index sorted");
+    }
+    
+    @Test
+    void streamWithoutFiltersReadsTheNewestFirstIndex() {
+        try (Stream<SessionDTO> sessions = sessionRepository.streamAll(new SessionFilter())) {
+            assertThat(sessions.count()).isEqualTo(SESSIONS);
+        }
+        
+        assertThat(explainLast()).contains("IDX_SESSIONS_START_TIME_DESC").contains("index sorted");
+    }
+    
+    @Test
+    void streamWithDateRangeIsAnIndexRange() {
+        SessionFilter filter = new SessionFilter(null, Session.SessionType.FOCUS, null, FIRST_START.plusDays(1));
+        try (Stream<SessionDTO> sessions = sessionRepository.streamAll(filter)) {
+            assertThat(sessions.count()).isEqualTo(25);
+        }
+        
+        assertThat(explainLast()).contains("IDX_SESSIONS_START_TIME_DESC: START_TIME <=").doesNotContain("tableScan");
+    }
+    
+    /**
+     * H2's plan for the last recorded statement. Plans do not depend on the parameter
+     * values, so they are all left null.
+     */
+    private String explainLast() {
+        assertThat(STATEMENTS).isNotEmpty();
+        String sql = STATEMENTS.get(STATEMENTS.size() - 1);
+        return jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int i = 1; i <= explain.getParameterMetaData().getParameterCount(); i++) {
+                    explain.setObject(i, null);
+                }
+                try (ResultSet plan = explain.executeQuery()) {
+                    plan.next();
+                    return plan.getString(1);
+                }
+            }
+        });
+    }
+    
+    @TestConfiguration
+    static class RecordStatements {
+        
+        // Keeps the inspector the application configures, and records the SQL it sees
+        @Bean
+        HibernatePropertiesCustomizer recordingStatementInspector() {
+            return properties -> {
+                StatementInspector inspector = (StatementInspector) properties.get(AvailableSettings.STATEMENT_INSPECTOR);
+                properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+                    STATEMENTS.add(sql);
+                    return inspector != null ? inspector.inspect(sql) : sql;
+                });
+            };
+        }
+    }
+}
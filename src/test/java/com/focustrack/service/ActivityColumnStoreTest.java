@@ -0,0 +1,178 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityEvent;
+import com.focustrack.dto.ImportProgressDTO;
+import com.focustrack.dto.ProductivityReportDTO;
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The column store reports what the activities table reports, whichever way the
+ * activities got there or left: ended live once their transaction commits, never
+ * from a rolled back one, inserted by an import, or removed by archiving.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:activity-column-store-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.reports.column-store.enabled=true"
+})
+class ActivityColumnStoreTest {
+    
+    private static final LocalDateTime FROM = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2100, 1, 1, 0, 0);
+    
+    @TempDir
+    static Path archiveDir;
+    
+    @DynamicPropertySource
+    static void archiveDir(DynamicPropertyRegistry registry) {
+        registry.add("focustrack.retention.dir", () -> archiveDir.toString());
+    }
+    
+    @Autowired
+    private ActivityColumnStore activityColumnStore;
+    
+    @Autowired
+    private ReportService reportService;
+    
+    @Autowired
+    private SessionService sessionService;
+    
+    @Autowired
+    private ImportService importService;
+    
+    @Autowired
+    private RetentionService retentionService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Test
+    void activitiesEndedLiveAreAddedOnceTheirTransactionCommits() {
+        SessionDTO session = sessionService.createSession("live", Session.SessionType.FOCUS);
+        int before = activityColumnStore.size();
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            addActivities(session);
+            assertThat(activityColumnStore.size()).isEqualTo(before);
+        });
+        
+        assertThat(activityColumnStore.size()).isEqualTo(before + 2);
+        assertMatchesActivities();
+    }
+    
+    @Test
+    void activitiesOfARolledBackTransactionAreNotAdded() {
+        SessionDTO session = sessionService.createSession("rolled back", Session.SessionType.FOCUS);
+        int before = activityColumnStore.size();
+        Map<String, Long> usage = usage();
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            addActivities(session);
+            status.setRollbackOnly();
+        });
+        
+        assertThat(activityColumnStore.size()).isEqualTo(before);
+        assertThat(usage()).isEqualTo(usage);
+        assertMatchesActivities();
+    }
+    
+    @Test
+    void importedActivitiesAreAdded() {
+        int before = activityColumnStore.size();
+        
+        ImportProgressDTO progress = importService.importSessions(ndjson("imported", 2019), ImportService.Format.NDJSON,
+                "columns");
+        
+        assertThat(progress.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED);
+        // The last activity of each session stays open and has no duration
+        assertThat(activityColumnStore.size()).isEqualTo(before + 4);
+        assertMatchesActivities();
+    }
+    
+    @Test
+    void archivedActivitiesAreRemoved() {
+        importService.importSessions(ndjson("archived", 2017), ImportService.Format.NDJSON, "archived");
+        int before = activityColumnStore.size();
+        
+        int archived = retentionService.archive(LocalDate.of(2018, 1, 1));
+        
+        assertThat(archived).isEqualTo(2);
+        assertThat(activityColumnStore.size()).isEqualTo(before - 4);
+        assertMatchesActivities();
+    }
+    
+    /**
+     * Compares the store with the activities table, through the two report paths and
+     * with a store reloaded from the table.
+     */
+    private void assertMatchesActivities() {
+        ProductivityReportDTO fromColumns = reportService.generateReportFromColumns(FROM, TO);
+        ProductivityReportDTO fromActivities = reportService.generateReportFromActivities(FROM, TO);
+        fromColumns.setReportDate(null);
+        fromActivities.setReportDate(null);
+        assertThat(fromColumns).isEqualTo(fromActivities);
+        
+        Map<String, Long> usage = usage();
+        activityColumnStore.reload();
+        assertThat(usage()).isEqualTo(usage).isNotEmpty();
+    }
+    
+    private Map<String, Long> usage() {
+        Map<String, Long> usage = new HashMap<>();
+        activityColumnStore.aggregate(FROM, TO, (appName, type, seconds) -> usage.put(appName + "/" + type, seconds));
+        return usage;
+    }
+    
+    /**
+     * Ends a productive and a distracting activity and leaves a third open.
+     */
+    private void addActivities(SessionDTO session) {
+        LocalDateTime start = session.getStartTime().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        sessionService.addActivities(List.of(
+                new ActivityEvent(session.getId(), "Code", "Main.java", start),
+                new ActivityEvent(session.getId(), "Firefox", "YouTube", start.plusSeconds(40)),
+                new ActivityEvent(session.getId(), "Finder", "Downloads", start.plusSeconds(55))));
+    }
+    
+    /**
+     * Two completed sessions of the given year, each with two ended activities and one
+     * open.
+     */
+    private static ByteArrayInputStream ndjson(String name, int year) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 1; i <= 2; i++) {
+            LocalDateTime start = LocalDateTime.of(year, i, 10, 9, 0);
+            input.append("{\"id\":").append(i).append(",\"sessionName\":\"").append(name)
+                    .append("\",\"startTime\":\"").append(start).append("\",\"endTime\":\"").append(start.plusHours(1))
+                    .append("\",\"activities\":[")
+                    .append("{\"appName\":\"Code\",\"windowTitle\":\"Main.java\",\"startTime\":\"").append(start)
+                    .append("\"},{\"appName\":\"Slack\",\"windowTitle\":\"general\",\"startTime\":\"")
+                    .append(start.plusMinutes(20 + i)).append("\"},")
+                    .append("{\"appName\":\"Firefox\",\"windowTitle\":\"YouTube\",\"startTime\":\"")
+                    .append(start.plusMinutes(45)).append("\"}]}\n");
+        }
+        return new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
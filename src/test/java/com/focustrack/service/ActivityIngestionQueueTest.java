@@ -0,0 +1,164 @@
+package com.focustrack.service;
+
+import com.focustrack.model.IngestionCheckpoint;
+import com.focustrack.repository.IngestionCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batches that fail to persist must not be skipped: the checkpoint may only move past
+ * events that were applied, so that the event log can replay the rest.
+ */
+class ActivityIngestionQueueTest {
+    
+    @TempDir
+    Path logDir;
+    
+    private final AtomicLong checkpoint = new AtomicLong();
+    private final List<Long> advances = new ArrayList<>();
+    // Transactions still to fail before the database "comes back"
+    private final AtomicInteger failures = new AtomicInteger();
+    private final List<ActivityIngestionQueue> queues = new ArrayList<>();
+    
+    private SessionService sessionService;
+    
+    @BeforeEach
+    void setUp() {
+        sessionService = mock(SessionService.class);
+        when(sessionService.endActivity(anyLong(), any(LocalDateTime.class))).thenReturn(true);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        failures.set(0);
+        queues.forEach(ActivityIngestionQueue::stop);
+    }
+    
+    @Test
+    void retriesAFailingBatchBeyondTheAttemptLimitInsteadOfDroppingIt() {
+        ActivityIngestionQueue queue = startQueue();
+        failures.set(4);
+        
+        for (long id = 1; id <= 3; id++) {
+            assertThat(queue.offerEnd(id)).isEqualTo(ActivityIngestionQueue.OfferResult.ACCEPTED);
+        }
+        
+        InOrder order = inOrder(sessionService);
+        for (long id = 1; id <= 3; id++) {
+            order.verify(sessionService, timeout(10_000)).endActivity(eq(id), any(LocalDateTime.class));
+        }
+        verify(sessionService, timeout(10_000).atLeastOnce()).endActivity(eq(3L), any(LocalDateTime.class));
+        queue.stop();
+        assertThat(checkpoint.get()).isEqualTo(3);
+        assertThat(advances).isSorted();
+    }
+    
+    @Test
+    void leavesUnappliedEventsToTheLogWhenStoppedWhileFailing() {
+        ActivityIngestionQueue queue = startQueue();
+        failures.set(Integer.MAX_VALUE);
+        for (long id = 1; id <= 3; id++) {
+            queue.offerEnd(id);
+        }
+        
+        queue.stop();
+        
+        assertThat(checkpoint.get()).isZero();
+        verify(sessionService, never()).endActivity(anyLong(), any(LocalDateTime.class));
+        
+        // The database is back; the next start replays everything that was accepted
+        failures.set(0);
+        startQueue();
+        InOrder order = inOrder(sessionService);
+        for (long id = 1; id <= 3; id++) {
+            order.verify(sessionService).endActivity(eq(id), any(LocalDateTime.class));
+        }
+        assertThat(checkpoint.get()).isEqualTo(3);
+    }
+    
+    @Test
+    void replaysEventsLeftByAsyncIngestionWhenStartedInSyncMode() {
+        ActivityIngestionQueue queue = startQueue();
+        failures.set(Integer.MAX_VALUE);
+        for (long id = 1; id <= 3; id++) {
+            queue.offerEnd(id);
+        }
+        queue.stop();
+        failures.set(0);
+        
+        ActivityIngestionQueue sync = startQueue("sync");
+        
+        assertThat(sync.isEnabled()).isFalse();
+        assertThat(sync.offerEnd(4L)).isEqualTo(ActivityIngestionQueue.OfferResult.CLOSED);
+        InOrder order = inOrder(sessionService);
+        for (long id = 1; id <= 3; id++) {
+            order.verify(sessionService).endActivity(eq(id), any(LocalDateTime.class));
+        }
+        assertThat(checkpoint.get()).isEqualTo(3);
+        
+        // Already applied, so starting again replays nothing
+        startQueue("sync");
+        verify(sessionService).endActivity(eq(3L), any(LocalDateTime.class));
+    }
+    
+    private ActivityIngestionQueue startQueue() {
+        return startQueue("async");
+    }
+    
+    private ActivityIngestionQueue startQueue(String mode) {
+        IngestionCheckpointRepository checkpointRepository = mock(IngestionCheckpointRepository.class);
+        when(checkpointRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.of(new IngestionCheckpoint(invocation.getArgument(0), checkpoint.get())));
+        when(checkpointRepository.advance(anyString(), anyLong())).thenAnswer(invocation -> {
+            long sequence = invocation.getArgument(1);
+            synchronized (advances) {
+                advances.add(sequence);
+            }
+            checkpoint.set(sequence);
+            return 1;
+        });
+        
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            if (failures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                throw new CannotCreateTransactionException("Database unavailable");
+            }
+            TransactionCallback<?> callback = invocation.getArgument(0);
+            return callback.doInTransaction(null);
+        });
+        
+        ActivityIngestionQueue queue = new ActivityIngestionQueue(sessionService, checkpointRepository,
+                transactionTemplate, new SimpleMeterRegistry(), mode, 100, 10, 10_000,
+                true, logDir.toString(), 64 * 1024, false);
+        queue.start();
+        queues.add(queue);
+        return queue;
+    }
+}
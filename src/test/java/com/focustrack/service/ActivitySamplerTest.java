@@ -0,0 +1,133 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Samples are taken one second apart from a scripted window source, with a debounce of
+ * two seconds.
+ */
+class ActivitySamplerTest {
+    
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 0);
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+    
+    private final SampleClock clock = new SampleClock();
+    private ActiveWindowSource source;
+    
+    @Test
+    void emitsAWindowOnceItHasBeenSeenForTheDebouncePeriod() {
+        ActivitySampler sampler = sampler("Code|Main.java;Code|Main.java;Code|Main.java;Code|Main.java");
+        
+        assertThat(sample(sampler, 2)).isEmpty();
+        assertThat(sample(sampler, 1)).containsExactly(event("Code", "Main.java", 0));
+    }
+    
+    @Test
+    void ignoresSwitchesShorterThanTheDebouncePeriod() {
+        ActivitySampler sampler = sampler("Code|Main.java;Code|Main.java;Code|Main.java;"
+                + "Slack|general;Slack|general;Code|Main.java;Code|Main.java;Code|Main.java");
+        
+        assertThat(sample(sampler, 8)).containsExactly(event("Code", "Main.java", 0));
+    }
+    
+    @Test
+    void coalescesIdenticalSamplesIntoOneEvent() {
+        ActivitySampler sampler = sampler("Code|Main.java;Code|Main.java;Code|Main.java;Code|Main.java;"
+                + "Code|Main.java;Firefox|Docs;Firefox|Docs;Firefox|Docs;Firefox|Docs");
+        
+        assertThat(sample(sampler, 12)).containsExactly(
+                event("Code", "Main.java", 0),
+                event("Firefox", "Docs", 5));
+    }
+    
+    @Test
+    void unknownWindowsLeaveTheCurrentActivityOpen() {
+        ActivitySampler sampler = sampler("Code|Main.java;Code|Main.java;Code|Main.java;;;;;Code|Main.java");
+        
+        assertThat(sample(sampler, 8)).containsExactly(event("Code", "Main.java", 0));
+        assertThat(sampler.getLastSample()).isEqualTo(new ActiveWindowSource.ActiveWindow("Code", "Main.java"));
+    }
+    
+    @Test
+    void anUnknownWindowRestartsTheDebounceOfANewWindow() {
+        ActivitySampler sampler = sampler("Code|Main.java;Code|Main.java;Code|Main.java;"
+                + "Firefox|Docs;Firefox|Docs;;Firefox|Docs;Firefox|Docs;Firefox|Docs");
+        
+        List<ActivityEvent> emitted = sample(sampler, 9);
+        
+        assertThat(emitted).containsExactly(
+                event("Code", "Main.java", 0),
+                event("Firefox", "Docs", 6));
+    }
+    
+    @Test
+    void aSourceThatNeverKnowsTheWindowEmitsNothing() {
+        ActivitySampler sampler = sampler("");
+        
+        assertThat(sample(sampler, 5)).isEmpty();
+        assertThat(sampler.getLastSample()).isNull();
+    }
+    
+    private ActivitySampler sampler(String script) {
+        source = ScriptedActiveWindowSource.parse(script);
+        return new ActivitySampler(7L, Duration.ofSeconds(2), clock);
+    }
+    
+    /**
+     * Takes samples one interval apart and returns the events they emitted.
+     */
+    private List<ActivityEvent> sample(ActivitySampler sampler, int samples) {
+        List<ActivityEvent> events = new ArrayList<>();
+        for (int i = 0; i < samples; i++) {
+            ActivityEvent event = sampler.sample(source.currentWindow());
+            if (event != null) {
+                events.add(event);
+            }
+            clock.advance(INTERVAL);
+        }
+        return events;
+    }
+    
+    private static ActivityEvent event(String appName, String windowTitle, int firstSeenSample) {
+        return new ActivityEvent(7L, appName, windowTitle, START.plus(INTERVAL.multipliedBy(firstSeenSample)));
+    }
+    
+    /**
+     * A fixed clock that the test moves forward between samples.
+     */
+    private static class SampleClock extends Clock {
+        
+        private Instant now = START.toInstant(ZoneOffset.UTC);
+        
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityBatchResponse;
+import com.focustrack.dto.ActivityEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * One tick reads the window once for all monitored sessions, and the activities it
+ * emits are written by the writer thread, not by the tick.
+ */
+class DefaultMonitoringServiceTest {
+    
+    private final AtomicInteger reads = new AtomicInteger();
+    private volatile ActiveWindowSource.ActiveWindow window = new ActiveWindowSource.ActiveWindow("Code", "Main.java");
+    private final ActiveWindowSource source = () -> {
+        reads.incrementAndGet();
+        return window;
+    };
+    // Bounded like the monitoringWriter bean, with room for one waiting tick
+    private final ExecutorService writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    private SessionService sessionService;
+    private ActivityIngestionQueue ingestionQueue;
+    private DefaultMonitoringService monitoringService;
+    private Runnable tick;
+    
+    @BeforeEach
+    void setUp() {
+        sessionService = mock(SessionService.class);
+        ingestionQueue = mock(ActivityIngestionQueue.class);
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        monitoringService = new DefaultMonitoringService(sessionService, ingestionQueue, source, executor, writer,
+                meterRegistry, 1000, 0);
+        
+        ArgumentCaptor<Runnable> scheduled = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).scheduleWithFixedDelay(scheduled.capture(), anyLong(), eq(1000L), eq(TimeUnit.MILLISECONDS));
+        tick = scheduled.getValue();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        writer.shutdownNow();
+    }
+    
+    @Test
+    void readsTheWindowOncePerTickAndWritesOffTheTickThread() {
+        Thread ticking = Thread.currentThread();
+        AtomicInteger writesOnTick = new AtomicInteger();
+        when(sessionService.addActivities(anyList())).thenAnswer(invocation -> {
+            if (Thread.currentThread() == ticking) {
+                writesOnTick.incrementAndGet();
+            }
+            List<ActivityEvent> events = invocation.getArgument(0);
+            return events.stream().map(event -> accepted(event.getSessionId())).toList();
+        });
+        for (long sessionId = 1; sessionId <= 3; sessionId++) {
+            monitoringService.startMonitoring(sessionId);
+        }
+        
+        tick.run();
+        tick.run();
+        
+        assertThat(reads).hasValue(2);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ActivityEvent>> batch = ArgumentCaptor.forClass(List.class);
+        verify(sessionService, timeout(5000)).addActivities(batch.capture());
+        assertThat(batch.getValue()).extracting(ActivityEvent::getSessionId).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(writesOnTick).hasValue(0);
+        // Served from the tick's read
+        assertThat(monitoringService.getActiveApplication()).isEqualTo("Code");
+        assertThat(reads).hasValue(2);
+    }
+    
+    @Test
+    void dropsTheActivitiesOfTicksTheWriterHasNoRoomFor() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sessionService.addActivities(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            List<ActivityEvent> events = invocation.getArgument(0);
+            return events.stream().map(event -> accepted(event.getSessionId())).toList();
+        });
+        monitoringService.startMonitoring(1L);
+        
+        tick.run();
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        // A different window each tick, so that every tick emits an event
+        for (int i = 0; i < 3; i++) {
+            window = new ActiveWindowSource.ActiveWindow("Firefox", "Tab " + i);
+            tick.run();
+        }
+        
+        // One tick waits, the other two are dropped
+        assertThat(meterRegistry.counter("monitoring.dropped").count()).isEqualTo(2);
+        release.countDown();
+        verify(sessionService, timeout(5000).times(2)).addActivities(anyList());
+        assertThat(meterRegistry.counter("monitoring.activities").count()).isEqualTo(2);
+    }
+    
+    @Test
+    void offersTheEventsToTheIngestionQueueWhenItIsAsync() {
+        when(ingestionQueue.isEnabled()).thenReturn(true);
+        when(ingestionQueue.offer(any())).thenReturn(ActivityIngestionQueue.OfferResult.ACCEPTED);
+        monitoringService.startMonitoring(1L);
+        monitoringService.startMonitoring(2L);
+        
+        tick.run();
+        
+        verify(ingestionQueue, timeout(5000).times(2)).offer(any());
+        verify(sessionService, never()).addActivities(anyList());
+        assertThat(meterRegistry.counter("monitoring.activities").count()).isEqualTo(2);
+    }
+    
+    private static ActivityBatchResponse.EventResult accepted(Long sessionId) {
+        ActivityBatchResponse.EventResult result = new ActivityBatchResponse.EventResult();
+        result.setSessionId(sessionId);
+        result.setStatus(ActivityBatchResponse.EventStatus.ACCEPTED);
+        return result;
+    }
+}
@@ -0,0 +1,201 @@
+package com.focustrack.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.focustrack.dto.ImportProgressDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports write every field so that it reads back as stored, in either format and
+ * compressed or not, and list each session's activities in the order they were
+ * recorded.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:export-service-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.export.fetch-size=2"
+})
+class ExportServiceTest {
+    
+    private static final LocalDateTime FROM = LocalDateTime.of(2016, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2016, 12, 31, 0, 0);
+    
+    // The second session's activities are recorded out of start order, with explicit ends
+    private static final String INPUT = """
+            {"id":1,"sessionName":"Commas, \\"quotes\\"\\nand lines","startTime":"2016-04-01T09:00:00","endTime":"2016-04-01T10:00:00","activities":[\
+            {"appName":"Code","windowTitle":"Main.java, line 3","startTime":"2016-04-01T09:00:00"},\
+            {"appName":"Firefox","windowTitle":"\\"Quoted\\" title","startTime":"2016-04-01T09:10:00"},\
+            {"appName":"Terminal","windowTitle":"two\\r\\nlines","startTime":"2016-04-01T09:20:00"}]}
+            {"id":2,"sessionName":"plain","startTime":"2016-05-01T09:00:00","activities":[\
+            {"appName":"Slack","windowTitle":"late","startTime":"2016-05-01T09:30:00","endTime":"2016-05-01T09:40:00"},\
+            {"appName":"Slack","windowTitle":"early","startTime":"2016-05-01T09:00:00","endTime":"2016-05-01T09:05:00"},\
+            {"appName":"Slack","windowTitle":"middle","startTime":"2016-05-01T09:10:00","endTime":"2016-05-01T09:20:00"}]}
+            """;
+    
+    @Autowired
+    private ExportService exportService;
+    
+    @Autowired
+    private ImportService importService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void importSessions() {
+        // Importing again adds nothing
+        ImportProgressDTO progress = importService.importSessions(
+                new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)), ImportService.Format.NDJSON, "export");
+        assertThat(progress.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED);
+    }
+    
+    @Test
+    void csvQuotesFieldsWithCommasQuotesAndLineBreaks() throws IOException {
+        List<List<String>> sessions = parseCsv(export(false, ExportService.Format.CSV, false));
+        
+        assertThat(sessions.get(0)).containsExactly("id", "sessionName", "startTime", "endTime", "status", "type",
+                "totalDurationSeconds", "focusedDurationSeconds", "distractedDurationSeconds");
+        assertThat(sessions).hasSize(3);
+        assertThat(sessions.get(1)).element(1).isEqualTo("Commas, \"quotes\"\nand lines");
+        assertThat(sessions.get(1).subList(2, 6))
+                .containsExactly("2016-04-01T09:00:00", "2016-04-01T10:00:00", "COMPLETED", "FOCUS");
+        // Null is an empty field
+        assertThat(sessions.get(2).subList(1, 5)).containsExactly("plain", "2016-05-01T09:00:00", "", "ACTIVE");
+        
+        List<List<String>> activities = parseCsv(export(true, ExportService.Format.CSV, false));
+        assertThat(activities).extracting(row -> row.get(3)).containsExactly("windowTitle",
+                "Main.java, line 3", "\"Quoted\" title", "two\r\nlines", "late", "early", "middle");
+        assertThat(activities.get(3)).element(5).isEqualTo("");
+    }
+    
+    @Test
+    void ndjsonWritesOneObjectPerLineWithTypedValues() throws IOException {
+        List<JsonNode> activities = parseNdjson(export(true, ExportService.Format.NDJSON, false));
+        
+        assertThat(activities).hasSize(6);
+        JsonNode first = activities.get(0);
+        assertThat(first.get("id").isIntegralNumber()).isTrue();
+        assertThat(first.get("sessionId").isIntegralNumber()).isTrue();
+        assertThat(first.get("appName").asText()).isEqualTo("Code");
+        assertThat(first.get("windowTitle").asText()).isEqualTo("Main.java, line 3");
+        assertThat(first.get("startTime").asText()).isEqualTo("2016-04-01T09:00:00");
+        assertThat(first.get("endTime").asText()).isEqualTo("2016-04-01T09:10:00");
+        assertThat(first.get("durationSeconds").asLong()).isEqualTo(600);
+        assertThat(activities.get(2).get("windowTitle").asText()).isEqualTo("two\r\nlines");
+        assertThat(activities.get(2).get("endTime").isNull()).isTrue();
+        assertThat(activities.get(2).get("durationSeconds").isNull()).isTrue();
+        
+        List<JsonNode> sessions = parseNdjson(export(false, ExportService.Format.NDJSON, false));
+        assertThat(sessions).extracting(session -> session.get("sessionName").asText())
+                .containsExactly("Commas, \"quotes\"\nand lines", "plain");
+        assertThat(sessions.get(0).get("totalDurationSeconds").asLong()).isEqualTo(1200);
+    }
+    
+    @Test
+    void activitiesOfASessionAreWrittenInTheOrderTheyWereRecorded() throws IOException {
+        List<JsonNode> activities = parseNdjson(export(true, ExportService.Format.NDJSON, false));
+        
+        List<Long> ids = activities.stream().map(activity -> activity.get("id").asLong()).toList();
+        assertThat(ids).isSorted();
+        assertThat(activities).extracting(activity -> activity.get("windowTitle").asText()).endsWith(
+                "late", "early", "middle");
+        // Recorded out of start order, so an order by start time would not pass
+        assertThat(jdbcTemplate.queryForList("SELECT t.title FROM activities a JOIN window_titles t " +
+                "ON t.id = a.title_id WHERE t.title IN ('late', 'early', 'middle') ORDER BY a.start_time",
+                String.class)).containsExactly("early", "middle", "late");
+    }
+    
+    @Test
+    void gzipExportsDecompressToTheUncompressedOnes() throws IOException {
+        for (boolean activities : new boolean[]{false, true}) {
+            for (ExportService.Format format : ExportService.Format.values()) {
+                byte[] plain = export(activities, format, false);
+                byte[] compressed = export(activities, format, true);
+                
+                assertThat(compressed[0] & 0xff).isEqualTo(0x1f);
+                assertThat(compressed[1] & 0xff).isEqualTo(0x8b);
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                    assertThat(in.readAllBytes()).isEqualTo(plain);
+                }
+            }
+        }
+    }
+    
+    private byte[] export(boolean activities, ExportService.Format format, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = activities
+                ? exportService.writeActivities(FROM, TO, format, gzip, out)
+                : exportService.writeSessions(FROM, TO, format, gzip, out);
+        assertThat(rows).isEqualTo(activities ? 6 : 2);
+        return out.toByteArray();
+    }
+    
+    private List<JsonNode> parseNdjson(byte[] export) throws IOException {
+        String text = new String(export, StandardCharsets.UTF_8);
+        assertThat(text).endsWith("\n");
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        return rows;
+    }
+    
+    /**
+     * Reads RFC 4180 CSV: quoted fields may hold commas, doubled quotes and line breaks.
+     */
+    private static List<List<String>> parseCsv(byte[] export) {
+        String text = new String(export, StandardCharsets.UTF_8);
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                row.add(field.toString());
+                field.setLength(0);
+                rows.add(row);
+                row = new ArrayList<>();
+                i++;
+            } else {
+                field.append(c);
+            }
+        }
+        assertThat(row).isEmpty();
+        return rows;
+    }
+}
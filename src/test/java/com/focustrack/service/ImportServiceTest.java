@@ -0,0 +1,330 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityDTO;
+import com.focustrack.dto.ActivityEvent;
+import com.focustrack.dto.ImportProgressDTO;
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Activity;
+import com.focustrack.model.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Bulk imports store the rows live ingestion would have stored, exactly once however
+ * often, partially or concurrently the same input is imported. The small chunks make
+ * every session a chunk of its own.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:import-service-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.import.chunk-rows=3"
+})
+class ImportServiceTest {
+    
+    private static final LocalDateTime START = LocalDateTime.of(2019, 3, 4, 9, 0);
+    
+    @Autowired
+    private ImportService importService;
+    
+    @Autowired
+    private SessionService sessionService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void sessionsWithoutAStatusAreCompletedIfTheyHaveEnded() {
+        String input = """
+                {"id":1,"startTime":"2019-02-01T09:00:00","endTime":"2019-02-01T10:00:00"}
+                {"id":2,"startTime":"2019-02-01T11:00:00"}
+                """;
+        
+        ImportProgressDTO progress = importService.importSessions(stream(input), ImportService.Format.NDJSON, "status");
+        
+        assertThat(progress.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED);
+        assertThat(status("status:1")).isEqualTo("COMPLETED");
+        assertThat(status("status:2")).isEqualTo("ACTIVE");
+    }
+    
+    @Test
+    void importingTheSameInputAgainAddsNothing() {
+        String input = ndjson(10);
+        importService.importSessions(stream(input), ImportService.Format.NDJSON, "rerun");
+        Map<String, Object> rows = rowsOf("rerun");
+        
+        ImportProgressDTO again = importService.importSessions(stream(input), ImportService.Format.NDJSON, "rerun");
+        
+        assertThat(again.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED);
+        assertThat(again.getSessionsImported()).isZero();
+        assertThat(again.getSessionsSkipped()).isEqualTo(10);
+        assertThat(again.getActivitiesImported()).isZero();
+        assertThat(rowsOf("rerun")).isEqualTo(rows).containsEntry("SESSIONS", 10L).containsEntry("ACTIVITIES", 20L);
+    }
+    
+    @Test
+    void importingAnInputAgainCompletesAnImportThatFailedPartway() {
+        String input = ndjson(10);
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        
+        ImportProgressDTO failed = importService.importSessions(new FailingInputStream(bytes, bytes.length / 2),
+                ImportService.Format.NDJSON, "resume");
+        
+        assertThat(failed.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.FAILED);
+        assertThat(failed.getSessionsImported()).isBetween(1L, 9L);
+        assertThat(rowsOf("resume")).containsEntry("SESSIONS", failed.getSessionsImported())
+                .containsEntry("ACTIVITIES", 2 * failed.getSessionsImported());
+        
+        ImportProgressDTO resumed = importService.importSessions(stream(input), ImportService.Format.NDJSON, "resume");
+        
+        assertThat(resumed.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED);
+        assertThat(resumed.getSessionsSkipped()).isEqualTo(failed.getSessionsImported());
+        assertThat(resumed.getSessionsImported()).isEqualTo(10 - failed.getSessionsImported());
+        assertThat(rowsOf("resume")).containsEntry("SESSIONS", 10L).containsEntry("ACTIVITIES", 20L);
+    }
+    
+    @Test
+    void concurrentImportsOfTheSameInputStoreEachSessionOnce() {
+        String input = ndjson(100);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<ImportProgressDTO>> imports = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            imports.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return importService.importSessions(stream(input), ImportService.Format.NDJSON, "concurrent");
+            }));
+        }
+        start.countDown();
+        List<ImportProgressDTO> results = imports.stream().map(CompletableFuture::join).toList();
+        
+        assertThat(results).allSatisfy(progress ->
+                assertThat(progress.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED));
+        assertThat(results.get(0).getSessionsImported() + results.get(1).getSessionsImported()).isEqualTo(100);
+        assertThat(results.get(0).getActivitiesImported() + results.get(1).getActivitiesImported()).isEqualTo(200);
+        assertThat(rowsOf("concurrent")).containsEntry("SESSIONS", 100L).containsEntry("ACTIVITIES", 200L);
+    }
+    
+    @Test
+    void readsGzipCompressedCsv() throws IOException {
+        String csv = """
+                sessionId,sessionName,sessionStartTime,sessionEndTime,status,sessionType,appName,windowTitle,startTime,endTime
+                7,"Writing, mostly",2019-05-06T09:00:00,2019-05-06T10:00:00,,,Code,Main.java,2019-05-06T09:00:00,
+                7,"Writing, mostly",2019-05-06T09:00:00,2019-05-06T10:00:00,,,Firefox,"YouTube - \"\"Lofi\"\"",2019-05-06T09:20:00,2019-05-06T09:30:00
+                8,,2019-05-06T11:00:00,,,POMODORO_BREAK,,,,
+                """;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(csv.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        ImportProgressDTO progress = importService.importSessions(new ByteArrayInputStream(compressed.toByteArray()),
+                ImportService.Format.CSV, "csv");
+        
+        assertThat(progress.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED);
+        assertThat(progress.getSessionsImported()).isEqualTo(2);
+        assertThat(progress.getActivitiesImported()).isEqualTo(2);
+        
+        SessionDTO writing = session("csv:7");
+        assertThat(writing.getSessionName()).isEqualTo("Writing, mostly");
+        assertThat(writing.getStatus()).isEqualTo(Session.SessionStatus.COMPLETED);
+        assertThat(writing.getType()).isEqualTo(Session.SessionType.FOCUS);
+        assertThat(writing.getActivities()).extracting(ActivityDTO::getAppName, ActivityDTO::getWindowTitle,
+                        ActivityDTO::getType, ActivityDTO::getDurationSeconds)
+                .containsExactlyInAnyOrder(
+                        tuple("Code", "Main.java", Activity.ActivityType.PRODUCTIVE, 1200L),
+                        tuple("Firefox", "YouTube - \"Lofi\"",
+                                Activity.ActivityType.DISTRACTING, 600L));
+        assertThat(writing.getTotalDurationSeconds()).isEqualTo(1800);
+        assertThat(writing.getFocusedDurationSeconds()).isEqualTo(1200);
+        assertThat(writing.getDistractedDurationSeconds()).isEqualTo(600);
+        
+        SessionDTO onBreak = session("csv:8");
+        assertThat(onBreak.getStatus()).isEqualTo(Session.SessionStatus.ACTIVE);
+        assertThat(onBreak.getType()).isEqualTo(Session.SessionType.POMODORO_BREAK);
+        assertThat(onBreak.getActivities()).isEmpty();
+    }
+    
+    @Test
+    void importedSessionsMatchTheSameActivitiesIngestedLive() {
+        Rollups beforeLive = rollups();
+        SessionDTO live = sessionService.createSession("live", Session.SessionType.FOCUS);
+        LocalDateTime first = live.getStartTime().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        List<String[]> windows = List.of(
+                new String[]{"Code", "Main.java"},
+                new String[]{"Firefox", "YouTube - Music"},
+                new String[]{"Finder", "Downloads"},
+                new String[]{"Code", "Main.java"},
+                new String[]{"Firefox", "github.com"});
+        
+        List<ActivityEvent> events = new ArrayList<>();
+        StringBuilder activities = new StringBuilder();
+        for (int i = 0; i < windows.size(); i++) {
+            LocalDateTime timestamp = first.plusSeconds(i * 75L + i * i);
+            events.add(new ActivityEvent(live.getId(), windows.get(i)[0], windows.get(i)[1], timestamp));
+            activities.append(i > 0 ? "," : "").append("{\"appName\":\"").append(windows.get(i)[0])
+                    .append("\",\"windowTitle\":\"").append(windows.get(i)[1])
+                    .append("\",\"startTime\":\"").append(timestamp).append("\"}");
+        }
+        sessionService.addActivities(events);
+        sessionService.endSession(live.getId());
+        live = sessionService.getSessionById(live.getId(), true);
+        Rollups afterLive = rollups();
+        
+        String input = "{\"id\":1,\"sessionName\":\"live\",\"startTime\":\"" + live.getStartTime() +
+                "\",\"endTime\":\"" + live.getEndTime() + "\",\"status\":\"COMPLETED\",\"type\":\"FOCUS\"," +
+                "\"activities\":[" + activities + "]}";
+        ImportProgressDTO progress = importService.importSessions(stream(input), ImportService.Format.NDJSON, "parity");
+        assertThat(progress.getStatus()).isEqualTo(ImportProgressDTO.ImportStatus.COMPLETED);
+        SessionDTO imported = session("parity:1");
+        Rollups afterImport = rollups();
+        
+        assertThat(imported.getActivities()).hasSize(windows.size());
+        assertThat(activityRows(imported)).isEqualTo(activityRows(live));
+        assertThat(imported.getTotalDurationSeconds()).isEqualTo(live.getTotalDurationSeconds()).isPositive();
+        assertThat(imported.getFocusedDurationSeconds()).isEqualTo(live.getFocusedDurationSeconds());
+        assertThat(imported.getDistractedDurationSeconds()).isEqualTo(live.getDistractedDurationSeconds());
+        assertThat(imported.getStatus()).isEqualTo(live.getStatus());
+        assertThat(afterImport.minus(afterLive)).isEqualTo(afterLive.minus(beforeLive));
+    }
+    
+    private SessionDTO session(String importKey) {
+        Long id = jdbcTemplate.queryForObject("SELECT id FROM sessions WHERE import_key = ?", Long.class, importKey);
+        return sessionService.getSessionById(id, true);
+    }
+    
+    private String status(String importKey) {
+        return jdbcTemplate.queryForObject("SELECT status FROM sessions WHERE import_key = ?", String.class, importKey);
+    }
+    
+    /**
+     * Counts the sessions and activities imported from the source.
+     */
+    private Map<String, Object> rowsOf(String source) {
+        return jdbcTemplate.queryForMap("SELECT COUNT(DISTINCT s.id) AS sessions, COUNT(a.id) AS activities " +
+                "FROM sessions s LEFT JOIN activities a ON a.session_id = s.id " +
+                "WHERE s.import_key LIKE ?", source + ":%");
+    }
+    
+    /**
+     * The activities without their ids, in the order they started.
+     */
+    private static List<List<Object>> activityRows(SessionDTO session) {
+        return session.getActivities().stream()
+                .sorted(Comparator.comparing(ActivityDTO::getStartTime))
+                .map(activity -> List.<Object>of(activity.getAppName(), activity.getWindowTitle(),
+                        activity.getStartTime(), String.valueOf(activity.getEndTime()), activity.getType(),
+                        String.valueOf(activity.getDurationSeconds())))
+                .toList();
+    }
+    
+    private Rollups rollups() {
+        Map<String, Long> totals = new HashMap<>();
+        jdbcTemplate.query("SELECT rollup_date, productive_seconds, distracting_seconds, neutral_seconds, session_count " +
+                "FROM daily_rollups", rs -> {
+            String day = rs.getString(1);
+            totals.put(day + "/productive", rs.getLong(2));
+            totals.put(day + "/distracting", rs.getLong(3));
+            totals.put(day + "/neutral", rs.getLong(4));
+            totals.put(day + "/sessions", rs.getLong(5));
+        });
+        jdbcTemplate.query("SELECT rollup_date, app_name, type, duration_seconds FROM daily_app_rollups", rs -> {
+            totals.put(rs.getString(1) + "/" + rs.getString(2) + "/" + rs.getString(3), rs.getLong(4));
+        });
+        return new Rollups(totals);
+    }
+    
+    private record Rollups(Map<String, Long> totals) {
+        
+        Map<String, Long> minus(Rollups before) {
+            Map<String, Long> delta = new HashMap<>();
+            totals.forEach((key, value) -> delta.put(key, value - before.totals.getOrDefault(key, 0L)));
+            return delta;
+        }
+    }
+    
+    /**
+     * Sessions with two activities each, one chunk apiece.
+     */
+    private static String ndjson(int sessions) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < sessions; i++) {
+            LocalDateTime start = START.plusHours(i);
+            input.append("{\"id\":").append(i).append(",\"startTime\":\"").append(start)
+                    .append("\",\"endTime\":\"").append(start.plusMinutes(30)).append("\",\"activities\":[")
+                    .append("{\"appName\":\"Code\",\"windowTitle\":\"Main.java\",\"startTime\":\"")
+                    .append(start).append("\"},")
+                    .append("{\"appName\":\"Firefox\",\"windowTitle\":\"Docs\",\"startTime\":\"")
+                    .append(start.plusMinutes(10)).append("\",\"endTime\":\"").append(start.plusMinutes(30))
+                    .append("\"}]}\n");
+        }
+        return input.toString();
+    }
+    
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Hands out the bytes a few at a time and fails once the given number has been read,
+     * as a dropped upload would.
+     */
+    private static class FailingInputStream extends FilterInputStream {
+        
+        private final int failAfter;
+        private int read;
+        
+        FailingInputStream(byte[] bytes, int failAfter) {
+            super(new ByteArrayInputStream(bytes));
+            this.failAfter = failAfter;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (read >= failAfter) {
+                throw new IOException("Connection reset");
+            }
+            int count = super.read(buffer, offset, Math.min(length, Math.min(64, failAfter - read)));
+            read += Math.max(count, 0);
+            return count;
+        }
+        
+        @Override
+        public int available() {
+            // So that readers decode what they have instead of reading ahead to the failure
+            return 0;
+        }
+    }
+}
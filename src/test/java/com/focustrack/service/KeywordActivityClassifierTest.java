@@ -0,0 +1,136 @@
+package com.focustrack.service;
+
+import com.focustrack.model.Activity.ActivityType;
+import com.focustrack.repository.ClassificationRuleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The default rules classify every activity as the contains() chain they replaced did,
+ * including overlapping keywords, any letter case, and distracting keywords winning
+ * over productive ones.
+ */
+class KeywordActivityClassifierTest {
+    
+    // App name, window title, and the type both the old chain and the classifier give
+    private static final List<Case> CASES = List.of(
+            new Case("Code", "Main.java", ActivityType.PRODUCTIVE),
+            new Case("VS Code", "Main.java", ActivityType.PRODUCTIVE),
+            new Case("Visual Studio", "Solution", ActivityType.PRODUCTIVE),
+            new Case("IntelliJ IDEA", "Project", ActivityType.PRODUCTIVE),
+            new Case("Microsoft Word", "Report.docx", ActivityType.PRODUCTIVE),
+            // "ide" is a keyword, so it matches inside other words
+            new Case("Slides", "Deck", ActivityType.PRODUCTIVE),
+            new Case("Firefox", "github.com - pull request", ActivityType.PRODUCTIVE),
+            new Case("Firefox", "stackoverflow.com", ActivityType.PRODUCTIVE),
+            new Case("Firefox", "Stack Overflow", ActivityType.NEUTRAL),
+            // Title-only keywords in the app name, and app-only keywords in the title
+            new Case("GitHub Desktop", "Changes", ActivityType.NEUTRAL),
+            new Case("Reddit", "Home", ActivityType.NEUTRAL),
+            new Case("Firefox", "Notion - Tasks", ActivityType.NEUTRAL),
+            new Case("Firefox", "r/java - Reddit", ActivityType.DISTRACTING),
+            new Case("YouTube", "Home", ActivityType.DISTRACTING),
+            new Case("Firefox", "YOUTUBE - Lofi", ActivityType.DISTRACTING),
+            new Case("NETFLIX", "", ActivityType.DISTRACTING),
+            new Case("Chrome", "tWiTtEr", ActivityType.DISTRACTING),
+            // Distracting wins over productive, whichever string holds which
+            new Case("Code", "YouTube - tutorial", ActivityType.DISTRACTING),
+            new Case("Facebook", "github.com", ActivityType.DISTRACTING),
+            new Case("Notion", "reddit thread", ActivityType.DISTRACTING),
+            // Keywords inside longer words
+            new Case("Firefox", "tiktoker clips", ActivityType.DISTRACTING),
+            new Case("Firefox", "instagrammable", ActivityType.DISTRACTING),
+            new Case("Excel", "Budget", ActivityType.PRODUCTIVE),
+            new Case("PDF Reader", "paper.pdf", ActivityType.PRODUCTIVE),
+            new Case("Finder", "Downloads", ActivityType.NEUTRAL),
+            new Case("", "", ActivityType.NEUTRAL));
+    
+    // Fragments the parity check combines into app names and titles
+    private static final List<String> FRAGMENTS = List.of("", "Code", "VS ", "id", "E", "youtube", "Tube",
+            "You", "reddit", "GitHub", "stack", "overflow", "Word", "pdf", "Netflix", "x", " - ", "TikTok",
+            "eclipse", "obsidian");
+    
+    private KeywordActivityClassifier classifier;
+    
+    @BeforeEach
+    void setUp() {
+        ClassificationRuleRepository ruleRepository = mock(ClassificationRuleRepository.class);
+        when(ruleRepository.findByEnabledTrueOrderByIdAsc()).thenReturn(KeywordActivityClassifier.defaultRules());
+        when(ruleRepository.count()).thenReturn((long) KeywordActivityClassifier.defaultRules().size());
+        classifier = new KeywordActivityClassifier(ruleRepository, new SimpleMeterRegistry(), 100);
+        classifier.init();
+    }
+    
+    @Test
+    void classifiesTheTableAsTheContainsChainDid() {
+        SoftAssertions softly = new SoftAssertions();
+        for (Case row : CASES) {
+            softly.assertThat(baseline(row.appName(), row.windowTitle())).as("contains() for %s", row)
+                    .isEqualTo(row.expected());
+            softly.assertThat(classifier.classify(row.appName(), row.windowTitle())).as("classifier for %s", row)
+                    .isEqualTo(row.expected());
+        }
+        softly.assertAll();
+    }
+    
+    @Test
+    void agreesWithTheContainsChainOnCombinedFragments() {
+        int compared = 0;
+        for (String appStart : FRAGMENTS) {
+            for (String appEnd : FRAGMENTS) {
+                for (String title : FRAGMENTS) {
+                    String appName = appStart + appEnd;
+                    String windowTitle = title + appEnd.toUpperCase() + appStart;
+                    assertThat(classifier.classify(appName, windowTitle)).as("%s / %s", appName, windowTitle)
+                            .isEqualTo(baseline(appName, windowTitle));
+                    compared++;
+                }
+            }
+        }
+        assertThat(compared).isEqualTo(FRAGMENTS.size() * FRAGMENTS.size() * FRAGMENTS.size());
+    }
+    
+    /**
+     * The classification Activity did before the rules table, as it was in the
+     * baseline.
+     */
+    private static ActivityType baseline(String appName, String windowTitle) {
+        String lowerApp = appName.toLowerCase();
+        String lowerTitle = windowTitle.toLowerCase();
+        
+        // Distracting apps
+        if (lowerApp.contains("youtube") || lowerTitle.contains("youtube") ||
+            lowerApp.contains("instagram") || lowerTitle.contains("instagram") ||
+            lowerApp.contains("facebook") || lowerTitle.contains("facebook") ||
+            lowerApp.contains("twitter") || lowerTitle.contains("twitter") ||
+            lowerApp.contains("tiktok") || lowerTitle.contains("tiktok") ||
+            lowerApp.contains("netflix") || lowerTitle.contains("netflix") ||
+            lowerTitle.contains("reddit")) {
+            return ActivityType.DISTRACTING;
+        }
+        
+        // Productive apps
+        if (lowerApp.contains("code") || lowerApp.contains("ide") ||
+            lowerApp.contains("intellij") || lowerApp.contains("eclipse") ||
+            lowerApp.contains("vs code") || lowerApp.contains("visual studio") ||
+            lowerTitle.contains("github") || lowerTitle.contains("stackoverflow") ||
+            lowerApp.contains("notion") || lowerApp.contains("obsidian") ||
+            lowerApp.contains("word") || lowerApp.contains("excel") ||
+            lowerApp.contains("powerpoint") || lowerApp.contains("pdf")) {
+            return ActivityType.PRODUCTIVE;
+        }
+        
+        return ActivityType.NEUTRAL;
+    }
+    
+    private record Case(String appName, String windowTitle, ActivityType expected) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.focustrack.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * An id allocated in a transaction that rolls back is forgotten with it, so later
+ * lookups of the name return an id that exists.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:name-dictionary-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.reports.column-store.enabled=false"
+})
+class NameDictionaryTest {
+    
+    @Autowired
+    private NameDictionary nameDictionary;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Test
+    void idsAllocatedInARolledBackTransactionAreNotKept() {
+        AtomicInteger rolledBack = new AtomicInteger();
+        transactionTemplate.executeWithoutResult(status -> {
+            int id = nameDictionary.applicationId("Rolled back");
+            // Remembered for the rest of the transaction
+            assertThat(nameDictionary.applicationId("Rolled back")).isEqualTo(id);
+            rolledBack.set(id);
+            status.setRollbackOnly();
+        });
+        assertThat(applicationExists(rolledBack.get())).isFalse();
+        
+        int id = nameDictionary.applicationId("Rolled back");
+        
+        assertThat(applicationExists(id)).isTrue();
+        assertThat(nameDictionary.applicationName(id)).isEqualTo("Rolled back");
+        assertThat(nameDictionary.applicationId("Rolled back")).isEqualTo(id);
+    }
+    
+    @Test
+    void idsAllocatedInACommittedTransactionAreKept() {
+        Integer committed = transactionTemplate.execute(status -> nameDictionary.windowTitleId("Committed"));
+        
+        assertThat(nameDictionary.windowTitleId("Committed")).isEqualTo(committed);
+        assertThat(nameDictionary.windowTitle(committed)).isEqualTo("Committed");
+        assertThat(jdbcTemplate.queryForObject("SELECT title FROM window_titles WHERE id = ?", String.class,
+                committed)).isEqualTo("Committed");
+    }
+    
+    private boolean applicationExists(int id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM applications WHERE id = ?", Integer.class, id) > 0;
+    }
+}
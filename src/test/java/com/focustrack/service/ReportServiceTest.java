@@ -0,0 +1,70 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Session;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every report that reads the database is timed, whichever entry point builds it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:report-service-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.reports.column-store.enabled=false"
+})
+class ReportServiceTest {
+    
+    @Autowired
+    private ReportService reportService;
+    
+    @Autowired
+    private SessionService sessionService;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Test
+    void dailyAndWeeklyReportsAreTimedWhenTheyAreBuilt() {
+        SessionDTO session = sessionService.createSession("report", Session.SessionType.FOCUS);
+        sessionService.addActivity(session.getId(), "IntelliJ IDEA", "Main.java");
+        sessionService.addActivity(session.getId(), "Firefox", "Docs");
+        LocalDate today = LocalDate.now();
+        long before = generated("rollups");
+        
+        reportService.generateDailyReport(today);
+        reportService.generateWeeklyReport(today.minusDays(3));
+        // Served from the cache
+        reportService.generateDailyReport(today);
+        
+        assertThat(generated("rollups")).isEqualTo(before + 2);
+    }
+    
+    @Test
+    void customReportsAreTimed() {
+        LocalDateTime now = LocalDateTime.now();
+        long before = generated("activities");
+        long archiveBefore = generated("archive");
+        
+        reportService.generateReport(now.minusDays(1), now);
+        reportService.generateReport(now.minusDays(1), now, true);
+        
+        assertThat(generated("activities")).isEqualTo(before + 1);
+        assertThat(generated("archive")).isEqualTo(archiveBefore + 1);
+    }
+    
+    private long generated(String source) {
+        Timer timer = meterRegistry.find("reports.generate").tags("source", source, "outcome", "committed").timer();
+        return timer != null ? timer.count() : 0;
+    }
+}
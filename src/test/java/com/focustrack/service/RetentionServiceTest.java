@@ -0,0 +1,116 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Archiving moves a month's completed sessions with all of their activities, including
+ * one written while the archive run waits for the session.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:retention-service-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.reports.column-store.enabled=false"
+})
+class RetentionServiceTest {
+    
+    private static final LocalDateTime START = LocalDateTime.of(2020, 3, 2, 9, 0);
+    
+    @TempDir
+    static Path archiveDir;
+    
+    @DynamicPropertySource
+    static void archiveDir(DynamicPropertyRegistry registry) {
+        registry.add("focustrack.retention.dir", () -> archiveDir.toString());
+    }
+    
+    @Autowired
+    private RetentionService retentionService;
+    
+    @Autowired
+    private SessionService sessionService;
+    
+    @Autowired
+    private ActivityArchive activityArchive;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Test
+    void anActivityWrittenWhileTheSessionIsLockedIsArchivedWithIt() throws Exception {
+        Long sessionId = completedSession();
+        CountDownLatch locked = new CountDownLatch(1);
+        
+        // Stands for a writer that holds the session's lock, as adding or ending an activity does
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    jdbcTemplate.queryForObject("SELECT id FROM sessions WHERE id = ? FOR UPDATE", Long.class,
+                            sessionId);
+                    locked.countDown();
+                    sleep(300);
+                    jdbcTemplate.update("INSERT INTO activities (session_id, app_id, title_id, start_time, end_time, "
+                            + "type, duration_seconds, created_at) SELECT session_id, app_id, title_id, ?, ?, type, 60, "
+                            + "created_at FROM activities WHERE session_id = ? LIMIT 1",
+                            START.plusHours(1), START.plusHours(1).plusMinutes(1), sessionId);
+                }));
+        assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        int archived = retentionService.archive(LocalDate.of(2021, 1, 1));
+        writer.get(5, TimeUnit.SECONDS);
+        
+        assertThat(archived).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM activities WHERE session_id = ?", Long.class,
+                sessionId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sessions WHERE id = ?", Long.class,
+                sessionId)).isZero();
+        List<ActivityArchive.ArchivedSession> sessions = new ArrayList<>();
+        activityArchive.scan(START.minusDays(1), START.plusDays(1), sessions::add);
+        assertThat(sessions).singleElement()
+                .satisfies(session -> assertThat(session.activities()).hasSize(3));
+    }
+    
+    /**
+     * A session with two activities, ended and moved back to {@link #START}.
+     */
+    private Long completedSession() {
+        SessionDTO session = sessionService.createSession("old", Session.SessionType.FOCUS);
+        sessionService.addActivity(session.getId(), "IntelliJ IDEA", "Main.java");
+        sessionService.addActivity(session.getId(), "Firefox", "Docs");
+        sessionService.endSession(session.getId());
+        jdbcTemplate.update("UPDATE sessions SET start_time = ?, end_time = ? WHERE id = ?",
+                START, START.plusHours(2), session.getId());
+        return session.getId();
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityEvent;
+import com.focustrack.dto.SessionCounterDriftDTO;
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Session;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Session counters follow every way an activity ends, and the check finds counters
+ * that no longer match the activities and repairs them without losing a concurrent
+ * write.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:session-counter-check-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=none",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.ingestion.merge-gap-seconds=60",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.reports.column-store.enabled=false"
+})
+class SessionCounterCheckTest {
+    
+    @Autowired
+    private SessionCounterCheck sessionCounterCheck;
+    
+    @Autowired
+    private SessionService sessionService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Test
+    void countersFollowAddedMergedPausedAndEndedActivities() {
+        SessionDTO session = sessionService.createSession("counted", Session.SessionType.FOCUS);
+        Long id = session.getId();
+        LocalDateTime start = session.getStartTime().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        
+        add(id, "Code", "Main.java", start);
+        // The same window again extends the open activity
+        add(id, "Code", "Main.java", start.plusSeconds(60));
+        assertThat(counters(id)).containsExactly(0L, 0L, 0L);
+        
+        add(id, "Firefox", "YouTube", start.plusSeconds(100));
+        assertThat(counters(id)).containsExactly(100L, 100L, 0L);
+        
+        sessionService.pauseSession(id);
+        add(id, "Finder", "Downloads", start.plusSeconds(130));
+        assertThat(counters(id)).containsExactly(130L, 100L, 30L);
+        
+        Long finder = openActivityId(id);
+        assertThat(sessionService.endActivity(finder, start.plusSeconds(150))).isTrue();
+        assertThat(counters(id)).containsExactly(150L, 100L, 30L);
+        
+        // Within the merge gap the ended activity is reopened; ending it again adds only the difference
+        add(id, "Finder", "Downloads", start.plusSeconds(170));
+        assertThat(openActivityId(id)).isEqualTo(finder);
+        add(id, "Code", "Main.java", start.plusSeconds(200));
+        assertThat(counters(id)).containsExactly(200L, 100L, 30L);
+        
+        // Ending the session leaves the open activity, and so the counters, as they are
+        sessionService.endSession(id);
+        assertThat(counters(id)).containsExactly(200L, 100L, 30L);
+        
+        assertThat(sessionCounterCheck.check(false)).extracting(SessionCounterDriftDTO::getSessionId)
+                .doesNotContain(id);
+    }
+    
+    @Test
+    void checkReportsDriftedCountersWithoutChangingThem() {
+        Long id = sessionWithActivities();
+        jdbcTemplate.update("UPDATE sessions SET total_duration_seconds = total_duration_seconds + 500, " +
+                "distracted_duration_seconds = 7 WHERE id = ?", id);
+        
+        List<SessionCounterDriftDTO> drifts = sessionCounterCheck.check(false);
+        
+        assertThat(drifts).filteredOn(drift -> drift.getSessionId().equals(id)).singleElement().satisfies(drift -> {
+            assertThat(drift.getStoredTotalSeconds()).isEqualTo(590);
+            assertThat(drift.getStoredDistractedSeconds()).isEqualTo(7);
+            assertThat(drift.getActualTotalSeconds()).isEqualTo(90);
+            assertThat(drift.getActualFocusedSeconds()).isEqualTo(60);
+            assertThat(drift.getActualDistractedSeconds()).isEqualTo(30);
+            assertThat(drift.isRepaired()).isFalse();
+        });
+        assertThat(counters(id)).containsExactly(590L, 60L, 7L);
+        assertThat(meterRegistry.get("sessions.counters.drift").gauge().value()).isEqualTo(drifts.size());
+        
+        sessionCounterCheck.check(true);
+    }
+    
+    @Test
+    void repairRecomputesUnderTheSessionLockSoAConcurrentWriteIsKept() throws Exception {
+        Long id = sessionWithActivities();
+        jdbcTemplate.update("UPDATE sessions SET total_duration_seconds = 0 WHERE id = ?", id);
+        CountDownLatch locked = new CountDownLatch(1);
+        
+        // Stands for a writer that holds the session's lock while it ends a 40 s activity
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    jdbcTemplate.queryForObject("SELECT id FROM sessions WHERE id = ? FOR UPDATE", Long.class, id);
+                    locked.countDown();
+                    sleep(300);
+                    jdbcTemplate.update("INSERT INTO activities (session_id, app_id, title_id, start_time, end_time, "
+                            + "type, duration_seconds, created_at) SELECT session_id, app_id, title_id, start_time, "
+                            + "start_time, type, 40, created_at FROM activities WHERE session_id = ? AND "
+                            + "type = 'PRODUCTIVE' LIMIT 1", id);
+                    jdbcTemplate.update("UPDATE sessions SET total_duration_seconds = total_duration_seconds + 40, "
+                            + "focused_duration_seconds = focused_duration_seconds + 40 WHERE id = ?", id);
+                }));
+        assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        List<SessionCounterDriftDTO> drifts = sessionCounterCheck.check(true);
+        writer.get(5, TimeUnit.SECONDS);
+        
+        // The check ran before the write committed; the repair waited for it and counted it
+        assertThat(drifts).filteredOn(drift -> drift.getSessionId().equals(id)).singleElement().satisfies(drift -> {
+            assertThat(drift.getActualTotalSeconds()).isEqualTo(90);
+            assertThat(drift.isRepaired()).isTrue();
+        });
+        assertThat(counters(id)).containsExactly(130L, 100L, 30L);
+        assertThat(sessionCounterCheck.check(false)).extracting(SessionCounterDriftDTO::getSessionId)
+                .doesNotContain(id);
+    }
+    
+    /**
+     * A session with 60 productive and 30 distracting seconds ended, and one activity open.
+     */
+    private Long sessionWithActivities() {
+        SessionDTO session = sessionService.createSession("drifting", Session.SessionType.FOCUS);
+        LocalDateTime start = session.getStartTime().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        add(session.getId(), "Code", "Main.java", start);
+        add(session.getId(), "Firefox", "YouTube", start.plusSeconds(60));
+        add(session.getId(), "Finder", "Downloads", start.plusSeconds(90));
+        assertThat(counters(session.getId())).containsExactly(90L, 60L, 30L);
+        return session.getId();
+    }
+    
+    private void add(Long sessionId, String appName, String windowTitle, LocalDateTime timestamp) {
+        sessionService.addActivities(List.of(new ActivityEvent(sessionId, appName, windowTitle, timestamp)));
+    }
+    
+    private Long openActivityId(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT id FROM activities WHERE session_id = ? AND end_time IS NULL",
+                Long.class, sessionId);
+    }
+    
+    private List<Long> counters(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT total_duration_seconds, focused_duration_seconds, " +
+                        "distracted_duration_seconds FROM sessions WHERE id = ?",
+                (rs, row) -> List.of(rs.getLong(1), rs.getLong(2), rs.getLong(3)), sessionId);
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
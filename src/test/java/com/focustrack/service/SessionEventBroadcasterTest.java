@@ -0,0 +1,193 @@
+package com.focustrack.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.focustrack.model.Session;
+import com.focustrack.repository.SessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Subscribers that do not keep up, or whose writes stall, must be dropped without
+ * delaying the events of the other subscribers, and subscribing must not lock the
+ * session.
+ */
+class SessionEventBroadcasterTest {
+    
+    private static final int SEND_THREADS = 2;
+    private static final int SUBSCRIBER_BUFFER = 4;
+    private static final long SEND_TIMEOUT_MS = 100;
+    
+    private final Session session = new Session();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private volatile boolean nextBlocks;
+    
+    private SessionRepository sessionRepository;
+    private SessionEventBroadcaster broadcaster;
+    
+    @BeforeEach
+    void setUp() {
+        session.setId(1L);
+        session.setSessionName("live");
+        session.setStartTime(LocalDateTime.now());
+        session.setStatus(Session.SessionStatus.ACTIVE);
+        session.setTotalDurationSeconds(0L);
+        session.setFocusedDurationSeconds(0L);
+        session.setDistractedDurationSeconds(0L);
+        
+        sessionRepository = mock(SessionRepository.class);
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            TransactionCallback<?> callback = invocation.getArgument(0);
+            return callback.doInTransaction(null);
+        });
+        
+        broadcaster = new SessionEventBroadcaster(sessionRepository, transactionTemplate, new ObjectMapper(),
+                meterRegistry, 1, SEND_THREADS, SUBSCRIBER_BUFFER, SEND_TIMEOUT_MS) {
+            @Override
+            SseEmitter createEmitter() {
+                return new RecordingEmitter(nextBlocks);
+            }
+        };
+        broadcaster.start();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        broadcaster.stop();
+    }
+    
+    @Test
+    void dropsSubscribersThatStopReadingWithoutHoldingUpTheOthers() {
+        // More than there are sender threads, so each of them is blocked at first
+        nextBlocks = true;
+        List<RecordingEmitter> stuck = new ArrayList<>();
+        for (int i = 0; i < SEND_THREADS + 3; i++) {
+            stuck.add((RecordingEmitter) broadcaster.subscribe(1L));
+        }
+        nextBlocks = false;
+        RecordingEmitter reading = (RecordingEmitter) broadcaster.subscribe(1L);
+        
+        // Paced by the subscriber that keeps up, so that only the others fall behind. The
+        // scheduled check is run by hand
+        for (long seconds = 1; seconds <= 20; seconds++) {
+            session.setTotalDurationSeconds(seconds);
+            broadcaster.sessionChanged(session);
+            String counters = "\"totalDurationSeconds\":" + seconds + ",";
+            await().atMost(Duration.ofSeconds(5)).pollInterval(Duration.ofMillis(20)).until(() -> {
+                broadcaster.checkSends();
+                return reading.messages.stream().anyMatch(m -> m.contains(counters));
+            });
+        }
+        
+        assertThat(reading.messages).hasSize(21);
+        assertThat(meterRegistry.counter("live.dropped").count()).isEqualTo(stuck.size());
+        
+        // The write a subscriber was stuck in is the last one it gets
+        unblock.countDown();
+        for (RecordingEmitter emitter : stuck) {
+            await().atMost(Duration.ofSeconds(5)).until(() -> emitter.completed);
+            assertThat(emitter.messages).hasSizeLessThanOrEqualTo(1);
+        }
+        assertThat(reading.completed).isFalse();
+    }
+    
+    @Test
+    void subscribersWhoseWritesTimeOutAreDroppedEvenIfTheirQueuesAreNotFull() {
+        // Blocks every sender thread
+        nextBlocks = true;
+        List<RecordingEmitter> stuck = new ArrayList<>();
+        for (int i = 0; i < SEND_THREADS; i++) {
+            stuck.add((RecordingEmitter) broadcaster.subscribe(1L));
+        }
+        nextBlocks = false;
+        await().atMost(Duration.ofSeconds(5)).until(() -> stuck.stream().noneMatch(e -> e.messages.isEmpty()));
+        
+        broadcaster.checkSends();
+        assertThat(meterRegistry.counter("live.dropped").count()).isZero();
+        
+        await().atMost(Duration.ofSeconds(5)).pollInterval(Duration.ofMillis(20)).until(() -> {
+            broadcaster.checkSends();
+            return meterRegistry.counter("live.dropped").count() == stuck.size();
+        });
+        // The blocked senders are replaced, so a new subscriber is written to right away
+        RecordingEmitter reading = (RecordingEmitter) broadcaster.subscribe(1L);
+        await().atMost(Duration.ofSeconds(5)).until(() -> !reading.messages.isEmpty());
+        
+        unblock.countDown();
+        for (RecordingEmitter emitter : stuck) {
+            await().atMost(Duration.ofSeconds(5)).until(() -> emitter.completed);
+            assertThat(emitter.messages).hasSize(1);
+        }
+    }
+    
+    @Test
+    void readsTheInitialCountersWithoutLockingTheSession() {
+        session.setTotalDurationSeconds(42L);
+        
+        RecordingEmitter emitter = (RecordingEmitter) broadcaster.subscribe(1L);
+        
+        await().atMost(Duration.ofSeconds(5)).until(() -> !emitter.messages.isEmpty());
+        assertThat(emitter.messages.get(0)).contains("event:counters").contains("\"totalDurationSeconds\":42");
+        verify(sessionRepository, never()).findByIdForUpdate(anyLong());
+    }
+    
+    /**
+     * Records what is sent; a blocking one stands for a client that stopped reading, so
+     * that writes to it wait until the test ends.
+     */
+    private class RecordingEmitter extends SseEmitter {
+        
+        private final boolean blocks;
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+        
+        RecordingEmitter(boolean blocks) {
+            super(0L);
+            this.blocks = blocks;
+        }
+        
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            messages.add(items.stream().map(item -> item.getData().toString()).collect(Collectors.joining()));
+            if (blocks) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
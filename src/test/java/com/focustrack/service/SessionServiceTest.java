@@ -0,0 +1,211 @@
+package com.focustrack.service;
+
+import com.focustrack.dto.ActivityBatchResponse;
+import com.focustrack.dto.ActivityEvent;
+import com.focustrack.dto.SessionDTO;
+import com.focustrack.model.Session;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Adding an activity must cost the same however long the session already is: the open
+ * activity is found by key, not by loading the session's activities. An ended session
+ * must take no more activities, neither reported nor from monitoring. Reports of the
+ * window already shown extend its activity, and counters and rollups count each second
+ * of it once.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:session-service-test;DB_CLOSE_DELAY=-1",
+        "focustrack.monitoring.source=scripted",
+        "focustrack.monitoring.script=Code|Main.java",
+        "focustrack.monitoring.interval-ms=50",
+        "focustrack.monitoring.debounce-ms=0",
+        "focustrack.ingestion.log.enabled=false",
+        "focustrack.ingestion.merge-gap-seconds=60",
+        "focustrack.ingestion.log.compact-interval-ms=3600000",
+        "focustrack.classifier.reload-interval-ms=3600000",
+        "focustrack.live.heartbeat-ms=3600000",
+        "focustrack.counters.check.enabled=false",
+        "focustrack.reports.column-store.enabled=false"
+})
+class SessionServiceTest {
+    
+    private static final int MEASURED_ADDS = 20;
+    
+    @Autowired
+    private SessionService sessionService;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private MonitoringService monitoringService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private RollupService rollupService;
+    
+    @Test
+    void addActivityCostsTheSameAsTheSessionGrows() {
+        SessionDTO session = sessionService.createSession("growing", Session.SessionType.FOCUS);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        
+        // Alternate between two windows so that every add ends one activity and opens another
+        addActivities(session.getId(), 10);
+        Cost small = measure(statistics, session.getId());
+        
+        addActivities(session.getId(), 2000);
+        Cost large = measure(statistics, session.getId());
+        
+        assertThat(large.statements()).isEqualTo(small.statements());
+        assertThat(large.entityLoads()).isEqualTo(small.entityLoads());
+        assertThat(large.entityLoads()).isLessThanOrEqualTo(MEASURED_ADDS * 2L);
+    }
+    
+    @Test
+    void anEndedSessionRejectsActivities() {
+        SessionDTO session = sessionService.createSession("ended", Session.SessionType.FOCUS);
+        sessionService.addActivity(session.getId(), "Firefox", "Docs");
+        sessionService.endSession(session.getId());
+        
+        List<ActivityBatchResponse.EventResult> results = sessionService.addActivities(
+                List.of(new ActivityEvent(session.getId(), "Code", "Main.java", null)));
+        
+        assertThat(results.get(0).getStatus()).isEqualTo(ActivityBatchResponse.EventStatus.REJECTED);
+        assertThat(results.get(0).getMessage()).isEqualTo("Session has ended");
+        assertThatThrownBy(() -> sessionService.addActivity(session.getId(), "Code", "Main.java"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(activityCount(session.getId())).isEqualTo(1);
+    }
+    
+    @Test
+    void endingAMonitoredSessionStopsItsMonitoring() {
+        SessionDTO session = sessionService.createSession("monitored", Session.SessionType.FOCUS);
+        monitoringService.startMonitoring(session.getId());
+        await().atMost(Duration.ofSeconds(5)).until(() -> activityCount(session.getId()) == 1);
+        
+        sessionService.endSession(session.getId());
+        
+        assertThat(monitoringService.isMonitoringActive(session.getId())).isFalse();
+    }
+    
+    @Test
+    void monitoringStopsWhenItsActivitiesAreRejected() {
+        SessionDTO session = sessionService.createSession("ended elsewhere", Session.SessionType.FOCUS);
+        // Ended without going through this instance's endSession
+        jdbcTemplate.update("UPDATE sessions SET status = 'COMPLETED', end_time = ? WHERE id = ?",
+                LocalDateTime.now(), session.getId());
+        
+        monitoringService.startMonitoring(session.getId());
+        
+        await().atMost(Duration.ofSeconds(5)).until(() -> !monitoringService.isMonitoringActive(session.getId()));
+        assertThat(activityCount(session.getId())).isZero();
+    }
+    
+    @Test
+    void mergedReportsCountEachSecondOnceInCountersAndRollups() {
+        SessionDTO session = sessionService.createSession("merged", Session.SessionType.FOCUS);
+        Long id = session.getId();
+        LocalDateTime start = session.getStartTime().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        // App names of their own, so that rollups of the other tests do not mix in
+        String code = "Code (merge test)";
+        String youtube = "YouTube (merge test)";
+        
+        // Reports of the open window extend it
+        add(id, code, "Main.java", start);
+        add(id, code, "Main.java", start.plusSeconds(30));
+        add(id, youtube, "Lofi", start.plusSeconds(60));
+        assertThat(activityCount(id)).isEqualTo(2);
+        assertThat(counters(id)).containsExactly(60L, 60L, 0L);
+        assertThat(appRollups(code, youtube)).containsExactly(entry(code, 60L));
+        
+        // Reported again within the gap, an ended activity is reopened; it closes again at 150 s
+        Long lofi = openActivityId(id);
+        assertThat(sessionService.endActivity(lofi, start.plusSeconds(90))).isTrue();
+        assertThat(counters(id)).containsExactly(90L, 60L, 30L);
+        add(id, youtube, "Lofi", start.plusSeconds(120));
+        assertThat(openActivityId(id)).isEqualTo(lofi);
+        add(id, code, "Main.java", start.plusSeconds(150));
+        assertThat(sessionService.endActivity(openActivityId(id), start.plusSeconds(160))).isTrue();
+        
+        assertThat(activityCount(id)).isEqualTo(3);
+        assertThat(counters(id)).containsExactly(160L, 70L, 90L);
+        Map<String, Long> rollups = appRollups(code, youtube);
+        assertThat(rollups).containsOnly(entry(code, 70L), entry(youtube, 90L));
+        
+        // The rollups are what a rebuild from the activities gives
+        rollupService.rebuild(start.toLocalDate(), start.plusSeconds(160).toLocalDate());
+        assertThat(appRollups(code, youtube)).isEqualTo(rollups);
+    }
+    
+    private void add(Long sessionId, String appName, String windowTitle, LocalDateTime timestamp) {
+        List<ActivityBatchResponse.EventResult> results = sessionService.addActivities(
+                List.of(new ActivityEvent(sessionId, appName, windowTitle, timestamp)));
+        assertThat(results.get(0).getStatus()).isEqualTo(ActivityBatchResponse.EventStatus.ACCEPTED);
+    }
+    
+    private Long openActivityId(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT id FROM activities WHERE session_id = ? AND end_time IS NULL",
+                Long.class, sessionId);
+    }
+    
+    private List<Long> counters(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT total_duration_seconds, focused_duration_seconds, " +
+                        "distracted_duration_seconds FROM sessions WHERE id = ?",
+                (rs, row) -> List.of(rs.getLong(1), rs.getLong(2), rs.getLong(3)), sessionId);
+    }
+    
+    /**
+     * Seconds per app over all days, for the given apps.
+     */
+    private Map<String, Long> appRollups(String... appNames) {
+        Map<String, Long> rollups = new HashMap<>();
+        for (String appName : appNames) {
+            Long seconds = jdbcTemplate.queryForObject("SELECT SUM(duration_seconds) FROM daily_app_rollups " +
+                    "WHERE app_name = ?", Long.class, appName);
+            if (seconds != null) {
+                rollups.put(appName, seconds);
+            }
+        }
+        return rollups;
+    }
+    
+    private long activityCount(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM activities WHERE session_id = ?", Long.class,
+                sessionId);
+    }
+    
+    private Cost measure(Statistics statistics, Long sessionId) {
+        statistics.clear();
+        addActivities(sessionId, MEASURED_ADDS);
+        return new Cost(statistics.getPrepareStatementCount(), statistics.getEntityLoadCount());
+    }
+    
+    private void addActivities(Long sessionId, int count) {
+        for (int i = 0; i < count; i++) {
+            sessionService.addActivity(sessionId, i % 2 == 0 ? "IntelliJ IDEA" : "Firefox", "window " + (i % 2));
+        }
+    }
+    
+    private record Cost(long statements, long entityLoads) {
+    }
+}